@@ -0,0 +1,42 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import net.gini.android.models.Document;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Parsing a document response.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class DocumentParsingBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private String documentResponse;
+
+    @Before
+    public void setUp() throws Exception {
+        documentResponse = new String(Fixtures.read(Fixtures.DOCUMENT), CHARSET_UTF8);
+    }
+
+    @Test
+    public void documentFromApiResponse() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Document.fromApiResponse(new JSONObject(documentResponse));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import net.gini.android.models.ExtractionsContainer;
+import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.ExtractionsParser;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+/**
+ * Parsing the extractions response of a small receipt, an invoice with 50 line items and a bank statement with 300
+ * transactions.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class ExtractionsParsingBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public String fixture;
+
+    private byte[] response;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> parameters() {
+        return Fixtures.extractionResponses();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        response = Fixtures.read(fixture);
+    }
+
+    @Test
+    public void parse() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ExtractionsParser.parse(new ByteArrayInputStream(response));
+        }
+    }
+
+    @Test
+    public void parseLazily() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ExtractionsParser.parseLazily(response);
+        }
+    }
+
+    /**
+     * Parsing lazily and then reading a single extraction, which is what most apps do with the response.
+     */
+    @Test
+    public void parseLazilyAndGetOneExtraction() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            final ExtractionsContainer container = ExtractionsParser.parseLazily(response);
+            for (final SpecificExtraction extraction : container.getSpecificExtractions().values()) {
+                extraction.getValue();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Parsing into {@link JSONObject}s only, as a baseline for the parsers above.
+     */
+    @Test
+    public void parseJsonObject() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            new JSONObject(new String(response, CHARSET_UTF8));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.gini.android;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Synthetic API responses used by the benchmarks. They were written to have the structure of real responses, but
+ * none of them was recorded from the Gini API.
+ */
+final class Fixtures {
+
+    static final String RECEIPT = "receipt-extractions.json";
+    static final String INVOICE = "invoice-extractions.json";
+    static final String BANK_STATEMENT = "bank-statement-extractions.json";
+    static final String DOCUMENT = "document.json";
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the extraction responses from the smallest to the largest, for parameterized benchmarks
+     */
+    static List<Object[]> extractionResponses() {
+        return Arrays.asList(new Object[][]{{RECEIPT}, {INVOICE}, {BANK_STATEMENT}});
+    }
+
+    static byte[] read(final String name) throws IOException {
+        final InputStream inputStream = InstrumentationRegistry.getInstrumentation().getContext().getAssets()
+                .open(name);
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
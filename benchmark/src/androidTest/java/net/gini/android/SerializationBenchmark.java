@@ -0,0 +1,92 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.ExtractionsContainer;
+import net.gini.android.requests.ExtractionsParser;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creating the JSON request bodies for composite documents and extraction feedback. The composite document has a
+ * distinct partial document for each page of the fixture's document.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class SerializationBenchmark {
+
+    private static final int RECEIPT_PAGES = 1;
+    private static final int INVOICE_PAGES = 3;
+    private static final int BANK_STATEMENT_PAGES = 10;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public String fixture;
+
+    @Parameterized.Parameter(1)
+    public int pageCount;
+
+    private List<Document> partialDocuments;
+    private ExtractionsContainer extractions;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> parameters() {
+        final List<Object[]> parameters = new ArrayList<>();
+        parameters.add(new Object[]{Fixtures.RECEIPT, RECEIPT_PAGES});
+        parameters.add(new Object[]{Fixtures.INVOICE, INVOICE_PAGES});
+        parameters.add(new Object[]{Fixtures.BANK_STATEMENT, BANK_STATEMENT_PAGES});
+        return parameters;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        final String documentResponse = new String(Fixtures.read(Fixtures.DOCUMENT), CHARSET_UTF8);
+        final String documentId = new JSONObject(documentResponse).getString("id");
+        partialDocuments = new ArrayList<>();
+        for (int i = 0; i < pageCount; i++) {
+            // Composite documents are keyed by document, so each page needs its own document and id
+            final String partialDocumentId = documentId.substring(0, documentId.length() - 4)
+                    + String.format(Locale.US, "%04d", i);
+            partialDocuments.add(Document.fromApiResponse(
+                    new JSONObject(documentResponse.replace(documentId, partialDocumentId))));
+        }
+        extractions = ExtractionsParser.parse(new ByteArrayInputStream(Fixtures.read(fixture)));
+    }
+
+    @Test
+    public void createCompositeJson() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DocumentTaskManager.createCompositeJson(partialDocuments);
+        }
+    }
+
+    @Test
+    public void createFeedbackJson() throws Exception {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            final JSONObject feedback = new JSONObject();
+            feedback.put("extractions", DocumentTaskManager.createFeedbackJson(extractions.getSpecificExtractions()));
+            feedback.put("compoundExtractions",
+                    DocumentTaskManager.createCompoundFeedbackJson(extractions.getCompoundExtractions()));
+            feedback.toString().getBytes(CHARSET_UTF8);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net.gini.android;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class AdaptiveJpegEncoderTest {
+
+    private Bitmap createBitmap() throws IOException {
+        final InputStream inputStream = getApplicationContext().getResources().getAssets().open("yoda.jpg");
+        try {
+            return BitmapFactory.decodeStream(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Test
+    public void testEncodedJpegFitsIntoByteBudget() throws IOException {
+        final Bitmap bitmap = createBitmap();
+        final int maxBytes = 20 * 1024;
+
+        final byte[] jpeg = new AdaptiveJpegEncoder(maxBytes, Long.MAX_VALUE).encode(bitmap);
+
+        assertTrue(jpeg.length <= maxBytes);
+        assertFalse(bitmap.isRecycled());
+    }
+
+    @Test
+    public void testLargeBitmapIsDownscaled() throws IOException {
+        final Bitmap bitmap = createBitmap();
+        final long maxPixels = (long) bitmap.getWidth() * bitmap.getHeight() / 4;
+
+        final byte[] jpeg = new AdaptiveJpegEncoder(Integer.MAX_VALUE, maxPixels).encode(bitmap);
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        assertTrue((long) options.outWidth * options.outHeight <= maxPixels);
+        assertFalse(bitmap.isRecycled());
+    }
+
+    @Test
+    public void testInvalidBudgetsAreRejected() {
+        try {
+            new AdaptiveJpegEncoder(0, 1);
+            fail("IllegalArgumentException not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            new AdaptiveJpegEncoder(1, 0);
+            fail("IllegalArgumentException not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -10,10 +10,14 @@ import static com.android.volley.Request.Method.PUT;
 
 import static net.gini.android.helpers.TestUtils.areEqualURIs;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import android.net.Uri;
@@ -21,10 +25,15 @@ import androidx.test.filters.MediumTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.android.volley.AuthFailureError;
+import com.android.volley.Header;
+import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
 
 import net.gini.android.authorization.Session;
+import net.gini.android.requests.BearerStreamingUploadRequest;
+import net.gini.android.requests.BearerUploadRequest;
 import net.gini.android.requests.DefaultRetryPolicyFactory;
 import net.gini.android.requests.RetryPolicyFactory;
 
@@ -36,9 +45,17 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import bolts.CancellationTokenSource;
+import bolts.Task;
 
 @MediumTest
 @RunWith(AndroidJUnit4.class)
@@ -87,13 +104,13 @@ public class ApiCommunicatorTest {
     @Test
     public void testUploadDocumentThrowsWithNullArguments() {
         try {
-            mApiCommunicator.uploadDocument(null, null, null, null, null, null);
+            mApiCommunicator.uploadDocument((byte[]) null, null, null, null, null, null);
             fail("Exception not thrown");
         } catch (NullPointerException ignored) {
         }
 
         try {
-            mApiCommunicator.uploadDocument(null, "image/jpeg", null, null, createSession(), null);
+            mApiCommunicator.uploadDocument((byte[]) null, "image/jpeg", null, null, createSession(), null);
             fail("Exception not thrown");
         } catch (NullPointerException ignored) {
         }
@@ -222,6 +239,58 @@ public class ApiCommunicatorTest {
         assertEquals("https://api.gini.net/documents/?doctype=invoice", request.getUrl());
     }
 
+    @Test
+    public void testUploadDocumentSourceCreatesStreamingRequest() throws AuthFailureError {
+        final DocumentSource documentSource = DocumentSource.fromInputStream(
+                new ByteArrayInputStream(createUploadData()), createUploadData().length);
+        final Session session = createSession();
+
+        mApiCommunicator.uploadDocument(documentSource, MediaTypes.IMAGE_JPEG, "foobar.jpg", null, session, null);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+
+        assertTrue(request instanceof BearerStreamingUploadRequest);
+        assertSame(documentSource, ((BearerStreamingUploadRequest) request).getDocumentSource());
+        assertEquals(0, request.getBody().length);
+        assertEquals(MediaTypes.IMAGE_JPEG, request.getBodyContentType());
+        assertEquals("https://api.gini.net/documents/?filename=foobar.jpg", request.getUrl());
+        assertEquals(POST, request.getMethod());
+    }
+
+    @Test
+    public void testUploadDocumentSetsUploadListener() {
+        final UploadListener uploadListener = new UploadListener() {
+            @Override
+            public void onProgress(final long bytesSent, final long totalBytes, final double bytesPerSecond) {
+            }
+        };
+
+        mApiCommunicator.uploadDocument(createUploadData(), MediaTypes.IMAGE_JPEG, "foobar.jpg", null,
+                createSession(), null, uploadListener, null);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        assertSame(uploadListener, ((BearerUploadRequest) requestCaptor.getValue()).getUploadListener());
+    }
+
+    @Test
+    public void testUploadDocumentIsCancelledWithCancellationToken() {
+        final DocumentSource documentSource = DocumentSource.fromInputStream(
+                new ByteArrayInputStream(createUploadData()), createUploadData().length);
+        final CancellationTokenSource cancellationTokenSource = new CancellationTokenSource();
+
+        final Task<Uri> uploadTask = mApiCommunicator.uploadDocument(documentSource, MediaTypes.IMAGE_JPEG,
+                "foobar.jpg", null, createSession(), null, null, cancellationTokenSource.getToken());
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        cancellationTokenSource.cancel();
+
+        assertTrue(requestCaptor.getValue().isCanceled());
+        assertTrue(uploadTask.isCancelled());
+    }
+
     @Test
     public void testDeleteDocumentsReturnsTask() {
         final Session session = createSession();
@@ -347,6 +416,15 @@ public class ApiCommunicatorTest {
         assertEquals(GET, request.getMethod());
     }
 
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(0, ApiCommunicator.parseRetryAfterMs(null, 0));
+        assertEquals(0, ApiCommunicator.parseRetryAfterMs("soon", 0));
+        assertEquals(3000, ApiCommunicator.parseRetryAfterMs("3", 0));
+        final long nowMs = 1445412345000L;
+        assertEquals(5000, ApiCommunicator.parseRetryAfterMs("Wed, 21 Oct 2015 07:25:50 GMT", nowMs));
+    }
+
     @Test
     public void testGetDocumentSendsCorrectAuthorizationHeaders() throws AuthFailureError {
         Session session = createSession("4321-1234");
@@ -405,6 +483,21 @@ public class ApiCommunicatorTest {
         assertEquals(GET, request.getMethod());
     }
 
+    @Test
+    public void testGetExtractionsContainerGetsTheCorrectDocument() throws AuthFailureError {
+        Session session = createSession("1234-1234");
+
+        mApiCommunicator.getExtractionsContainer("1234", session);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals("https://api.gini.net/documents/1234/extractions", request.getUrl());
+        assertEquals(GET, request.getMethod());
+        assertEquals("BEARER 1234-1234", request.getHeaders().get("Authorization"));
+        assertTrue(((String) request.getHeaders().get("Accept")).contains(MediaTypes.GINI_JSON_V2));
+    }
+
     @Test
     public void testGetExtractionsHasCorrectAuthorizationHeader() throws AuthFailureError {
         Session session = createSession("1234-1234");
@@ -632,6 +725,71 @@ public class ApiCommunicatorTest {
         assertTrue(acceptHeader.contains(MediaTypes.GINI_JSON_V2));
     }
 
+    @Test
+    public void testSendFeedbackCompressesBodyWithRequestBodyCompression() throws Exception {
+        mApiCommunicator.setRequestBodyCompression(new RequestBodyCompression(0));
+        JSONObject extractions = new JSONObject();
+        JSONObject value = new JSONObject();
+        extractions.put("amountToPay", value);
+        value.put("value", "32:EUR");
+
+        mApiCommunicator.sendFeedback("1234-1234", extractions, createSession());
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals("gzip", request.getHeaders().get("Content-Encoding"));
+        assertEquals("{\"feedback\":{\"amountToPay\":{\"value\":\"32:EUR\"}}}",
+                new String(gunzip(request.getBody()), Utils.CHARSET_UTF8));
+    }
+
+    @Test
+    public void testCompressedUploadIsSentUncompressedWhenRejectedByServer() throws Exception {
+        final RequestBodyCompression requestBodyCompression = new RequestBodyCompression(0);
+        mApiCommunicator.setRequestBodyCompression(requestBodyCompression);
+        final byte[] compositeJson = "{\"partialDocuments\":[]}".getBytes(Utils.CHARSET_UTF8);
+
+        mApiCommunicator.uploadDocument(compositeJson, MediaTypes.GINI_DOCUMENT_JSON_V2, null, null,
+                createSession(), null);
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request compressedRequest = requestCaptor.getValue();
+        assertEquals("gzip", compressedRequest.getHeaders().get("Content-Encoding"));
+        compressedRequest.deliverError(new VolleyError(
+                new NetworkResponse(415, new byte[0], false, 0, Collections.<Header>emptyList())));
+
+        verify(mRequestQueue, times(2)).add(requestCaptor.capture());
+        final Request uncompressedRequest = requestCaptor.getValue();
+        assertNull(uncompressedRequest.getHeaders().get("Content-Encoding"));
+        assertArrayEquals(compositeJson, uncompressedRequest.getBody());
+        assertTrue(requestBodyCompression.isRejectedByServer());
+    }
+
+    @Test
+    public void testBinaryUploadIsNotCompressed() throws Exception {
+        mApiCommunicator.setRequestBodyCompression(new RequestBodyCompression(0));
+        final byte[] jpeg = new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x10};
+
+        mApiCommunicator.uploadDocument(jpeg, MediaTypes.IMAGE_JPEG, null, null, createSession(), null);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        assertNull(requestCaptor.getValue().getHeaders().get("Content-Encoding"));
+        assertArrayEquals(jpeg, requestCaptor.getValue().getBody());
+    }
+
+    private static byte[] gunzip(final byte[] data) throws IOException {
+        final GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return outputStream.toByteArray();
+    }
+
     @Test
     public void testGetPreviewThrowsWithNullArguments() {
         try {
@@ -714,6 +872,21 @@ public class ApiCommunicatorTest {
         assertEquals(GET, request.getMethod());
     }
 
+    @Test
+    public void testGetParsedLayoutHasCorrectUrlAndHeaders() throws AuthFailureError {
+        final Session session = createSession("9999-8888-7777");
+
+        mApiCommunicator.getParsedLayoutForDocument("1234-4321", session);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals("https://api.gini.net/documents/1234-4321/layout", request.getUrl());
+        assertEquals(GET, request.getMethod());
+        assertEquals("BEARER 9999-8888-7777", request.getHeaders().get("Authorization"));
+        assertTrue(((String) request.getHeaders().get("Accept")).contains(MediaTypes.GINI_JSON_V2));
+    }
+
     @Test
     public void testGetLayoutHasCorrectAcceptHeader() throws AuthFailureError {
         final Session session = createSession();
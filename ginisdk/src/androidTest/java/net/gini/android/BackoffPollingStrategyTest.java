@@ -0,0 +1,82 @@
+package net.gini.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BackoffPollingStrategyTest {
+
+    @Test
+    public void testDelayIncreasesUpToTheMaximumDelay() {
+        final BackoffPollingStrategy strategy = new BackoffPollingStrategy(100, 1000, 2.0f, 0f,
+                BackoffPollingStrategy.NO_DEADLINE);
+
+        assertEquals(100, strategy.getDelayMs(1, 0, 0));
+        assertEquals(200, strategy.getDelayMs(2, 0, 0));
+        assertEquals(400, strategy.getDelayMs(3, 0, 0));
+        assertEquals(1000, strategy.getDelayMs(10, 0, 0));
+    }
+
+    @Test
+    public void testDelayStaysWithinTheJitter() {
+        final BackoffPollingStrategy strategy = new BackoffPollingStrategy(1000, 1000, 1.0f, 0.2f,
+                BackoffPollingStrategy.NO_DEADLINE);
+
+        for (int i = 0; i < 100; i++) {
+            final long delayMs = strategy.getDelayMs(1, 0, 0);
+            assertTrue(delayMs >= 800 && delayMs <= 1200);
+        }
+    }
+
+    @Test
+    public void testRetryAfterHintIsNotUndercut() {
+        final BackoffPollingStrategy strategy = new BackoffPollingStrategy(100, 1000, 2.0f, 0f,
+                BackoffPollingStrategy.NO_DEADLINE);
+
+        assertEquals(5000, strategy.getDelayMs(1, 0, 5000));
+    }
+
+    @Test
+    public void testDelayIsShortenedToTheDeadline() {
+        final BackoffPollingStrategy strategy = new BackoffPollingStrategy(1000, 1000, 1.0f, 0f, 10000);
+
+        assertEquals(300, strategy.getDelayMs(5, 9700, 0));
+    }
+
+    @Test
+    public void testPollingStopsAtTheDeadline() {
+        final BackoffPollingStrategy strategy = new BackoffPollingStrategy(1000, 1000, 1.0f, 0f, 10000);
+
+        assertEquals(PollingStrategy.STOP_POLLING, strategy.getDelayMs(5, 10000, 0));
+        assertEquals(PollingStrategy.STOP_POLLING, strategy.getDelayMs(5, 5000, 6000));
+    }
+
+    @Test
+    public void testThrowsWithInvalidArguments() {
+        try {
+            new BackoffPollingStrategy(1000, 100, 2.0f, 0f, BackoffPollingStrategy.NO_DEADLINE);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            new BackoffPollingStrategy(100, 1000, 0.5f, 0f, BackoffPollingStrategy.NO_DEADLINE);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            new BackoffPollingStrategy(100, 1000, 2.0f, 1.5f, BackoffPollingStrategy.NO_DEADLINE);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
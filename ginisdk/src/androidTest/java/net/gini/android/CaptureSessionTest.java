@@ -0,0 +1,130 @@
+package net.gini.android;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+
+import net.gini.android.DocumentTaskManager.DocumentType;
+import net.gini.android.authorization.Session;
+import net.gini.android.authorization.SessionManager;
+import net.gini.android.models.Document;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.util.Date;
+
+import bolts.Task;
+
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class CaptureSessionTest {
+
+    private DocumentTaskManager mDocumentTaskManager;
+    private ApiCommunicator mApiCommunicator;
+
+    @Before
+    public void setUp() {
+        // https://code.google.com/p/dexmaker/issues/detail?id=2
+        System.setProperty("dexmaker.dexcache", getApplicationContext().getCacheDir().getPath());
+
+        mApiCommunicator = Mockito.mock(ApiCommunicator.class);
+        final SessionManager sessionManager = Mockito.mock(SessionManager.class);
+        mDocumentTaskManager = new DocumentTaskManager(mApiCommunicator, sessionManager, GiniApiType.DEFAULT);
+
+        final Session session = new Session("1234-5678-9012", new Date(new Date().getTime() + 10000));
+        when(sessionManager.getSession()).thenReturn(Task.forResult(session));
+    }
+
+    private Task<JSONObject> createDocumentJSONTask(final String documentId) throws JSONException {
+        final JSONObject links = new JSONObject();
+        links.put("document", "https://api.gini.net/documents/" + documentId);
+        final JSONObject document = new JSONObject();
+        document.put("id", documentId);
+        document.put("progress", "COMPLETED");
+        document.put("pageCount", 1);
+        document.put("name", "page.jpg");
+        document.put("creationDate", 1360623867402L);
+        document.put("sourceClassification", "SCANNED");
+        document.put("_links", links);
+        return Task.forResult(document);
+    }
+
+    private void mockPageUpload(final byte[] page, final String documentId) throws JSONException {
+        final Uri documentUri = Uri.parse("https://api.gini.net/documents/" + documentId);
+        when(mApiCommunicator.uploadDocument(eq(page), eq("application/vnd.gini.v2.partial+jpeg"),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(documentUri));
+        when(mApiCommunicator.getDocument(eq(documentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask(documentId));
+    }
+
+    @Test
+    public void testFinishCreatesCompositeDocumentFromCurrentPageOrderAndRotation() throws Exception {
+        final byte[] firstPage = new byte[]{0x01};
+        final byte[] secondPage = new byte[]{0x02};
+        final byte[] thirdPage = new byte[]{0x03};
+        mockPageUpload(firstPage, "1111");
+        mockPageUpload(secondPage, "2222");
+        mockPageUpload(thirdPage, "3333");
+        final Uri compositeUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.getDocument(eq(compositeUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+        when(mApiCommunicator.uploadDocument(any(byte[].class), eq("application/vnd.gini.v2.composite+json"),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(compositeUri));
+
+        final CaptureSession captureSession = mDocumentTaskManager.createCaptureSession(DocumentType.INVOICE, null);
+        captureSession.addPage(new DocumentPage(firstPage, MediaTypes.IMAGE_JPEG, null, 0));
+        captureSession.addPage(new DocumentPage(secondPage, MediaTypes.IMAGE_JPEG, null, 0));
+        captureSession.addPage(new DocumentPage(thirdPage, MediaTypes.IMAGE_JPEG, null, 0));
+        captureSession.removePage(1);
+        captureSession.movePage(1, 0);
+        captureSession.setPageRotation(0, 90);
+
+        final Task<Document> task = captureSession.finish();
+        task.waitForCompletion();
+
+        final String jsonString = "{ \"partialDocuments\": [ "
+                + "{ \"document\": \"https://api.gini.net/documents/3333\", \"rotationDelta\": 90 }, "
+                + "{ \"document\": \"https://api.gini.net/documents/1111\", \"rotationDelta\": 0 } "
+                + "] }";
+        final byte[] jsonBytes = new JSONObject(jsonString).toString().getBytes(CHARSET_UTF8);
+        assertEquals("1234", task.getResult().getId());
+        verify(mApiCommunicator).uploadDocument(eq(jsonBytes), eq("application/vnd.gini.v2.composite+json"),
+                eq((String) null), eq("Invoice"), any(Session.class), nullable(DocumentMetadata.class));
+    }
+
+    @Test
+    public void testPagesCannotBeChangedAfterFinish() throws Exception {
+        final byte[] page = new byte[]{0x01};
+        mockPageUpload(page, "1111");
+
+        final CaptureSession captureSession = mDocumentTaskManager.createCaptureSession(null, null);
+        captureSession.addPage(new DocumentPage(page, MediaTypes.IMAGE_JPEG, null, 0));
+        captureSession.finish();
+
+        try {
+            captureSession.addPage(new DocumentPage(page, MediaTypes.IMAGE_JPEG, null, 0));
+            fail("IllegalStateException not thrown");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net.gini.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.volley.Header;
+import com.android.volley.NetworkResponse;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ConditionalRequestCacheTest {
+
+    private static final String URL = "https://api.gini.net/documents/1234";
+
+    private NetworkResponse createResponse(final int statusCode, final Header... headers) {
+        final List<Header> allHeaders = new ArrayList<>();
+        Collections.addAll(allHeaders, headers);
+        return new NetworkResponse(statusCode, new byte[0], false, 0, allHeaders);
+    }
+
+    @Test
+    public void testAddsValidatorsOfTheRememberedResponse() {
+        final ConditionalRequestCache cache = new ConditionalRequestCache(10);
+        cache.put(URL, createResponse(HttpURLConnection.HTTP_OK, new Header("ETag", "\"abc\""),
+                new Header("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT")), new JSONObject());
+
+        final Map<String, String> headers = new HashMap<>();
+        cache.addConditionalHeaders(URL, headers);
+
+        assertEquals("\"abc\"", headers.get(ConditionalRequestCache.IF_NONE_MATCH_HEADER));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", headers.get(ConditionalRequestCache.IF_MODIFIED_SINCE_HEADER));
+    }
+
+    @Test
+    public void testReturnsRememberedBodyForNotModifiedResponse() {
+        final ConditionalRequestCache cache = new ConditionalRequestCache(10);
+        final JSONObject body = new JSONObject();
+        cache.put(URL, createResponse(HttpURLConnection.HTTP_OK, new Header("ETag", "\"abc\"")), body);
+
+        assertSame(body, cache.getNotModifiedBody(URL, createResponse(HttpURLConnection.HTTP_NOT_MODIFIED)));
+        assertNull(cache.getNotModifiedBody(URL, createResponse(HttpURLConnection.HTTP_OK)));
+    }
+
+    @Test
+    public void testForgetsResponsesWithoutValidators() {
+        final ConditionalRequestCache cache = new ConditionalRequestCache(10);
+        cache.put(URL, createResponse(HttpURLConnection.HTTP_OK, new Header("ETag", "\"abc\"")), new JSONObject());
+        cache.put(URL, createResponse(HttpURLConnection.HTTP_OK), new JSONObject());
+
+        final Map<String, String> headers = new HashMap<>();
+        cache.addConditionalHeaders(URL, headers);
+
+        assertTrue(headers.isEmpty());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedResponses() {
+        final ConditionalRequestCache cache = new ConditionalRequestCache(1);
+        cache.put(URL, createResponse(HttpURLConnection.HTTP_OK, new Header("ETag", "\"abc\"")), new JSONObject());
+        cache.put("https://api.gini.net/documents/5678",
+                createResponse(HttpURLConnection.HTTP_OK, new Header("ETag", "\"def\"")), new JSONObject());
+
+        assertNull(cache.getNotModifiedBody(URL, createResponse(HttpURLConnection.HTTP_NOT_MODIFIED)));
+    }
+}
@@ -0,0 +1,115 @@
+package net.gini.android;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.os.ParcelFileDescriptor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import net.gini.android.helpers.TestUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DocumentSourceTest {
+
+    private File createFile(final byte[] content) throws IOException {
+        final File file = File.createTempFile("document", ".pdf", getApplicationContext().getCacheDir());
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+
+    private byte[] readAll(final DocumentSource documentSource) throws IOException {
+        final InputStream inputStream = documentSource.openStream();
+        try {
+            return TestUtils.createByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Test
+    public void testFileCanBeReadRepeatedly() throws IOException {
+        final byte[] content = "foobar".getBytes(Utils.CHARSET_UTF8);
+        final DocumentSource documentSource = DocumentSource.fromFile(createFile(content));
+
+        assertEquals(content.length, documentSource.getLength());
+        assertTrue(documentSource.isRepeatable());
+        assertArrayEquals(content, readAll(documentSource));
+        assertArrayEquals(content, readAll(documentSource));
+    }
+
+    @Test
+    public void testFileDescriptorCanBeReadRepeatedly() throws IOException {
+        final byte[] content = "foobar".getBytes(Utils.CHARSET_UTF8);
+        final ParcelFileDescriptor fileDescriptor = ParcelFileDescriptor.open(createFile(content),
+                ParcelFileDescriptor.MODE_READ_ONLY);
+        try {
+            final DocumentSource documentSource = DocumentSource.fromFileDescriptor(fileDescriptor);
+
+            assertEquals(content.length, documentSource.getLength());
+            assertArrayEquals(content, readAll(documentSource));
+            assertArrayEquals(content, readAll(documentSource));
+        } finally {
+            fileDescriptor.close();
+        }
+    }
+
+    @Test
+    public void testFileDescriptorOfUnknownSizeIsRejected() throws IOException {
+        final ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+        try {
+            DocumentSource.fromFileDescriptor(pipe[0]);
+            fail("IllegalArgumentException not thrown");
+        } catch (IllegalArgumentException ignored) {
+        } finally {
+            pipe[0].close();
+            pipe[1].close();
+        }
+    }
+
+    @Test
+    public void testInputStreamCanBeReadOnlyOnce() throws IOException {
+        final byte[] content = "foobar".getBytes(Utils.CHARSET_UTF8);
+        final DocumentSource documentSource = DocumentSource.fromInputStream(new ByteArrayInputStream(content),
+                content.length);
+
+        assertEquals(content.length, documentSource.getLength());
+        assertFalse(documentSource.isRepeatable());
+        assertArrayEquals(content, readAll(documentSource));
+        try {
+            documentSource.openStream();
+            fail("IOException not thrown");
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void testInputStreamLengthMustNotBeNegative() {
+        try {
+            DocumentSource.fromInputStream(new ByteArrayInputStream(new byte[0]), -1);
+            fail("IllegalArgumentException not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -4,19 +4,26 @@ import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 
 import static net.gini.android.Utils.CHARSET_UTF8;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -24,6 +31,10 @@ import android.net.Uri;
 import androidx.test.filters.MediumTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.volley.Header;
+import com.android.volley.NetworkResponse;
+import com.android.volley.VolleyError;
+
 import net.gini.android.DocumentTaskManager.DocumentType;
 import net.gini.android.authorization.Session;
 import net.gini.android.authorization.SessionManager;
@@ -34,7 +45,9 @@ import net.gini.android.models.Extraction;
 import net.gini.android.models.ExtractionsContainer;
 import net.gini.android.models.ReturnReason;
 import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.ExtractionsParser;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Before;
@@ -43,19 +56,35 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import bolts.CancellationToken;
+import bolts.CancellationTokenSource;
 import bolts.Task;
 
 @MediumTest
@@ -150,6 +179,15 @@ public class DocumentTaskManagerTest {
         return Task.forResult(readJSONFile("extractions.json"));
     }
 
+    private Task<ExtractionsContainer> createExtractionsContainerTask() throws IOException {
+        final InputStream inputStream = getApplicationContext().getResources().getAssets().open("extractions.json");
+        try {
+            return Task.forResult(ExtractionsParser.parse(inputStream));
+        } finally {
+            inputStream.close();
+        }
+    }
+
     private Task<JSONObject> createErrorReportJSONTask(final String errorId) throws JSONException {
         final JSONObject responseData = new JSONObject();
         responseData.put("errorId", errorId);
@@ -196,7 +234,8 @@ public class DocumentTaskManagerTest {
     @Test
     public void testThatCreateDocumentResolvesToDocument() throws IOException, JSONException, InterruptedException {
         final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
-        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
+        when(mApiCommunicator.uploadDocument(any(DocumentSource.class), any(String.class), any(String.class),
+                any(String.class),
                 any(Session.class), nullable(DocumentMetadata.class)))
                 .thenReturn(Task.forResult(createdDocumentUri));
         when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
@@ -213,7 +252,8 @@ public class DocumentTaskManagerTest {
     public void testThatCreateDocumentsSubmitsTheFileNameAndDocumentType()
             throws IOException, JSONException, InterruptedException {
         final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
-        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
+        when(mApiCommunicator.uploadDocument(any(DocumentSource.class), any(String.class), any(String.class),
+                any(String.class),
                 any(Session.class), any(DocumentMetadata.class)))
                 .thenReturn(Task.forResult(Uri.parse("https://api.gini.net/documents/1234")));
         when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
@@ -223,10 +263,57 @@ public class DocumentTaskManagerTest {
         mDocumentTaskManager.createDocument(bitmap, "foobar.jpg", "invoice", 90).waitForCompletion();
 
         verify(mApiCommunicator)
-                .uploadDocument(any(byte[].class), eq(MediaTypes.IMAGE_JPEG), eq("foobar.jpg"), eq("invoice"),
+                .uploadDocument(any(DocumentSource.class), eq(MediaTypes.IMAGE_JPEG), eq("foobar.jpg"), eq("invoice"),
                         eq(mSession), nullable(DocumentMetadata.class));
     }
 
+    @Test
+    public void testThatCreateDocumentWithBitmapUploadsOnceSessionIsAvailable() throws Exception {
+        final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        final Task<Session>.TaskCompletionSource sessionCompletionSource = Task.create();
+        final AtomicBoolean uploadedWithoutSession = new AtomicBoolean();
+        when(mApiCommunicator.uploadDocument(any(DocumentSource.class), any(String.class), any(String.class),
+                nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenAnswer(new Answer<Task<Uri>>() {
+                    @Override
+                    public Task<Uri> answer(final InvocationOnMock invocation) {
+                        // Records the order instead of waiting for an upload which must not happen
+                        if (!sessionCompletionSource.getTask().isCompleted()) {
+                            uploadedWithoutSession.set(true);
+                        }
+                        return Task.forResult(createdDocumentUri);
+                    }
+                });
+        when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+        when(mSessionManager.getSession()).thenReturn(sessionCompletionSource.getTask());
+        Bitmap bitmap = createBitmap();
+
+        final Task<Document> documentTask = mDocumentTaskManager.createDocument(bitmap, "foobar.jpg", "invoice", 90);
+        sessionCompletionSource.setResult(mSession);
+        documentTask.waitForCompletion();
+
+        assertFalse(uploadedWithoutSession.get());
+        assertEquals("1234", documentTask.getResult().getId());
+        verify(mApiCommunicator).uploadDocument(any(DocumentSource.class), eq(MediaTypes.IMAGE_JPEG),
+                eq("foobar.jpg"), eq("invoice"), eq(mSession), nullable(DocumentMetadata.class));
+    }
+
+    @Test
+    public void testThatCreateDocumentWithBitmapFailsWhenSessionFails() throws Exception {
+        final Exception sessionError = new Exception("login failed");
+        when(mSessionManager.getSession()).thenReturn(Task.<Session>forError(sessionError));
+        Bitmap bitmap = createBitmap();
+
+        final Task<Document> documentTask = mDocumentTaskManager.createDocument(bitmap, "foobar.jpg", "invoice", 90);
+        documentTask.waitForCompletion();
+
+        assertTrue(documentTask.isFaulted());
+        assertEquals(sessionError, documentTask.getError());
+        verify(mApiCommunicator, never()).uploadDocument(any(DocumentSource.class), any(String.class),
+                any(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class));
+    }
+
     @Test
     public void testThatCreatePartialDocumentSetsTheCorrectContentType() throws Exception {
         final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
@@ -248,6 +335,54 @@ public class DocumentTaskManagerTest {
                         eq(mSession), nullable(DocumentMetadata.class));
     }
 
+    @Test
+    public void testThatCreatePartialDocumentDoesNotUploadTheSameDataTwiceWithDeduplication() throws Exception {
+        final SharedPreferences sharedPreferences = getApplicationContext().getSharedPreferences(
+                "GiniUploadDeduplicationTest", Context.MODE_PRIVATE);
+        final UploadDeduplicationCache uploadDeduplicationCache = new UploadDeduplicationCache(sharedPreferences);
+        uploadDeduplicationCache.clear();
+        mDocumentTaskManager.setUploadDeduplicationCache(uploadDeduplicationCache);
+        final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class),
+                nullable(String.class), nullable(String.class),
+                any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(createdDocumentUri));
+        when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+
+        final byte[] document = new byte[]{0x01, 0x02};
+        final Task<Document> firstTask = mDocumentTaskManager.createPartialDocument(document, MediaTypes.IMAGE_JPEG,
+                "foobar.jpg", DocumentType.INVOICE);
+        firstTask.waitForCompletion();
+        final Task<Document> secondTask = mDocumentTaskManager.createPartialDocument(document.clone(),
+                MediaTypes.IMAGE_JPEG, "retake.jpg", DocumentType.INVOICE);
+        secondTask.waitForCompletion();
+
+        assertEquals("1234", firstTask.getResult().getId());
+        assertEquals("1234", secondTask.getResult().getId());
+        verify(mApiCommunicator, times(1)).uploadDocument(any(byte[].class), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class),
+                nullable(DocumentMetadata.class));
+        verify(mApiCommunicator, times(1)).getDocument(eq(createdDocumentUri), any(Session.class));
+        uploadDeduplicationCache.clear();
+    }
+
+    @Test
+    public void testThatCreatePartialDocumentIsCancelledWithCancellationToken() throws Exception {
+        final CancellationTokenSource cancellationTokenSource = new CancellationTokenSource();
+        cancellationTokenSource.cancel();
+
+        final Task<Document> task = mDocumentTaskManager.createPartialDocument(new byte[]{0x01, 0x02},
+                MediaTypes.IMAGE_JPEG, "foobar.jpg", DocumentType.INVOICE, null, null,
+                cancellationTokenSource.getToken());
+        task.waitForCompletion();
+
+        assertTrue(task.isCancelled());
+        verify(mApiCommunicator, never()).uploadDocument(any(byte[].class), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class),
+                nullable(UploadListener.class), nullable(CancellationToken.class));
+    }
+
     @Test
     public void testThatCreatePartialDocumentThrowsExceptionWhenUsingAccountingApiType() throws Exception {
         final DocumentTaskManager documentTaskManager =
@@ -380,6 +515,161 @@ public class DocumentTaskManagerTest {
                         eq(mSession), nullable(DocumentMetadata.class));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testThatCreateMultiPageDocumentRetriesFailedPagesAndKeepsPageOrder() throws Exception {
+        final byte[] firstPage = new byte[]{0x01};
+        final byte[] secondPage = new byte[]{0x02};
+        final Uri firstPageUri = Uri.parse("https://api.gini.net/documents/1111");
+        final Uri secondPageUri = Uri.parse("https://api.gini.net/documents/2222");
+        final Uri compositeUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.uploadDocument(eq(firstPage), eq("application/vnd.gini.v2.partial+jpeg"),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.<Uri>forError(new Exception("upload failed")), Task.forResult(firstPageUri));
+        when(mApiCommunicator.uploadDocument(eq(secondPage), eq("application/vnd.gini.v2.partial+jpeg"),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(secondPageUri));
+        when(mApiCommunicator.uploadDocument(any(byte[].class), eq("application/vnd.gini.v2.composite+json"),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(compositeUri));
+        when(mApiCommunicator.getDocument(eq(firstPageUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1111"));
+        when(mApiCommunicator.getDocument(eq(secondPageUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("2222"));
+        when(mApiCommunicator.getDocument(eq(compositeUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+
+        final List<DocumentPage> pages = new ArrayList<>();
+        pages.add(new DocumentPage(firstPage, MediaTypes.IMAGE_JPEG, null, 90));
+        pages.add(new DocumentPage(secondPage, MediaTypes.IMAGE_JPEG, null, 0));
+
+        final Task<Document> task = mDocumentTaskManager.createMultiPageDocument(pages, DocumentType.INVOICE,
+                null, 2, 1);
+        task.waitForCompletion();
+
+        final String jsonString = "{ \"partialDocuments\": [ "
+                + "{ \"document\": \"https://api.gini.net/documents/1111\", \"rotationDelta\": 90 }, "
+                + "{ \"document\": \"https://api.gini.net/documents/2222\", \"rotationDelta\": 0 } "
+                + "] }";
+        final byte[] jsonBytes = new JSONObject(jsonString).toString().getBytes(CHARSET_UTF8);
+        assertEquals("1234", task.getResult().getId());
+        verify(mApiCommunicator, times(2)).uploadDocument(eq(firstPage), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class));
+        verify(mApiCommunicator).uploadDocument(eq(jsonBytes), eq("application/vnd.gini.v2.composite+json"),
+                eq((String) null), eq("Invoice"), eq(mSession), nullable(DocumentMetadata.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testThatCreateMultiPageDocumentFailsWhenPageUploadRetriesAreExhausted() throws Exception {
+        final byte[] page = new byte[]{0x01};
+        when(mApiCommunicator.uploadDocument(eq(page), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.<Uri>forError(new Exception("upload failed")));
+
+        final Task<Document> task = mDocumentTaskManager.createMultiPageDocument(
+                Arrays.asList(new DocumentPage(page, MediaTypes.IMAGE_JPEG, null, 0)), DocumentType.INVOICE,
+                null, 1, 2);
+        task.waitForCompletion();
+
+        assertTrue(task.isFaulted());
+        verify(mApiCommunicator, times(3)).uploadDocument(eq(page), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class));
+        verify(mApiCommunicator, never()).uploadDocument(any(byte[].class),
+                eq("application/vnd.gini.v2.composite+json"), nullable(String.class), nullable(String.class),
+                any(Session.class), nullable(DocumentMetadata.class));
+    }
+
+    @Test
+    public void testThatCreateMultiPageDocumentDoesNotRetryPagesWhichCanBeReadOnlyOnce() throws Exception {
+        when(mApiCommunicator.uploadDocument(any(DocumentSource.class), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.<Uri>forError(new Exception("upload failed")));
+        final DocumentSource documentSource = DocumentSource.fromInputStream(
+                new ByteArrayInputStream(new byte[]{0x01}), 1);
+
+        final Task<Document> task = mDocumentTaskManager.createMultiPageDocument(
+                Arrays.asList(new DocumentPage(documentSource, MediaTypes.IMAGE_JPEG, null, 0)),
+                DocumentType.INVOICE, null, 1, 2);
+        task.waitForCompletion();
+
+        assertTrue(task.isFaulted());
+        verify(mApiCommunicator, times(1)).uploadDocument(any(DocumentSource.class), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testThatProcessDocumentsReturnsResultForEveryDocument() throws Exception {
+        final byte[] firstDocument = new byte[]{0x01};
+        final byte[] secondDocument = new byte[]{0x02};
+        final Uri partialDocumentUri = Uri.parse("https://api.gini.net/documents/1111");
+        final Uri compositeDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.uploadDocument(eq(firstDocument), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(partialDocumentUri));
+        when(mApiCommunicator.uploadDocument(eq(secondDocument), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.<Uri>forError(new Exception("upload failed")));
+        when(mApiCommunicator.uploadDocument(any(byte[].class), eq("application/vnd.gini.v2.composite+json"),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.forResult(compositeDocumentUri));
+        when(mApiCommunicator.getDocument(eq(partialDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1111"));
+        when(mApiCommunicator.getDocument(eq(compositeDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        final List<Integer> processedCounts = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final Task<List<BatchResult>> task = mDocumentTaskManager.processDocuments(
+                Arrays.asList(new DocumentPage(firstDocument, MediaTypes.IMAGE_JPEG, null, 0),
+                        new DocumentPage(secondDocument, MediaTypes.IMAGE_JPEG, null, 0)),
+                DocumentType.INVOICE, 1, new BatchProgressListener() {
+                    @Override
+                    public void onDocumentProcessed(final int index, @NonNull final BatchResult result,
+                            final int processedCount, final int totalCount) {
+                        assertEquals(2, totalCount);
+                        processedCounts.add(processedCount);
+                    }
+                });
+        task.waitForCompletion();
+
+        final List<BatchResult> results = task.getResult();
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals("1234", results.get(0).getDocument().getId());
+        assertNotNull(results.get(0).getExtractions());
+        assertFalse(results.get(1).isSuccessful());
+        assertNull(results.get(1).getDocument());
+        assertNotNull(results.get(1).getError());
+        assertEquals(Arrays.asList(1, 2), processedCounts);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testThatProcessDocumentsCompletesWhenProgressListenerThrows() throws Exception {
+        final byte[] firstDocument = new byte[]{0x01};
+        final byte[] secondDocument = new byte[]{0x02};
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class),
+                nullable(String.class), nullable(String.class), any(Session.class), nullable(DocumentMetadata.class)))
+                .thenReturn(Task.<Uri>forError(new Exception("upload failed")));
+
+        final Task<List<BatchResult>> task = mDocumentTaskManager.processDocuments(
+                Arrays.asList(new DocumentPage(firstDocument, MediaTypes.IMAGE_JPEG, null, 0),
+                        new DocumentPage(secondDocument, MediaTypes.IMAGE_JPEG, null, 0)),
+                DocumentType.INVOICE, 1, new BatchProgressListener() {
+                    @Override
+                    public void onDocumentProcessed(final int index, @NonNull final BatchResult result,
+                            final int processedCount, final int totalCount) {
+                        throw new IllegalStateException("listener failed");
+                    }
+                });
+
+        assertTrue(task.waitForCompletion(5, TimeUnit.SECONDS));
+        assertEquals(2, task.getResult().size());
+    }
+
     @Test
     public void testThatCreateCompositeDocumentThrowsExceptionWhenUsingAccountingApiType() throws Exception {
         final DocumentTaskManager documentTaskManager =
@@ -504,6 +794,22 @@ public class DocumentTaskManagerTest {
         verify(documentTaskManager).createDocument(bitmap, "foobar.jpg", DocumentType.INVOICE);
     }
 
+    @Test
+    public void testDeprecatedDocumentBuilderPassesDocumentTypeToJpegEncoderUpload() throws IOException {
+        final DocumentTaskManager documentTaskManager = Mockito.mock(DocumentTaskManager.class);
+        final AdaptiveJpegEncoder jpegEncoder = new AdaptiveJpegEncoder(100000, Long.MAX_VALUE);
+
+        Bitmap bitmap = createBitmap();
+        new DocumentTaskManager.DocumentUploadBuilder()
+                .setDocumentBitmap(bitmap)
+                .setDocumentType("invoice")
+                .setFilename("foobar.jpg")
+                .setJpegEncoder(jpegEncoder)
+                .upload(documentTaskManager);
+
+        verify(documentTaskManager).createDocument(bitmap, "foobar.jpg", "invoice", jpegEncoder);
+    }
+
     @Test
     public void testDocumentBuilderHasDefaultValues() throws IOException {
         final DocumentTaskManager documentTaskManager = Mockito.mock(DocumentTaskManager.class);
@@ -582,6 +888,91 @@ public class DocumentTaskManagerTest {
         assertEquals("1234", document.getId());
     }
 
+    @Test
+    public void testGetDocumentReusesDocumentForUnmodifiedResponse() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+
+        final Task<Document> firstTask = mDocumentTaskManager.getDocument("1234");
+        firstTask.waitForCompletion();
+        final Task<Document> secondTask = mDocumentTaskManager.getDocument("1234");
+        secondTask.waitForCompletion();
+
+        assertSame(firstTask.getResult(), secondTask.getResult());
+    }
+
+    @Test
+    public void testAnalyzeDocumentRetrievesDocumentDataInParallel() throws Exception {
+        final Document document = Document.fromApiResponse(createDocumentJSONTask("1234", "COMPLETED").getResult());
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        when(mApiCommunicator.getLayoutForDocument(eq("1234"), any(Session.class))).thenReturn(createLayoutJSONTask());
+        when(mApiCommunicator.getPreview(eq("1234"), eq(1), any(ApiCommunicator.PreviewSize.class),
+                any(Session.class))).thenReturn(Task.<Bitmap>forError(new Exception("no preview")));
+        when(mApiCommunicator.getIncubatorExtractions(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsJSONTask());
+
+        final Task<AnalysisResult> analysisTask = mDocumentTaskManager.analyzeDocument(document,
+                ApiCommunicator.PreviewSize.MEDIUM, true);
+        analysisTask.waitForCompletion();
+
+        final AnalysisResult analysisResult = analysisTask.getResult();
+        assertSame(document, analysisResult.getDocument());
+        assertNotNull(analysisResult.getExtractions());
+        assertNotNull(analysisResult.getLayout());
+        assertNull(analysisResult.getFirstPagePreview());
+        assertNotNull(analysisResult.getIncubatorExtractions());
+    }
+
+    @Test
+    public void testAnalyzeDocumentFailsWhenExtractionsFail() throws Exception {
+        final Document document = Document.fromApiResponse(createDocumentJSONTask("1234", "COMPLETED").getResult());
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                Task.<ExtractionsContainer>forError(new Exception("no extractions")));
+        when(mApiCommunicator.getLayoutForDocument(eq("1234"), any(Session.class))).thenReturn(createLayoutJSONTask());
+        when(mApiCommunicator.getPreview(eq("1234"), eq(1), any(ApiCommunicator.PreviewSize.class),
+                any(Session.class))).thenReturn(Task.<Bitmap>forResult(null));
+
+        final Task<AnalysisResult> analysisTask = mDocumentTaskManager.analyzeDocument(document);
+        analysisTask.waitForCompletion();
+
+        assertTrue(analysisTask.isFaulted());
+        verify(mApiCommunicator, never()).getIncubatorExtractions(any(String.class), any(Session.class));
+    }
+
+    @Test
+    public void testAnalyzeDocumentFailsForDocumentsWhichWereNotCompleted() throws Exception {
+        final Document document = Document.fromApiResponse(createDocumentJSONTask("1234", "ERROR").getResult());
+
+        final Task<AnalysisResult> analysisTask = mDocumentTaskManager.analyzeDocument(document);
+        analysisTask.waitForCompletion();
+
+        assertTrue(analysisTask.getError() instanceof IllegalStateException);
+        verify(mApiCommunicator, never()).getExtractionsContainer(any(String.class), any(Session.class));
+        verify(mApiCommunicator, never()).getLayoutForDocument(any(String.class), any(Session.class));
+    }
+
+    @Test
+    public void testAnalyzeDocumentCachesExtractions() throws Exception {
+        final ExtractionsCache extractionsCache = new ExtractionsCache();
+        mDocumentTaskManager.setExtractionsCache(extractionsCache);
+        final Document document = Document.fromApiResponse(createDocumentJSONTask("1234", "COMPLETED").getResult());
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        when(mApiCommunicator.getLayoutForDocument(eq("1234"), any(Session.class))).thenReturn(createLayoutJSONTask());
+        when(mApiCommunicator.getPreview(eq("1234"), eq(1), any(ApiCommunicator.PreviewSize.class),
+                any(Session.class))).thenReturn(Task.<Bitmap>forResult(null));
+
+        final Task<AnalysisResult> analysisTask = mDocumentTaskManager.analyzeDocument(document);
+        analysisTask.waitForCompletion();
+        final Task<ExtractionsContainer> extractionsTask = mDocumentTaskManager.getAllExtractions(document);
+        extractionsTask.waitForCompletion();
+
+        assertSame(analysisTask.getResult().getExtractions(), extractionsTask.getResult());
+        verify(mApiCommunicator, times(1)).getExtractionsContainer(eq("1234"), any(Session.class));
+        assertEquals(1, extractionsCache.getHitCount());
+    }
+
     @Test
     public void testPollDocumentThrowsWithNullArgument() {
         try {
@@ -645,6 +1036,484 @@ public class DocumentTaskManagerTest {
         assertTrue(documentTask.isCancelled());
     }
 
+    @Test
+    public void testPollDocumentCancellationBetweenRequests() throws Exception {
+        final Task<Void>.TaskCompletionSource requested = Task.create();
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenAnswer(new Answer<Task<JSONObject>>() {
+            @Override
+            public Task<JSONObject> answer(final InvocationOnMock invocation) throws Throwable {
+                requested.trySetResult(null);
+                return createDocumentJSONTask("1234", "PENDING");
+            }
+        });
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        requested.getTask().waitForCompletion();
+        mDocumentTaskManager.cancelDocumentPolling(document);
+
+        // Cancelling ends the delay before the next request instead of waiting for it
+        assertTrue(documentTask.waitForCompletion(DocumentTaskManager.POLLING_INTERVAL / 2, TimeUnit.MILLISECONDS));
+        assertTrue(documentTask.isCancelled());
+        verify(mApiCommunicator, times(1)).getDocument(eq("1234"), any(Session.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPollDocumentUsesPollingStrategy() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "PENDING"), createDocumentJSONTask("1234", "PENDING"),
+                createDocumentJSONTask("1234", "COMPLETED"));
+        final PollingStrategy pollingStrategy = Mockito.mock(PollingStrategy.class);
+        when(pollingStrategy.getDelayMs(anyInt(), anyLong(), anyLong())).thenReturn(10L);
+        mDocumentTaskManager.setPollingStrategy(pollingStrategy);
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        verify(pollingStrategy).getDelayMs(eq(1), anyLong(), anyLong());
+        verify(pollingStrategy).getDelayMs(eq(2), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testPollDocumentFailsWhenPollingStrategyStops() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "PENDING"));
+        mDocumentTaskManager.setPollingStrategy(new PollingStrategy() {
+            @Override
+            public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+                return attempt < 3 ? 10 : STOP_POLLING;
+            }
+        });
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertTrue(documentTask.getError() instanceof TimeoutException);
+        verify(mApiCommunicator, times(3)).getDocument(eq("1234"), any(Session.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPollDocumentRetriesAfterTooManyRequestsResponse() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(new VolleyError(
+                        new NetworkResponse(429, new byte[0], false, 0, Collections.<Header>emptyList()))),
+                createDocumentJSONTask("1234", "COMPLETED"));
+        when(mApiCommunicator.consumeRetryAfterHintMs("1234")).thenReturn(20L);
+        final List<Long> retryAfterDelays = Collections.synchronizedList(new ArrayList<Long>());
+        mDocumentTaskManager.setPollingStrategy(new PollingStrategy() {
+            @Override
+            public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+                retryAfterDelays.add(retryAfterMs);
+                return retryAfterMs;
+            }
+        });
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        assertEquals(Collections.singletonList(20L), retryAfterDelays);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMultiplexedPollingRetriesAfterTooManyRequestsResponse() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(new VolleyError(
+                        new NetworkResponse(429, new byte[0], false, 0, Collections.<Header>emptyList()))),
+                createDocumentJSONTask("1234", "COMPLETED"));
+        when(mApiCommunicator.consumeRetryAfterHintMs("1234")).thenReturn(20L);
+        final List<Long> retryAfterDelays = Collections.synchronizedList(new ArrayList<Long>());
+        mDocumentTaskManager.setMultiplexedPolling(true);
+        mDocumentTaskManager.setPollingStrategy(new PollingStrategy() {
+            @Override
+            public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+                retryAfterDelays.add(retryAfterMs);
+                return retryAfterMs;
+            }
+        });
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        assertEquals(Collections.singletonList(20L), retryAfterDelays);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMultiplexedPollingRetriesAfterTooManyRequestsResponseForDocumentList() throws Exception {
+        final JSONObject list = new JSONObject();
+        list.put("totalCount", 2);
+        list.put("documents", new JSONArray()
+                .put(createDocumentJSONTask("1234", "COMPLETED").getResult())
+                .put(createDocumentJSONTask("5678", "COMPLETED").getResult()));
+        when(mApiCommunicator.getDocumentList(anyInt(), anyInt(), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(new VolleyError(
+                        new NetworkResponse(429, new byte[0], false, 0, Collections.<Header>emptyList()))),
+                Task.forResult(list));
+        // Requested individually, if the retries are not due on the same tick
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "COMPLETED"));
+        when(mApiCommunicator.getDocument(eq("5678"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("5678", "COMPLETED"));
+        when(mApiCommunicator.consumeDocumentListRetryAfterHintMs()).thenReturn(20L);
+        final List<Long> retryAfterDelays = Collections.synchronizedList(new ArrayList<Long>());
+        mDocumentTaskManager.setMultiplexedPolling(true);
+        mDocumentTaskManager.setPollingStrategy(new PollingStrategy() {
+            @Override
+            public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+                retryAfterDelays.add(retryAfterMs);
+                return retryAfterMs;
+            }
+        });
+        final Document firstDocument = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1,
+                new Date(), Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+        final Document secondDocument = new Document("5678", Document.ProcessingState.PENDING, "foobar.jpg", 1,
+                new Date(), Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        final Task<Document> firstTask = mDocumentTaskManager.pollDocument(firstDocument);
+        final Task<Document> secondTask = mDocumentTaskManager.pollDocument(secondDocument);
+        firstTask.waitForCompletion();
+        secondTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, firstTask.getResult().getState());
+        assertEquals(Document.ProcessingState.COMPLETED, secondTask.getResult().getState());
+        // The documents were not requested individually after the document list's 429 response
+        assertEquals(Arrays.asList(20L, 20L), retryAfterDelays);
+    }
+
+    @Test
+    public void testPollDocumentFailsWithTheErrorOfOtherResponses() throws Exception {
+        final VolleyError error = new VolleyError(
+                new NetworkResponse(500, new byte[0], false, 0, Collections.<Header>emptyList()));
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(error));
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertSame(error, documentTask.getError());
+        verify(mApiCommunicator, times(1)).getDocument(eq("1234"), any(Session.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMultiplexedPollingRequestsPendingDocumentsTogether() throws Exception {
+        final JSONObject firstList = new JSONObject();
+        firstList.put("totalCount", 2);
+        firstList.put("documents", new JSONArray()
+                .put(createDocumentJSONTask("1234", "PENDING").getResult())
+                .put(createDocumentJSONTask("5678", "COMPLETED").getResult()));
+        when(mApiCommunicator.getDocumentList(anyInt(), anyInt(), any(Session.class))).thenReturn(
+                Task.forResult(firstList));
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "COMPLETED"));
+        mDocumentTaskManager.setMultiplexedPolling(true);
+        mDocumentTaskManager.setPollingStrategy(new PollingStrategy() {
+            @Override
+            public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+                return 10;
+            }
+        });
+        final Document firstDocument = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1,
+                new Date(), Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+        final Document secondDocument = new Document("5678", Document.ProcessingState.PENDING, "foobar.jpg", 1,
+                new Date(), Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        final Task<Document> firstTask = mDocumentTaskManager.pollDocument(firstDocument);
+        final Task<Document> secondTask = mDocumentTaskManager.pollDocument(secondDocument);
+        secondTask.waitForCompletion();
+        firstTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, firstTask.getResult().getState());
+        assertEquals(Document.ProcessingState.COMPLETED, secondTask.getResult().getState());
+        verify(mApiCommunicator).getDocumentList(anyInt(), anyInt(), any(Session.class));
+        verify(mApiCommunicator, never()).getDocument(eq("5678"), any(Session.class));
+    }
+
+    @Test
+    public void testMultiplexedPollingRequestsDocumentsIndividuallyWhenDocumentListFails() throws Exception {
+        when(mApiCommunicator.getDocumentList(anyInt(), anyInt(), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(new Exception("list failed")));
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "COMPLETED"));
+        when(mApiCommunicator.getDocument(eq("5678"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("5678", "COMPLETED"));
+        mDocumentTaskManager.setMultiplexedPolling(true);
+        final Document firstDocument = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1,
+                new Date(), Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+        final Document secondDocument = new Document("5678", Document.ProcessingState.PENDING, "foobar.jpg", 1,
+                new Date(), Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        final Task<Document> firstTask = mDocumentTaskManager.pollDocument(firstDocument);
+        final Task<Document> secondTask = mDocumentTaskManager.pollDocument(secondDocument);
+        firstTask.waitForCompletion();
+        secondTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, firstTask.getResult().getState());
+        assertEquals(Document.ProcessingState.COMPLETED, secondTask.getResult().getState());
+    }
+
+    @Test
+    public void testWatchRequestsNewDocumentBeforeTheScheduledTick() throws Exception {
+        final CountDownLatch firstRequested = new CountDownLatch(1);
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenAnswer(new Answer<Task<JSONObject>>() {
+            @Override
+            public Task<JSONObject> answer(final InvocationOnMock invocation) throws Throwable {
+                firstRequested.countDown();
+                return createDocumentJSONTask("1234", "PENDING");
+            }
+        });
+        when(mApiCommunicator.getDocument(eq("5678"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("5678", "COMPLETED"));
+        // The pending document is requested again only after a minute
+        mDocumentTaskManager.setPollingStrategy(new PollingStrategy() {
+            @Override
+            public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+                return 60000;
+            }
+        });
+        final CountDownLatch processed = new CountDownLatch(1);
+        final DocumentWatchListener listener = new DocumentWatchListener() {
+            @Override
+            public void onDocumentProcessed(@NonNull final Document document) {
+                processed.countDown();
+            }
+
+            @Override
+            public void onError(@NonNull final String documentId, @NonNull final Exception error) {
+                fail("Unexpected error: " + error);
+            }
+        };
+
+        final DocumentWatch firstWatch = mDocumentTaskManager.watch(Collections.singletonList("1234"), listener);
+        assertTrue(firstRequested.await(5, TimeUnit.SECONDS));
+        final DocumentWatch secondWatch = mDocumentTaskManager.watch(Collections.singletonList("5678"), listener);
+
+        try {
+            assertTrue(processed.await(5, TimeUnit.SECONDS));
+        } finally {
+            firstWatch.cancel();
+            secondWatch.cancel();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPollDocumentSharesPollingOfTheSameDocumentId() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "PENDING"), createDocumentJSONTask("1234", "COMPLETED"));
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+        Document sameDocument = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        Task<Document> sameDocumentTask = mDocumentTaskManager.pollDocument(sameDocument);
+        documentTask.waitForCompletion();
+        sameDocumentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        assertEquals(Document.ProcessingState.COMPLETED, sameDocumentTask.getResult().getState());
+        verify(mApiCommunicator, times(2)).getDocument(eq("1234"), any(Session.class));
+    }
+
+    @Test
+    public void testPollDocumentContinuesSharedPollingUntilAllCallersCancelled() throws Exception {
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "PENDING"), createDocumentJSONTask("1234", "COMPLETED"));
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        Task<Document> cancelledTask = mDocumentTaskManager.pollDocument(document);
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        mDocumentTaskManager.cancelDocumentPolling(document);
+        documentTask.waitForCompletion();
+
+        assertFalse(documentTask.isCancelled());
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        assertSame(documentTask.getResult(), cancelledTask.getResult());
+    }
+
+    @Test
+    public void testGetDocumentSharesRequestOfTheSameDocumentByIdAndUri() throws Exception {
+        final Task<JSONObject>.TaskCompletionSource response = Task.create();
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(response.getTask());
+
+        Task<Document> documentTask = mDocumentTaskManager.getDocument("1234");
+        Task<Document> sameDocumentTask =
+                mDocumentTaskManager.getDocument(Uri.parse("https://api.gini.net/documents/1234"));
+        response.setResult(createDocumentJSONTask("1234").getResult());
+        documentTask.waitForCompletion();
+        sameDocumentTask.waitForCompletion();
+
+        assertEquals("1234", sameDocumentTask.getResult().getId());
+        verify(mApiCommunicator, never()).getDocument(any(Uri.class), any(Session.class));
+    }
+
+    @Test
+    public void testWatchNotifiesListenerOfProcessedDocuments() throws Exception {
+        final JSONObject documentList = new JSONObject();
+        documentList.put("totalCount", 2);
+        documentList.put("documents", new JSONArray()
+                .put(createDocumentJSONTask("1234", "COMPLETED").getResult())
+                .put(createDocumentJSONTask("5678", "ERROR").getResult()));
+        when(mApiCommunicator.getDocumentList(anyInt(), anyInt(), any(Session.class))).thenReturn(
+                Task.forResult(documentList));
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Map<String, Document.ProcessingState> states = new ConcurrentHashMap<>();
+
+        mDocumentTaskManager.watch(Arrays.asList("1234", "5678"), new DocumentWatchListener() {
+            @Override
+            public void onDocumentProcessed(@NonNull final Document document) {
+                states.put(document.getId(), document.getState());
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(@NonNull final String documentId, @NonNull final Exception error) {
+                fail("Unexpected error: " + error);
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Document.ProcessingState.COMPLETED, states.get("1234"));
+        assertEquals(Document.ProcessingState.ERROR, states.get("5678"));
+        verify(mApiCommunicator).getDocumentList(anyInt(), anyInt(), any(Session.class));
+        verify(mApiCommunicator, never()).getDocument(any(String.class), any(Session.class));
+    }
+
+    @Test
+    public void testPollDocumentRemovesDocumentFromPendingDocumentRegistryWhenDone() throws Exception {
+        final PendingDocumentRegistry registry = new PendingDocumentRegistry(getApplicationContext()
+                .getSharedPreferences("GiniPendingDocumentRegistryTest", Context.MODE_PRIVATE));
+        registry.clear();
+        mDocumentTaskManager.setPendingDocumentRegistry(registry);
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "COMPLETED"));
+        final Document document = Document.fromApiResponse(createDocumentJSONTask("1234", "PENDING").getResult());
+
+        final Task<Document> pollingTask = mDocumentTaskManager.pollDocument(document);
+        pollingTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, pollingTask.getResult().getState());
+        assertTrue(registry.getPendingDocuments().isEmpty());
+    }
+
+    @Test
+    public void testResumePendingPollingsNotifiesListenerOfProcessedDocuments() throws Exception {
+        final PendingDocumentRegistry registry = new PendingDocumentRegistry(getApplicationContext()
+                .getSharedPreferences("GiniPendingDocumentRegistryTest", Context.MODE_PRIVATE));
+        registry.clear();
+        registry.add("1234", System.currentTimeMillis() - 10000);
+        mDocumentTaskManager.setPendingDocumentRegistry(registry);
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "COMPLETED"));
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Map<String, Document.ProcessingState> states = new ConcurrentHashMap<>();
+
+        final Task<List<String>> resumeTask = mDocumentTaskManager.resumePendingPollings(
+                new DocumentWatchListener() {
+                    @Override
+                    public void onDocumentProcessed(@NonNull final Document document) {
+                        states.put(document.getId(), document.getState());
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(@NonNull final String documentId, @NonNull final Exception error) {
+                        fail("Unexpected error: " + error);
+                    }
+                });
+        resumeTask.waitForCompletion();
+
+        assertEquals(Collections.singletonList("1234"), resumeTask.getResult());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Document.ProcessingState.COMPLETED, states.get("1234"));
+        assertTrue(registry.getPendingDocuments().isEmpty());
+    }
+
+    @Test
+    public void testResumePendingPollingsResumesOnlyOnce() throws Exception {
+        final PendingDocumentRegistry registry = new PendingDocumentRegistry(getApplicationContext()
+                .getSharedPreferences("GiniPendingDocumentRegistryTest", Context.MODE_PRIVATE));
+        registry.clear();
+        registry.add("1234", System.currentTimeMillis() - 10000);
+        mDocumentTaskManager.setPendingDocumentRegistry(registry);
+        final Task<JSONObject>.TaskCompletionSource response = Task.create();
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(response.getTask());
+
+        final Task<List<String>> firstResumeTask = mDocumentTaskManager.resumePendingPollings(null);
+        firstResumeTask.waitForCompletion();
+        final Task<List<String>> secondResumeTask = mDocumentTaskManager.resumePendingPollings(null);
+        secondResumeTask.waitForCompletion();
+        response.setResult(createDocumentJSONTask("1234", "COMPLETED").getResult());
+
+        assertEquals(Collections.singletonList("1234"), firstResumeTask.getResult());
+        assertTrue(secondResumeTask.getResult().isEmpty());
+    }
+
+    @Test
+    public void testCancelledWatchDoesNotNotifyListener() throws Exception {
+        // Continuations run synchronously, so the cancellation and the response are processed when the calls return
+        mDocumentTaskManager.setParsingExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        });
+        final CountDownLatch requested = new CountDownLatch(1);
+        final Task<JSONObject>.TaskCompletionSource response = Task.create();
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenAnswer(new Answer<Task<JSONObject>>() {
+            @Override
+            public Task<JSONObject> answer(final InvocationOnMock invocation) {
+                requested.countDown();
+                return response.getTask();
+            }
+        });
+        final DocumentWatchListener listener = Mockito.mock(DocumentWatchListener.class);
+
+        final DocumentWatch watch = mDocumentTaskManager.watch(Collections.singletonList("1234"), listener);
+        assertTrue(requested.await(5, TimeUnit.SECONDS));
+        watch.cancel();
+        // The document is processed only after the watch was cancelled
+        response.setResult(createDocumentJSONTask("1234", "COMPLETED").getResult());
+
+        assertTrue(watch.isCancelled());
+        verify(listener, never()).onDocumentProcessed(any(Document.class));
+        verify(listener, never()).onError(any(String.class), any(Exception.class));
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testPollDocumentCancellationAffectsSpecifiedDocumentOnly() throws IOException, JSONException, InterruptedException {
@@ -837,9 +1706,30 @@ public class DocumentTaskManagerTest {
         assertNotNull(responseData);
     }
 
+    @Test
+    public void testContinuationsRunOnTheParsingExecutor() throws Exception {
+        final AtomicInteger executedCount = new AtomicInteger();
+        mDocumentTaskManager.setParsingExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                executedCount.incrementAndGet();
+                runnable.run();
+            }
+        });
+        when(mApiCommunicator.getLayoutForDocument(eq("1234"), any(Session.class))).thenReturn(createLayoutJSONTask());
+        final Document document = Document.fromApiResponse(createDocumentJSONTask("1234", "COMPLETED").getResult());
+
+        final Task<JSONObject> layoutTask = mDocumentTaskManager.getLayout(document);
+        layoutTask.waitForCompletion();
+
+        assertNotNull(layoutTask.getResult());
+        assertTrue(executedCount.get() > 0);
+    }
+
     @Test
     public void testGetExtractionsParsesCompoundExtractions() throws Exception {
-        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
         Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
                 Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
                 new ArrayList<Uri>());
@@ -874,7 +1764,8 @@ public class DocumentTaskManagerTest {
 
     @Test
     public void testGetAllExtractionsResolvesToExtractionResult() throws Exception {
-        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
         Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
                 Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
                 new ArrayList<Uri>());
@@ -893,7 +1784,8 @@ public class DocumentTaskManagerTest {
 
     @Test
     public void testGetExtractionsParsesReturnReasons() throws Exception {
-        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
         Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
                 Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
                 new ArrayList<Uri>());
@@ -913,4 +1805,235 @@ public class DocumentTaskManagerTest {
         assertEquals("r1", returnReason.getId());
         assertEquals("Anderes Aussehen als angeboten", returnReason.getLocalizedLabels().get("de"));
     }
+
+    @Test
+    public void testGetAllExtractionsReturnsCachedExtractions() throws Exception {
+        final ExtractionsCache extractionsCache = new ExtractionsCache();
+        mDocumentTaskManager.setExtractionsCache(extractionsCache);
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        final Document document = createDocument("1234");
+
+        final Task<ExtractionsContainer> firstTask = mDocumentTaskManager.getAllExtractions(document);
+        firstTask.waitForCompletion();
+        final Task<ExtractionsContainer> secondTask = mDocumentTaskManager.getAllExtractions(document);
+        secondTask.waitForCompletion();
+
+        assertSame(firstTask.getResult(), secondTask.getResult());
+        verify(mApiCommunicator, times(1)).getExtractionsContainer(eq("1234"), any(Session.class));
+        assertEquals(1, extractionsCache.getHitCount());
+        assertEquals(1, extractionsCache.getMissCount());
+    }
+
+    @Test
+    public void testDeprecatedGetExtractionsDoesNotUseTheExtractionsCache() throws Exception {
+        final ExtractionsCache extractionsCache = new ExtractionsCache();
+        mDocumentTaskManager.setExtractionsCache(extractionsCache);
+        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+
+        mDocumentTaskManager.getExtractions(createDocument("1234")).waitForCompletion();
+
+        assertEquals(0, extractionsCache.getMissCount());
+        assertEquals(0, extractionsCache.getSize());
+    }
+
+    @Test
+    public void testGetAllExtractionsDoesNotCacheExtractionsOfPendingDocuments() throws Exception {
+        final ExtractionsCache extractionsCache = new ExtractionsCache();
+        mDocumentTaskManager.setExtractionsCache(extractionsCache);
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        final Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar", 1, new Date(),
+                Document.SourceClassification.NATIVE, Uri.parse(""), new ArrayList<Uri>(),
+                new ArrayList<Uri>());
+
+        mDocumentTaskManager.getAllExtractions(document).waitForCompletion();
+        mDocumentTaskManager.getAllExtractions(document).waitForCompletion();
+
+        verify(mApiCommunicator, times(2)).getExtractionsContainer(eq("1234"), any(Session.class));
+        assertEquals(0, extractionsCache.getSize());
+    }
+
+    @Test
+    public void testSendFeedbackRemovesCachedExtractions() throws Exception {
+        final ExtractionsCache extractionsCache = new ExtractionsCache();
+        mDocumentTaskManager.setExtractionsCache(extractionsCache);
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        when(mApiCommunicator.sendFeedback(eq("1234"), any(JSONObject.class), any(JSONObject.class),
+                any(Session.class))).thenReturn(Task.forResult(new JSONObject()));
+        final Document document = createDocument("1234");
+
+        final Task<ExtractionsContainer> extractionsTask = mDocumentTaskManager.getAllExtractions(document);
+        extractionsTask.waitForCompletion();
+        final ExtractionsContainer extractions = extractionsTask.getResult();
+        mDocumentTaskManager.sendFeedbackForExtractions(document, extractions.getSpecificExtractions(),
+                extractions.getCompoundExtractions()).waitForCompletion();
+        mDocumentTaskManager.getAllExtractions(document).waitForCompletion();
+
+        verify(mApiCommunicator, times(2)).getExtractionsContainer(eq("1234"), any(Session.class));
+    }
+
+    @Test
+    public void testDeleteDocumentRemovesCachedExtractions() throws Exception {
+        final ExtractionsCache extractionsCache = new ExtractionsCache();
+        mDocumentTaskManager.setExtractionsCache(extractionsCache);
+        when(mApiCommunicator.getExtractionsContainer(eq("1234"), any(Session.class))).thenReturn(
+                createExtractionsContainerTask());
+        when(mApiCommunicator.deleteDocument(eq("1234"), any(Session.class))).thenReturn(Task.forResult(""));
+        final Document document = createDocument("1234");
+
+        mDocumentTaskManager.getAllExtractions(document).waitForCompletion();
+        assertEquals(1, extractionsCache.getSize());
+        mDocumentTaskManager.deleteDocument("1234").waitForCompletion();
+
+        assertEquals(0, extractionsCache.getSize());
+    }
+
+    private OfflineDocumentCache createOfflineDocumentCache() {
+        final OfflineDocumentCache offlineDocumentCache = new OfflineDocumentCache(
+                new File(getApplicationContext().getCacheDir(), "DocumentTaskManagerTest"));
+        offlineDocumentCache.clear();
+        return offlineDocumentCache;
+    }
+
+    private static NetworkResponse createNetworkResponse(final int statusCode, @Nullable final byte[] data,
+            @Nullable final String eTag) {
+        final List<Header> headers = eTag != null
+                ? Collections.singletonList(new Header("ETag", eTag))
+                : Collections.<Header>emptyList();
+        return new NetworkResponse(statusCode, data, statusCode == 304, 0, headers);
+    }
+
+    private byte[] readAsset(final String filename) throws IOException {
+        final InputStream inputStream = getApplicationContext().getResources().getAssets().open(filename);
+        try {
+            return TestUtils.createByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Test
+    public void testGetDocumentReturnsStoredDocumentWithoutSession() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(createDocumentJSONTask("1234"));
+
+        mDocumentTaskManager.getDocument("1234").waitForCompletion();
+        assertNotNull(offlineDocumentCache.getDocument("1234"));
+
+        // Offline and without a session
+        when(mSessionManager.getSession()).thenReturn(Task.<Session>forError(new Exception("offline")));
+        final Task<Document> documentTask = mDocumentTaskManager.getDocument("1234");
+        documentTask.waitForCompletion();
+
+        assertEquals("1234", documentTask.getResult().getId());
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+    }
+
+    @Test
+    public void testGetDocumentDoesNotStorePendingDocuments() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "PENDING"));
+
+        mDocumentTaskManager.getDocument("1234").waitForCompletion();
+
+        assertNull(offlineDocumentCache.getDocument("1234"));
+    }
+
+    @Test
+    public void testGetAllExtractionsReturnsStoredExtractionsAndRevalidatesThem() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        final byte[] response = readAsset("extractions.json");
+        offlineDocumentCache.putExtractions("1234", response, null, offlineDocumentCache.getGeneration());
+        final CountDownLatch revalidated = new CountDownLatch(1);
+        when(mApiCommunicator.getExtractionsResponse(eq("1234"), nullable(String.class), any(Session.class)))
+                .thenAnswer(new Answer<Task<NetworkResponse>>() {
+                    @Override
+                    public Task<NetworkResponse> answer(final InvocationOnMock invocation) {
+                        revalidated.countDown();
+                        return Task.forResult(createNetworkResponse(200, response, null));
+                    }
+                });
+
+        final Task<ExtractionsContainer> extractionsTask =
+                mDocumentTaskManager.getAllExtractions(createDocument("1234"));
+        extractionsTask.waitForCompletion();
+
+        assertEquals("24.99:EUR",
+                extractionsTask.getResult().getSpecificExtractions().get("amountToPay").getValue());
+        assertTrue(revalidated.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testGetAllExtractionsStoresRequestedExtractions() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        final byte[] response = readAsset("extractions.json");
+        when(mApiCommunicator.getExtractionsResponse(eq("1234"), nullable(String.class), any(Session.class)))
+                .thenReturn(Task.forResult(createNetworkResponse(200, response, "\"1\"")));
+
+        mDocumentTaskManager.getAllExtractions(createDocument("1234")).waitForCompletion();
+
+        assertArrayEquals(response, offlineDocumentCache.getExtractions("1234"));
+        assertEquals("\"1\"", offlineDocumentCache.getExtractionsETag("1234"));
+    }
+
+    @Test
+    public void testGetAllExtractionsRevalidatesStoredExtractionsWithTheirETag() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        final byte[] response = readAsset("extractions.json");
+        offlineDocumentCache.putExtractions("1234", response, "\"1\"", offlineDocumentCache.getGeneration());
+        final CountDownLatch revalidated = new CountDownLatch(1);
+        when(mApiCommunicator.getExtractionsResponse(eq("1234"), eq("\"1\""), any(Session.class)))
+                .thenAnswer(new Answer<Task<NetworkResponse>>() {
+                    @Override
+                    public Task<NetworkResponse> answer(final InvocationOnMock invocation) {
+                        revalidated.countDown();
+                        return Task.forResult(createNetworkResponse(304, null, "\"1\""));
+                    }
+                });
+
+        final Task<ExtractionsContainer> extractionsTask =
+                mDocumentTaskManager.getAllExtractions(createDocument("1234"));
+        extractionsTask.waitForCompletion();
+
+        assertNotNull(extractionsTask.getResult());
+        assertTrue(revalidated.await(1, TimeUnit.SECONDS));
+        assertArrayEquals(response, offlineDocumentCache.getExtractions("1234"));
+        assertEquals("\"1\"", offlineDocumentCache.getExtractionsETag("1234"));
+    }
+
+    @Test
+    public void testSendFeedbackRemovesStoredExtractions() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        offlineDocumentCache.putDocument("1234", new byte[]{1}, offlineDocumentCache.getGeneration());
+        offlineDocumentCache.putExtractions("1234", new byte[]{1}, null, offlineDocumentCache.getGeneration());
+        when(mApiCommunicator.sendFeedback(eq("1234"), any(JSONObject.class), any(Session.class))).thenReturn(
+                Task.forResult(new JSONObject()));
+
+        mDocumentTaskManager.sendFeedbackForExtractions(createDocument("1234"),
+                new HashMap<String, SpecificExtraction>()).waitForCompletion();
+
+        assertNotNull(offlineDocumentCache.getDocument("1234"));
+        assertNull(offlineDocumentCache.getExtractions("1234"));
+    }
+
+    @Test
+    public void testDeleteDocumentRemovesStoredDocument() throws Exception {
+        final OfflineDocumentCache offlineDocumentCache = createOfflineDocumentCache();
+        mDocumentTaskManager.setOfflineDocumentCache(offlineDocumentCache);
+        offlineDocumentCache.putDocument("1234", new byte[]{1}, offlineDocumentCache.getGeneration());
+        when(mApiCommunicator.deleteDocument(eq("1234"), any(Session.class))).thenReturn(Task.forResult(""));
+
+        mDocumentTaskManager.deleteDocument("1234").waitForCompletion();
+
+        assertNull(offlineDocumentCache.getDocument("1234"));
+    }
 }
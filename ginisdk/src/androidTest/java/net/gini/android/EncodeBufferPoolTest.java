@@ -0,0 +1,52 @@
+package net.gini.android;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import net.gini.android.EncodeBufferPool.EncodeBuffer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class EncodeBufferPoolTest {
+
+    @Test
+    public void testEstimatedJpegSizeIsSmallerForLowerQualities() {
+        final Bitmap bitmap = Bitmap.createBitmap(2000, 2000, Bitmap.Config.ARGB_8888);
+
+        assertTrue(EncodeBufferPool.estimateJpegSize(bitmap, 20) < EncodeBufferPool.estimateJpegSize(bitmap, 90));
+        assertTrue(EncodeBufferPool.estimateJpegSize(bitmap, 100) <= bitmap.getByteCount());
+    }
+
+    @Test
+    public void testDocumentSourceContainsTheWrittenBytes() throws IOException {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        final EncodeBuffer encodeBuffer = new EncodeBufferPool(EncodeBufferPool.DEFAULT_SIZE_LIMIT)
+                .obtainForJpeg(bitmap, 50);
+        encodeBuffer.write(new byte[]{0x01, 0x02, 0x03});
+
+        final DocumentSource documentSource = encodeBuffer.toDocumentSource();
+
+        assertEquals(3, documentSource.getLength());
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final InputStream inputStream = documentSource.openStream();
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            outputStream.write(b);
+        }
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x03}, outputStream.toByteArray());
+        encodeBuffer.close();
+    }
+}
@@ -0,0 +1,82 @@
+package net.gini.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import net.gini.android.models.CompoundExtraction;
+import net.gini.android.models.ExtractionsContainer;
+import net.gini.android.models.ReturnReason;
+import net.gini.android.models.SpecificExtraction;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ExtractionsCacheTest {
+
+    private ExtractionsContainer createExtractionsContainer() {
+        return new ExtractionsContainer(Collections.<String, SpecificExtraction>emptyMap(),
+                Collections.<String, CompoundExtraction>emptyMap(), Collections.<ReturnReason>emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThrowsWithLessThanOneEntry() {
+        new ExtractionsCache(0);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedExtractionsAreEvictedWhenFull() {
+        final ExtractionsCache cache = new ExtractionsCache(2);
+        final ExtractionsContainer first = createExtractionsContainer();
+        cache.put("1111", first, cache.getGeneration());
+        cache.put("2222", createExtractionsContainer(), cache.getGeneration());
+        cache.get("1111");
+        cache.put("3333", createExtractionsContainer(), cache.getGeneration());
+
+        assertSame(first, cache.get("1111"));
+        assertNull(cache.get("2222"));
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        final ExtractionsCache cache = new ExtractionsCache();
+        cache.get("1234");
+        cache.put("1234", createExtractionsContainer(), cache.getGeneration());
+        cache.get("1234");
+        cache.get("1234");
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testExtractionsRequestedBeforeARemovalAreNotCached() {
+        final ExtractionsCache cache = new ExtractionsCache();
+        final long generation = cache.getGeneration();
+        cache.remove("1234");
+        cache.put("1234", createExtractionsContainer(), generation);
+
+        assertNull(cache.get("1234"));
+    }
+
+    @Test
+    public void testClearRemovesAllExtractions() {
+        final ExtractionsCache cache = new ExtractionsCache();
+        cache.put("1111", createExtractionsContainer(), cache.getGeneration());
+        cache.put("2222", createExtractionsContainer(), cache.getGeneration());
+
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("1111"));
+    }
+}
@@ -0,0 +1,112 @@
+package net.gini.android;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class OfflineDocumentCacheTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() {
+        mDirectory = new File(getApplicationContext().getCacheDir(), "OfflineDocumentCacheTest");
+        new OfflineDocumentCache(mDirectory).clear();
+    }
+
+    @After
+    public void tearDown() {
+        new OfflineDocumentCache(mDirectory).clear();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThrowsWithMaxSizeLessThanOne() {
+        new OfflineDocumentCache(mDirectory, 0);
+    }
+
+    @Test
+    public void testResponsesArePersisted() {
+        final OfflineDocumentCache cache = new OfflineDocumentCache(mDirectory);
+        cache.putDocument("1234", new byte[]{1, 2}, cache.getGeneration());
+        cache.putExtractions("1234", new byte[]{3}, null, cache.getGeneration());
+
+        final OfflineDocumentCache restoredCache = new OfflineDocumentCache(mDirectory);
+        assertArrayEquals(new byte[]{1, 2}, restoredCache.getDocument("1234"));
+        assertArrayEquals(new byte[]{3}, restoredCache.getExtractions("1234"));
+        assertEquals(3, restoredCache.getSizeBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResponsesAreEvictedWhenFull() {
+        final OfflineDocumentCache cache = new OfflineDocumentCache(mDirectory, 25);
+        cache.putDocument("1111", new byte[10], cache.getGeneration());
+        cache.putDocument("2222", new byte[10], cache.getGeneration());
+        cache.getDocument("1111");
+        cache.putDocument("3333", new byte[10], cache.getGeneration());
+
+        assertNotNull(cache.getDocument("1111"));
+        assertNull(cache.getDocument("2222"));
+        assertNotNull(cache.getDocument("3333"));
+        assertEquals(20, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testResponsesRequestedBeforeARemovalAreNotStored() {
+        final OfflineDocumentCache cache = new OfflineDocumentCache(mDirectory);
+        final long generation = cache.getGeneration();
+        cache.removeExtractions("1234");
+        cache.putExtractions("1234", new byte[]{1}, null, generation);
+
+        assertNull(cache.getExtractions("1234"));
+    }
+
+    @Test
+    public void testRemoveRemovesDocumentAndExtractions() {
+        final OfflineDocumentCache cache = new OfflineDocumentCache(mDirectory);
+        cache.putDocument("1234", new byte[]{1}, cache.getGeneration());
+        cache.putExtractions("1234", new byte[]{2}, "\"1\"", cache.getGeneration());
+
+        cache.remove("1234");
+
+        assertNull(cache.getDocument("1234"));
+        assertNull(cache.getExtractions("1234"));
+        assertNull(cache.getExtractionsETag("1234"));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testExtractionsETagIsStoredWithTheExtractions() {
+        final OfflineDocumentCache cache = new OfflineDocumentCache(mDirectory);
+        cache.putExtractions("1234", new byte[]{1}, "\"1\"", cache.getGeneration());
+
+        assertEquals("\"1\"", new OfflineDocumentCache(mDirectory).getExtractionsETag("1234"));
+
+        cache.putExtractions("1234", new byte[]{2}, null, cache.getGeneration());
+
+        assertNull(cache.getExtractionsETag("1234"));
+    }
+
+    @Test
+    public void testIdsWhichAreNotFileNamesAreNotCached() {
+        final OfflineDocumentCache cache = new OfflineDocumentCache(mDirectory);
+        cache.putDocument("../1234", new byte[]{1}, cache.getGeneration());
+
+        assertNull(cache.getDocument("../1234"));
+        assertEquals(0, cache.getSizeBytes());
+    }
+}
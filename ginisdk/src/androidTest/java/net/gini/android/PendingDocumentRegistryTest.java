@@ -0,0 +1,90 @@
+package net.gini.android;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PendingDocumentRegistryTest {
+
+    private SharedPreferences mSharedPreferences;
+
+    @Before
+    public void setUp() {
+        mSharedPreferences = getApplicationContext().getSharedPreferences("GiniPendingDocumentRegistryTest",
+                Context.MODE_PRIVATE);
+        mSharedPreferences.edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        mSharedPreferences.edit().clear().commit();
+    }
+
+    @Test
+    public void testPendingDocumentsArePersisted() {
+        final long startTimeMs = System.currentTimeMillis();
+        new PendingDocumentRegistry(mSharedPreferences).add("1234", startTimeMs);
+
+        final Map<String, Long> pendingDocuments = new PendingDocumentRegistry(mSharedPreferences)
+                .getPendingDocuments();
+
+        assertEquals(1, pendingDocuments.size());
+        assertEquals(startTimeMs, (long) pendingDocuments.get("1234"));
+    }
+
+    @Test
+    public void testRemovedDocumentsAreNotPending() {
+        final PendingDocumentRegistry registry = new PendingDocumentRegistry(mSharedPreferences);
+        registry.add("1234", System.currentTimeMillis());
+        registry.add("5678", System.currentTimeMillis());
+
+        registry.remove("1234");
+
+        assertEquals(1, registry.getPendingDocuments().size());
+        assertTrue(registry.getPendingDocuments().containsKey("5678"));
+    }
+
+    @Test
+    public void testExpiredDocumentsAreRemoved() {
+        final PendingDocumentRegistry registry = new PendingDocumentRegistry(mSharedPreferences, 1000);
+        registry.add("1234", System.currentTimeMillis() - 2000);
+        registry.add("5678", System.currentTimeMillis());
+
+        final Map<String, Long> pendingDocuments = registry.getPendingDocuments();
+
+        assertEquals(1, pendingDocuments.size());
+        assertTrue(pendingDocuments.containsKey("5678"));
+        assertEquals(1, mSharedPreferences.getAll().size());
+    }
+
+    @Test
+    public void testClearRemovesAllDocuments() {
+        final PendingDocumentRegistry registry = new PendingDocumentRegistry(mSharedPreferences);
+        registry.add("1234", System.currentTimeMillis());
+
+        registry.clear();
+
+        assertTrue(registry.getPendingDocuments().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxAgeCantBeLessThanOne() {
+        new PendingDocumentRegistry(mSharedPreferences, 0);
+    }
+}
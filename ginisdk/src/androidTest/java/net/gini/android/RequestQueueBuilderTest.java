@@ -4,12 +4,20 @@ import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 import androidx.test.filters.SmallTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.volley.Request;
 import com.android.volley.RequestQueue;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.VolleyError;
 import com.android.volley.toolbox.NoCache;
+import com.android.volley.toolbox.StringRequest;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -72,4 +80,18 @@ public class RequestQueueBuilderTest {
         assertNotNull(requestQueue);
     }
 
+    @Test
+    public void testResponsesArePostedWithTheResponseDelivery() {
+        final ResponseDelivery responseDelivery = mock(ResponseDelivery.class);
+        RequestQueue requestQueue = new RequestQueueBuilder(getApplicationContext())
+                .setCache(new NoCache())
+                .setResponseDelivery(responseDelivery)
+                .build();
+
+        requestQueue.add(new StringRequest("http://127.0.0.1:1/", null, null));
+
+        verify(responseDelivery, timeout(5000)).postError(any(Request.class), any(VolleyError.class));
+        requestQueue.stop();
+    }
+
 }
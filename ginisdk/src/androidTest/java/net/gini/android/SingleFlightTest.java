@@ -0,0 +1,93 @@
+package net.gini.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bolts.Task;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SingleFlightTest {
+
+    @Test
+    public void testSharesRunningTaskWithTheSameKey() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final Task<String>.TaskCompletionSource completionSource = Task.create();
+        final AtomicInteger startedTasks = new AtomicInteger();
+        final Callable<Task<String>> taskFactory = new Callable<Task<String>>() {
+            @Override
+            public Task<String> call() throws Exception {
+                startedTasks.incrementAndGet();
+                return completionSource.getTask();
+            }
+        };
+
+        final Task<String> first = singleFlight.execute("1234", taskFactory);
+        final Task<String> second = singleFlight.execute("1234", taskFactory);
+        completionSource.setResult("result");
+        first.waitForCompletion();
+
+        assertSame(first, second);
+        assertEquals("result", second.getResult());
+        assertEquals(1, startedTasks.get());
+    }
+
+    @Test
+    public void testStartsNewTaskAfterCompletion() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final AtomicInteger startedTasks = new AtomicInteger();
+        final Callable<Task<String>> taskFactory = new Callable<Task<String>>() {
+            @Override
+            public Task<String> call() throws Exception {
+                return Task.forResult("result" + startedTasks.incrementAndGet());
+            }
+        };
+
+        final Task<String> first = singleFlight.execute("1234", taskFactory);
+        first.waitForCompletion();
+        final Task<String> second = singleFlight.execute("1234", taskFactory);
+        second.waitForCompletion();
+
+        assertNotSame(first, second);
+        assertEquals("result2", second.getResult());
+    }
+
+    @Test
+    public void testDoesNotShareTasksWithDifferentKeys() {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final Callable<Task<String>> taskFactory = new Callable<Task<String>>() {
+            @Override
+            public Task<String> call() throws Exception {
+                return Task.<String>create().getTask();
+            }
+        };
+
+        assertNotSame(singleFlight.execute("1234", taskFactory), singleFlight.execute("5678", taskFactory));
+    }
+
+    @Test
+    public void testFailsWhenTaskFactoryThrowsCheckedException() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+        final Task<String> task = singleFlight.execute("1234", new Callable<Task<String>>() {
+            @Override
+            public Task<String> call() throws Exception {
+                throw new Exception("failed");
+            }
+        });
+        task.waitForCompletion();
+
+        assertTrue(task.isFaulted());
+    }
+}
@@ -0,0 +1,105 @@
+package net.gini.android;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class UploadDeduplicationCacheTest {
+
+    private SharedPreferences mSharedPreferences;
+
+    @Before
+    public void setUp() {
+        mSharedPreferences = getApplicationContext().getSharedPreferences("GiniUploadDeduplicationCacheTest",
+                Context.MODE_PRIVATE);
+        mSharedPreferences.edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        mSharedPreferences.edit().clear().commit();
+    }
+
+    private JSONObject createDocumentJSON(final String documentId) throws JSONException {
+        final JSONObject links = new JSONObject();
+        links.put("document", "https://api.gini.net/documents/" + documentId);
+        final JSONObject document = new JSONObject();
+        document.put("id", documentId);
+        document.put("progress", "COMPLETED");
+        document.put("pageCount", 1);
+        document.put("name", "page.jpg");
+        document.put("creationDate", 1360623867402L);
+        document.put("sourceClassification", "SCANNED");
+        document.put("_links", links);
+        return document;
+    }
+
+    @Test
+    public void testCachedDocumentIsPersisted() throws JSONException {
+        new UploadDeduplicationCache(mSharedPreferences).put("hash", createDocumentJSON("1234"));
+
+        assertEquals("1234", new UploadDeduplicationCache(mSharedPreferences).get("hash").getId());
+    }
+
+    @Test
+    public void testOldestDocumentIsEvictedWhenFull() throws Exception {
+        final UploadDeduplicationCache cache = new UploadDeduplicationCache(mSharedPreferences, 2,
+                UploadDeduplicationCache.DEFAULT_MAX_AGE_MS);
+        cache.put("first", createDocumentJSON("1111"));
+        Thread.sleep(5);
+        cache.put("second", createDocumentJSON("2222"));
+        Thread.sleep(5);
+        cache.put("third", createDocumentJSON("3333"));
+
+        assertNull(cache.get("first"));
+        assertNotNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+    }
+
+    @Test
+    public void testExpiredDocumentIsNotReturned() throws Exception {
+        final UploadDeduplicationCache cache = new UploadDeduplicationCache(mSharedPreferences, 2, 1);
+        cache.put("hash", createDocumentJSON("1234"));
+        Thread.sleep(5);
+
+        assertNull(cache.get("hash"));
+    }
+
+    @Test
+    public void testRemovedDocumentIsNotReturned() throws JSONException {
+        final UploadDeduplicationCache cache = new UploadDeduplicationCache(mSharedPreferences);
+        cache.put("hash", createDocumentJSON("1234"));
+
+        cache.removeDocument("1234");
+
+        assertNull(cache.get("hash"));
+    }
+
+    @Test
+    public void testContentHashDependsOnDocumentTypeHint() {
+        final byte[] data = new byte[]{0x01, 0x02};
+
+        assertEquals(UploadDeduplicationCache.contentHash(data, MediaTypes.IMAGE_JPEG, "Invoice", null),
+                UploadDeduplicationCache.contentHash(data.clone(), MediaTypes.IMAGE_JPEG, "Invoice", null));
+        assertNotEquals(UploadDeduplicationCache.contentHash(data, MediaTypes.IMAGE_JPEG, "Invoice", null),
+                UploadDeduplicationCache.contentHash(data, MediaTypes.IMAGE_JPEG, "Remittance", null));
+    }
+}
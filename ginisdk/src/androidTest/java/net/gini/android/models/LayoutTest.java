@@ -0,0 +1,85 @@
+package net.gini.android.models;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LayoutTest {
+
+    private Layout readLayout(final String json) throws IOException {
+        return Layout.fromApiResponse(new ByteArrayInputStream(json.getBytes(CHARSET_UTF8)));
+    }
+
+    private String word(final float left, final float top, final float width, final String text) {
+        return "{\"l\": " + left + ", \"t\": " + top + ", \"w\": " + width + ", \"h\": 10, \"text\": \"" + text + "\"}";
+    }
+
+    @Test
+    public void testParsesLayoutResponse() throws IOException {
+        final InputStream inputStream = getApplicationContext().getResources().getAssets().open("layout.json");
+        final Layout layout;
+        try {
+            layout = Layout.fromApiResponse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final LayoutPage page = layout.getPage(1);
+        assertEquals(595.3f, page.getWidth(), 0.001f);
+        assertEquals(841.9f, page.getHeight(), 0.001f);
+        assertEquals(3, page.getWordCount());
+        assertEquals(1, page.getLineCount());
+        assertEquals("Ihre Vorgangsnummer :", page.getLineText(0));
+        assertEquals("Vorgangsnummer", page.getWordText(1));
+        assertEquals(74.86f, page.getWordLeft(1), 0.001f);
+        assertEquals(1, page.findWordAt(100, 163));
+        assertEquals(-1, page.findWordAt(100, 500));
+        assertEquals("Ihre Vorgangsnummer", layout.getTextInBox(new Box(1, 50, 150, 110, 20)));
+        assertNull(layout.getPage(99));
+    }
+
+    @Test
+    public void testFindsWordsOfLinesAndBoxes() throws IOException {
+        final Layout layout = readLayout("{\"pages\": [{\"number\": 1, \"sizeX\": 200, \"sizeY\": 100, "
+                + "\"textZones\": [{\"paragraphs\": [{\"lines\": ["
+                + "{\"l\": 10, \"t\": 10, \"w\": 100, \"h\": 10, \"wds\": ["
+                + word(10, 10, 40, "Total") + ", " + word(60, 10, 50, "24,99") + "]},"
+                + "{\"l\": 10, \"t\": 50, \"w\": 100, \"h\": 10, \"wds\": ["
+                + word(10, 50, 40, "Total") + ", " + word(60, 50, 50, "EUR") + "]}"
+                + "]}]}]}]}");
+
+        final LayoutPage page = layout.getPage(1);
+        assertEquals(4, page.getWordCount());
+        assertEquals(2, page.getLineCount());
+        assertEquals(2, page.getLineFirstWord(1));
+        assertEquals(1, page.getWordLine(3));
+        assertSame(page.getWordText(0), page.getWordText(2));
+        assertEquals(1, page.findWordAt(70, 15));
+        assertEquals(3, page.findWordAt(109, 59));
+        assertArrayEquals(new int[]{1, 3}, layout.findWordsInBox(new Box(1, 55, 0, 60, 100)));
+        assertEquals("24,99", layout.getTextInBox(new Box(1, 55, 5, 60, 20)));
+        assertEquals(0, layout.findWordsInBox(new Box(2, 0, 0, 200, 100)).length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailsForUnexpectedStructure() throws IOException {
+        readLayout("{\"pages\": {}}");
+    }
+}
@@ -0,0 +1,147 @@
+package net.gini.android.requests;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import net.gini.android.models.ExtractionsContainer;
+import net.gini.android.models.SpecificExtraction;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ExtractionsParserTest {
+
+    private ExtractionsContainer parse(final String json) throws IOException {
+        return ExtractionsParser.parse(new ByteArrayInputStream(json.getBytes(CHARSET_UTF8)));
+    }
+
+    @Test
+    public void testParsesExtractionsResponse() throws IOException {
+        final InputStream inputStream = getApplicationContext().getResources().getAssets().open("extractions.json");
+        final ExtractionsContainer extractions;
+        try {
+            extractions = ExtractionsParser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final SpecificExtraction amountToPay = extractions.getSpecificExtractions().get("amountToPay");
+        assertEquals("24.99:EUR", amountToPay.getValue());
+        assertEquals("amount", amountToPay.getEntity());
+        assertEquals(1, amountToPay.getBox().getPageNumber());
+        assertEquals(516.0, amountToPay.getBox().getLeft(), 0);
+        assertEquals(2, amountToPay.getCandidate().size());
+        assertEquals(3, extractions.getCompoundExtractions().get("lineItems").getSpecificExtractionMaps().size());
+        assertEquals(4, extractions.getReturnReasons().size());
+    }
+
+    @Test
+    public void testResolvesCandidatesWhichFollowTheExtractions() throws IOException {
+        final ExtractionsContainer extractions = parse("{"
+                + "\"extractions\": {"
+                + "  \"amountToPay\": {\"entity\": \"amount\", \"value\": \"1.00:EUR\", \"candidates\": \"amounts\"},"
+                + "  \"amountPaid\": {\"entity\": \"amount\", \"value\": \"2.00:EUR\", \"candidates\": \"amounts\"}"
+                + "},"
+                + "\"candidates\": {\"amounts\": [{\"entity\": \"amount\", \"value\": \"3.00:EUR\"}]}"
+                + "}");
+
+        final SpecificExtraction amountToPay = extractions.getSpecificExtractions().get("amountToPay");
+        assertEquals(1, amountToPay.getCandidate().size());
+        assertEquals("3.00:EUR", amountToPay.getCandidate().get(0).getValue());
+        assertSame(amountToPay.getCandidate(),
+                extractions.getSpecificExtractions().get("amountPaid").getCandidate());
+    }
+
+    @Test
+    public void testIgnoresUnknownAndMissingFields() throws IOException {
+        final ExtractionsContainer extractions = parse("{"
+                + "\"extractions\": {\"iban\": {\"entity\": \"iban\", \"value\": \"DE00\", \"unknown\": [1, 2]}},"
+                + "\"compoundExtractions\": null"
+                + "}");
+
+        final SpecificExtraction iban = extractions.getSpecificExtractions().get("iban");
+        assertNull(iban.getBox());
+        assertTrue(iban.getCandidate().isEmpty());
+        assertTrue(extractions.getCompoundExtractions().isEmpty());
+        assertTrue(extractions.getReturnReasons().isEmpty());
+    }
+
+    @Test
+    public void testParsesExtractionsResponseLazily() throws IOException {
+        final InputStream inputStream = getApplicationContext().getResources().getAssets().open("extractions.json");
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+        final byte[] data = outputStream.toByteArray();
+
+        final ExtractionsContainer eager = ExtractionsParser.parse(new ByteArrayInputStream(data));
+        final ExtractionsContainer lazy = ExtractionsParser.parseLazily(data);
+
+        assertEquals(eager.getSpecificExtractions().keySet(), lazy.getSpecificExtractions().keySet());
+        final SpecificExtraction amountToPay = lazy.getSpecificExtractions().get("amountToPay");
+        assertEquals("24.99:EUR", amountToPay.getValue());
+        assertEquals(2, amountToPay.getCandidate().size());
+        assertEquals(3, lazy.getCompoundExtractions().get("lineItems").getSpecificExtractionMaps().size());
+        assertEquals(4, lazy.getReturnReasons().size());
+    }
+
+    @Test
+    public void testLazyParsingDecodesOnlyAccessedExtractions() throws IOException {
+        final ExtractionsContainer extractions = ExtractionsParser.parseLazily(("{"
+                + "\"extractions\": {"
+                + "  \"iban\": {\"entity\": \"iban\", \"value\": \"DE00\"},"
+                + "  \"broken\": {\"entity\": \"amount\"}"
+                + "}}").getBytes(CHARSET_UTF8));
+
+        assertEquals(2, extractions.getSpecificExtractions().size());
+        assertTrue(extractions.getSpecificExtractions().containsKey("broken"));
+        assertEquals("DE00", extractions.getSpecificExtractions().get("iban").getValue());
+        assertSame(extractions.getSpecificExtractions().get("iban"),
+                extractions.getSpecificExtractions().get("iban"));
+        try {
+            extractions.getSpecificExtractions().get("broken");
+            fail("Decoding an invalid extraction should fail");
+        } catch (IllegalStateException ignore) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLazyParsingFailsForInvalidJson() throws IOException {
+        ExtractionsParser.parseLazily("{\"extractions\": {\"iban\": }".getBytes(CHARSET_UTF8));
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailsForExtractionWithoutValue() throws IOException {
+        parse("{\"extractions\": {\"iban\": {\"entity\": \"iban\"}}}");
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailsForUnexpectedStructure() throws IOException {
+        parse("{\"extractions\": []}");
+    }
+}
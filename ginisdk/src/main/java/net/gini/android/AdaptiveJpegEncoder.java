@@ -0,0 +1,133 @@
+package net.gini.android;
+
+import static android.graphics.Bitmap.CompressFormat.JPEG;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import android.graphics.Bitmap;
+
+import net.gini.android.EncodeBufferPool.EncodeBuffer;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Encodes bitmaps as JPEGs which fit into a byte budget.
+ * <p>
+ * Bitmaps with more pixels than the maximum pixel count are downscaled first. Then the highest JPEG quality between
+ * {@link #MIN_QUALITY} and {@link #MAX_QUALITY} is searched for which the encoded JPEG is not larger than the maximum
+ * byte size. If even the lowest quality exceeds the byte budget, the JPEG with the lowest quality is used.
+ */
+public class AdaptiveJpegEncoder {
+
+    /**
+     * The lowest JPEG quality which is used.
+     */
+    public static final int MIN_QUALITY = 20;
+
+    /**
+     * The highest JPEG quality which is used.
+     */
+    public static final int MAX_QUALITY = 90;
+
+    private final int mMaxBytes;
+    private final long mMaxPixels;
+
+    /**
+     * @param maxBytes  the maximum size of the encoded JPEG in bytes
+     * @param maxPixels the maximum number of pixels (width * height) of the encoded JPEG
+     */
+    public AdaptiveJpegEncoder(final int maxBytes, final long maxPixels) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes can't be less than 1");
+        } else if (maxPixels < 1) {
+            throw new IllegalArgumentException("maxPixels can't be less than 1");
+        }
+        mMaxBytes = maxBytes;
+        mMaxPixels = maxPixels;
+    }
+
+    public int getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public long getMaxPixels() {
+        return mMaxPixels;
+    }
+
+    /**
+     * Encodes the bitmap as a JPEG. The given bitmap is not modified.
+     *
+     * @param bitmap the bitmap to encode
+     * @return the JPEG representation of the bitmap
+     */
+    @NonNull
+    public byte[] encode(@NonNull final Bitmap bitmap) {
+        final EncodeBuffer encodeBuffer = encode(bitmap, new EncodeBufferPool(0));
+        try {
+            return encodeBuffer.toByteArray();
+        } finally {
+            encodeBuffer.close();
+        }
+    }
+
+    /**
+     * Encodes the bitmap as a JPEG into a buffer from the given pool. The caller has to close the returned buffer.
+     */
+    @NonNull
+    EncodeBuffer encode(@NonNull final Bitmap bitmap, @NonNull final EncodeBufferPool encodeBufferPool) {
+        final Bitmap scaledBitmap = downscale(checkNotNull(bitmap));
+        EncodeBuffer bestFit = null;
+        EncodeBuffer current = null;
+        try {
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY;
+            while (low <= high) {
+                final int quality = (low + high) >>> 1;
+                if (current == null) {
+                    current = encodeBufferPool.obtainForJpeg(scaledBitmap, quality);
+                } else {
+                    current.reset();
+                }
+                scaledBitmap.compress(JPEG, quality, current);
+                if (current.size() <= mMaxBytes) {
+                    // Keep the fitting JPEG and reuse the previous best fit's buffer for the next attempt
+                    final EncodeBuffer previousBestFit = bestFit;
+                    bestFit = current;
+                    current = previousBestFit;
+                    low = quality + 1;
+                } else {
+                    high = quality - 1;
+                }
+            }
+            if (bestFit == null) {
+                // Nothing fit, the search ended with the lowest quality
+                bestFit = current;
+                current = null;
+            }
+            final EncodeBuffer result = bestFit;
+            bestFit = null;
+            return result;
+        } finally {
+            if (current != null) {
+                current.close();
+            }
+            if (bestFit != null) {
+                bestFit.close();
+            }
+            if (scaledBitmap != bitmap) {
+                scaledBitmap.recycle();
+            }
+        }
+    }
+
+    private Bitmap downscale(@NonNull final Bitmap bitmap) {
+        final long pixels = (long) bitmap.getWidth() * bitmap.getHeight();
+        if (pixels <= mMaxPixels) {
+            return bitmap;
+        }
+        final double scale = Math.sqrt((double) mMaxPixels / pixels);
+        final int width = Math.max(1, (int) (bitmap.getWidth() * scale));
+        final int height = Math.max(1, (int) (bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+}
@@ -0,0 +1,74 @@
+package net.gini.android;
+
+import android.graphics.Bitmap;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.ExtractionsContainer;
+
+import org.json.JSONObject;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The processed document together with everything needed to present it, as returned by
+ * {@link DocumentTaskManager#analyzeDocument(Document, ApiCommunicator.PreviewSize, boolean)}.
+ * <p>
+ * Only the extractions are required. The layout, the preview and the incubator extractions are null, if they could
+ * not be retrieved or were not requested.
+ */
+public class AnalysisResult {
+
+    private final Document mDocument;
+    private final ExtractionsContainer mExtractions;
+    private final JSONObject mLayout;
+    private final Bitmap mFirstPagePreview;
+    private final JSONObject mIncubatorExtractions;
+
+    AnalysisResult(@NonNull final Document document, @NonNull final ExtractionsContainer extractions,
+            @Nullable final JSONObject layout, @Nullable final Bitmap firstPagePreview,
+            @Nullable final JSONObject incubatorExtractions) {
+        mDocument = document;
+        mExtractions = extractions;
+        mLayout = layout;
+        mFirstPagePreview = firstPagePreview;
+        mIncubatorExtractions = incubatorExtractions;
+    }
+
+    /**
+     * @return the processed document
+     */
+    @NonNull
+    public Document getDocument() {
+        return mDocument;
+    }
+
+    @NonNull
+    public ExtractionsContainer getExtractions() {
+        return mExtractions;
+    }
+
+    /**
+     * @return the layout as returned by {@link DocumentTaskManager#getLayout(Document)} or null
+     */
+    @Nullable
+    public JSONObject getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * @return the preview of the document's first page or null
+     */
+    @Nullable
+    public Bitmap getFirstPagePreview() {
+        return mFirstPagePreview;
+    }
+
+    /**
+     * @return the incubator extractions as returned by the Gini API or null
+     */
+    @Nullable
+    public JSONObject getIncubatorExtractions() {
+        return mIncubatorExtractions;
+    }
+}
@@ -7,6 +7,7 @@ import static com.android.volley.Request.Method.GET;
 import static com.android.volley.Request.Method.POST;
 import static com.android.volley.Request.Method.PUT;
 
+import static net.gini.android.Utils.CHARSET_UTF8;
 import static net.gini.android.Utils.checkNotNull;
 import static net.gini.android.Utils.mapToUrlEncodedString;
 
@@ -14,23 +15,42 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 
 import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
 import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
 import com.android.volley.toolbox.ImageRequest;
 import com.android.volley.toolbox.StringRequest;
 
 import net.gini.android.authorization.Session;
 import net.gini.android.authorization.requests.BearerJsonObjectRequest;
+import net.gini.android.models.ExtractionsContainer;
+import net.gini.android.models.Layout;
+import net.gini.android.requests.BearerBytesRequest;
+import net.gini.android.requests.BearerExtractionsRequest;
+import net.gini.android.requests.BearerLayoutRequest;
+import net.gini.android.requests.BearerStreamingUploadRequest;
 import net.gini.android.requests.BearerUploadRequest;
+import net.gini.android.requests.ExtractionsParser;
 import net.gini.android.requests.RetryPolicyFactory;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.net.HttpURLConnection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.Nullable;
+import bolts.CancellationToken;
+import bolts.CancellationTokenRegistration;
+import bolts.Continuation;
 import bolts.Task;
 
 
@@ -42,11 +62,19 @@ import bolts.Task;
  */
 public class ApiCommunicator {
 
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+
     private final GiniApiType mGiniApiType;
     private final Uri mBaseUri;
     final RequestQueue mRequestQueue; // Visible for testing
     // Visible for testing
     final RetryPolicyFactory mRetryPolicyFactory;
+    private volatile RequestBodyCompression mRequestBodyCompression;
+    private volatile boolean mLazyExtractionsDecoding;
+    private final AtomicInteger mPendingRequestCount = new AtomicInteger();
+    private final Map<String, Long> mRetryAfterHints = new ConcurrentHashMap<>();
+    private final ConditionalRequestCache mConditionalRequestCache =
+            new ConditionalRequestCache(ConditionalRequestCache.DEFAULT_MAX_ENTRIES);
 
     public ApiCommunicator(final String baseUriString,
             final GiniApiType giniApiType,
@@ -56,6 +84,49 @@ public class ApiCommunicator {
         this.mGiniApiType = giniApiType;
         mBaseUri = getBaseUri(baseUriString, giniApiType);
         this.mRequestQueue = checkNotNull(mRequestQueue);
+        this.mRequestQueue.addRequestEventListener(new RequestQueue.RequestEventListener() {
+            @Override
+            public void onRequestEvent(final Request<?> request, final int event) {
+                if (event == RequestQueue.RequestEvent.REQUEST_QUEUED) {
+                    mPendingRequestCount.incrementAndGet();
+                } else if (event == RequestQueue.RequestEvent.REQUEST_FINISHED) {
+                    mPendingRequestCount.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the number of requests in the request queue which were not finished yet
+     */
+    int getPendingRequestCount() {
+        return mPendingRequestCount.get();
+    }
+
+    /**
+     * Enables the compression of JSON and text request bodies.
+     *
+     * @param requestBodyCompression the compression configuration or null to disable compression
+     */
+    void setRequestBodyCompression(@Nullable final RequestBodyCompression requestBodyCompression) {
+        mRequestBodyCompression = requestBodyCompression;
+    }
+
+    /**
+     * Enables decoding the extractions returned by {@link #getExtractionsContainer(String, Session)} when they are
+     * accessed for the first time.
+     *
+     * @param enabled true to decode extractions lazily
+     */
+    void setLazyExtractionsDecoding(final boolean enabled) {
+        mLazyExtractionsDecoding = enabled;
+    }
+
+    /**
+     * @return true, if extractions are decoded when they are accessed for the first time
+     */
+    boolean isLazyExtractionsDecoding() {
+        return mLazyExtractionsDecoding;
     }
 
     private Uri getBaseUri(final String baseUriString, final GiniApiType giniApiType) {
@@ -69,7 +140,113 @@ public class ApiCommunicator {
     public Task<Uri> uploadDocument(final byte[] documentData, final String contentType,
                                     @Nullable final String documentName, @Nullable final String docTypeHint,
                                     final Session session, @Nullable final DocumentMetadata documentMetadata) {
+        return uploadDocument(documentData, contentType, documentName, docTypeHint, session, documentMetadata, null,
+                null);
+    }
+
+    /**
+     * Uploads a document and reports the progress of sending it. The request is aborted when cancellation is
+     * requested and the returned task is cancelled.
+     */
+    public Task<Uri> uploadDocument(final byte[] documentData, final String contentType,
+                                    @Nullable final String documentName, @Nullable final String docTypeHint,
+                                    final Session session, @Nullable final DocumentMetadata documentMetadata,
+                                    @Nullable final UploadListener uploadListener,
+                                    @Nullable final CancellationToken cancellationToken) {
+        final Map<String, String> metadataHeaders = getMetadataHeaders(documentMetadata);
+        // Read once, because it may be replaced while the request is running
+        final RequestBodyCompression requestBodyCompression = mRequestBodyCompression;
+        if (shouldCompress(requestBodyCompression, checkNotNull(contentType), checkNotNull(documentData))) {
+            final Map<String, String> headers = new HashMap<>(metadataHeaders);
+            headers.put(RequestBodyCompression.CONTENT_ENCODING_HEADER, RequestBodyCompression.GZIP);
+            return withUncompressedFallback(requestBodyCompression,
+                    doUploadRequest(RequestBodyCompression.gzip(documentData), contentType, documentName, docTypeHint,
+                            session, headers, uploadListener, cancellationToken),
+                    new Callable<Task<Uri>>() {
+                        @Override
+                        public Task<Uri> call() throws Exception {
+                            return doUploadRequest(documentData, contentType, documentName, docTypeHint, session,
+                                    metadataHeaders, uploadListener, cancellationToken);
+                        }
+                    });
+        }
+        return doUploadRequest(documentData, contentType, documentName, docTypeHint, session, metadataHeaders,
+                uploadListener, cancellationToken);
+    }
+
+    private Task<Uri> doUploadRequest(final byte[] body, final String contentType,
+            @Nullable final String documentName, @Nullable final String docTypeHint, final Session session,
+            final Map<String, String> headers, @Nullable final UploadListener uploadListener,
+            @Nullable final CancellationToken cancellationToken) {
+        final RequestTaskCompletionSource<Uri> completionSource = RequestTaskCompletionSource.newCompletionSource();
+        final BearerUploadRequest request =
+                new BearerUploadRequest(POST, getUploadUrl(documentName, docTypeHint), body, contentType, session,
+                        mGiniApiType, completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy(),
+                        headers);
+        request.setUploadListener(uploadListener);
+        addCancellableRequest(request, completionSource, cancellationToken);
+
+        return completionSource.getTask();
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source. The document is not loaded into memory.
+     */
+    public Task<Uri> uploadDocument(final DocumentSource documentSource, final String contentType,
+                                    @Nullable final String documentName, @Nullable final String docTypeHint,
+                                    final Session session, @Nullable final DocumentMetadata documentMetadata) {
+        return uploadDocument(documentSource, contentType, documentName, docTypeHint, session, documentMetadata, null,
+                null);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and reports the progress of sending it. The request
+     * is aborted when cancellation is requested and the returned task is cancelled.
+     */
+    public Task<Uri> uploadDocument(final DocumentSource documentSource, final String contentType,
+                                    @Nullable final String documentName, @Nullable final String docTypeHint,
+                                    final Session session, @Nullable final DocumentMetadata documentMetadata,
+                                    @Nullable final UploadListener uploadListener,
+                                    @Nullable final CancellationToken cancellationToken) {
+        final RequestTaskCompletionSource<Uri> completionSource = RequestTaskCompletionSource.newCompletionSource();
+        final BearerStreamingUploadRequest request =
+                new BearerStreamingUploadRequest(POST, getUploadUrl(documentName, docTypeHint),
+                        checkNotNull(documentSource), checkNotNull(contentType), session, mGiniApiType,
+                        completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy(),
+                        getMetadataHeaders(documentMetadata));
+        request.setUploadListener(uploadListener);
+        addCancellableRequest(request, completionSource, cancellationToken);
+
+        return completionSource.getTask();
+    }
+
+    /**
+     * Adds the request to the queue. Cancels the request and the completion source's task when cancellation is
+     * requested. An upload which is being sent is aborted by the {@link GiniHurlStack}.
+     */
+    private <T> void addCancellableRequest(final Request<T> request,
+            final RequestTaskCompletionSource<T> completionSource,
+            @Nullable final CancellationToken cancellationToken) {
+        if (cancellationToken != null) {
+            final CancellationTokenRegistration registration = cancellationToken.register(new Runnable() {
+                @Override
+                public void run() {
+                    request.cancel();
+                    completionSource.cancel();
+                }
+            });
+            completionSource.getTask().continueWith(new Continuation<T, Void>() {
+                @Override
+                public Void then(final Task<T> task) throws Exception {
+                    registration.close();
+                    return null;
+                }
+            });
+        }
+        mRequestQueue.add(request);
+    }
 
+    private String getUploadUrl(@Nullable final String documentName, @Nullable final String docTypeHint) {
         final HashMap<String, String> requestQueryData = new HashMap<String, String>();
         if (documentName != null) {
             requestQueryData.put("filename", documentName);
@@ -77,22 +254,15 @@ public class ApiCommunicator {
         if (docTypeHint != null) {
             requestQueryData.put("doctype", docTypeHint);
         }
-        final String url = mBaseUri.buildUpon().path("documents/").encodedQuery(mapToUrlEncodedString(requestQueryData))
+        return mBaseUri.buildUpon().path("documents/").encodedQuery(mapToUrlEncodedString(requestQueryData))
                 .toString();
-        final RequestTaskCompletionSource<Uri> completionSource = RequestTaskCompletionSource.newCompletionSource();
-        final Map<String, String> metadata;
+    }
+
+    private Map<String, String> getMetadataHeaders(@Nullable final DocumentMetadata documentMetadata) {
         if (documentMetadata != null) {
-            metadata = documentMetadata.getMetadata();
-        } else {
-            metadata = Collections.emptyMap();
+            return documentMetadata.getMetadata();
         }
-        final BearerUploadRequest request =
-                new BearerUploadRequest(POST, url, checkNotNull(documentData), checkNotNull(contentType), session,
-                        mGiniApiType, completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy(),
-                        metadata);
-        mRequestQueue.add(request);
-
-        return completionSource.getTask();
+        return Collections.emptyMap();
     }
 
     public Task<JSONObject> getDocument(final String documentId, final Session session) {
@@ -100,9 +270,90 @@ public class ApiCommunicator {
         return getDocument(Uri.parse(url), session);
     }
 
+    /**
+     * Requests the document conditionally, if a previous response had an ETag or Last-Modified header. If the document
+     * was not modified, the returned task resolves to the same JSONObject instance as before.
+     */
     public Task<JSONObject> getDocument(final Uri documentUri, final Session session) {
         final String url = uriRelativeToBaseUri(documentUri).toString();
-        return doRequestWithJsonResponse(url, GET, session);
+        final RequestTaskCompletionSource<JSONObject> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
+        final BearerJsonObjectRequest request = new BearerJsonObjectRequest(GET, url, null, checkNotNull(session),
+                mGiniApiType, completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy()) {
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                final Map<String, String> headers = new HashMap<>(super.getHeaders());
+                mConditionalRequestCache.addConditionalHeaders(url, headers);
+                return headers;
+            }
+
+            @Override
+            protected Response<JSONObject> parseNetworkResponse(final NetworkResponse response) {
+                storeRetryAfterHint(url, response);
+                final JSONObject notModifiedBody = mConditionalRequestCache.getNotModifiedBody(url, response);
+                if (notModifiedBody != null) {
+                    return Response.success(notModifiedBody, null);
+                }
+                final Response<JSONObject> parsedResponse = super.parseNetworkResponse(response);
+                if (parsedResponse.isSuccess()) {
+                    mConditionalRequestCache.put(url, response, parsedResponse.result);
+                }
+                return parsedResponse;
+            }
+
+            @Override
+            protected VolleyError parseNetworkError(final VolleyError volleyError) {
+                if (volleyError.networkResponse != null) {
+                    storeRetryAfterHint(url, volleyError.networkResponse);
+                }
+                return super.parseNetworkError(volleyError);
+            }
+        };
+        // The conditional request headers are managed here. Volley's cache would answer from its own entries.
+        request.setShouldCache(false);
+        mRequestQueue.add(request);
+        return completionSource.getTask();
+    }
+
+    /**
+     * Returns the delay the Gini API asked for in the Retry-After header of the last response for the document. The
+     * hint is returned only once.
+     *
+     * @return the delay in milliseconds or 0, if the last response had no Retry-After header
+     */
+    public long consumeRetryAfterHintMs(final String documentId) {
+        final String url = uriRelativeToBaseUri(
+                mBaseUri.buildUpon().path("documents/" + checkNotNull(documentId)).build()).toString();
+        final Long retryAfterMs = mRetryAfterHints.remove(url);
+        return retryAfterMs != null ? retryAfterMs : 0;
+    }
+
+    private void storeRetryAfterHint(final String url, final NetworkResponse response) {
+        final String retryAfter = response.headers != null ? response.headers.get(RETRY_AFTER_HEADER) : null;
+        final long retryAfterMs = parseRetryAfterMs(retryAfter, System.currentTimeMillis());
+        if (retryAfterMs > 0) {
+            mRetryAfterHints.put(url, retryAfterMs);
+        } else {
+            mRetryAfterHints.remove(url);
+        }
+    }
+
+    /**
+     * Parses the value of a Retry-After header, which is either a number of seconds or an HTTP date.
+     *
+     * @return the delay in milliseconds or 0, if the value is missing or invalid
+     */
+    static long parseRetryAfterMs(@Nullable final String retryAfter, final long nowMs) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException ignore) {
+            // Not a number of seconds, try a date
+        }
+        final long retryAtMs = HttpHeaderParser.parseDateAsEpoch(retryAfter);
+        return retryAtMs > 0 ? Math.max(0, retryAtMs - nowMs) : 0;
     }
 
     public Task<JSONObject> getExtractions(final String documentId, final Session session) {
@@ -118,6 +369,45 @@ public class ApiCommunicator {
         return completionSource.getTask();
     }
 
+    /**
+     * Requests the extractions of the document. Unlike {@link #getExtractions(String, Session)} the response is parsed
+     * directly into the extraction models in a single pass over the response body.
+     */
+    public Task<ExtractionsContainer> getExtractionsContainer(final String documentId, final Session session) {
+        final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
+                checkNotNull(documentId))).toString();
+        final RequestTaskCompletionSource<ExtractionsContainer> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
+        final BearerExtractionsRequest request = new BearerExtractionsRequest(url, checkNotNull(session),
+                mGiniApiType, mLazyExtractionsDecoding, completionSource, completionSource,
+                mRetryPolicyFactory.newRetryPolicy());
+        mRequestQueue.add(request);
+
+        return completionSource.getTask();
+    }
+
+    /**
+     * Requests the extractions of the document and resolves to the unparsed response. Use {@link ExtractionsParser} to
+     * parse its body.
+     * <p>
+     * If an ETag is given, the extractions are requested conditionally and the response has the status
+     * {@code 304 Not Modified} and no body, if they didn't change.
+     *
+     * @param eTag the ETag of the stored extractions response or null to request them unconditionally
+     */
+    public Task<NetworkResponse> getExtractionsResponse(final String documentId, @Nullable final String eTag,
+            final Session session) {
+        final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
+                checkNotNull(documentId))).toString();
+        final RequestTaskCompletionSource<NetworkResponse> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
+        final BearerBytesRequest request = new BearerBytesRequest(url, eTag, checkNotNull(session), mGiniApiType,
+                completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy());
+        mRequestQueue.add(request);
+
+        return completionSource.getTask();
+    }
+
     public Task<JSONObject> getIncubatorExtractions(final String documentId, final Session session) {
         final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
                 checkNotNull(documentId))).toString();
@@ -187,17 +477,9 @@ public class ApiCommunicator {
             throws JSONException {
         final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
                 checkNotNull(documentId))).toString();
-        final RequestTaskCompletionSource<JSONObject> completionSource =
-                RequestTaskCompletionSource.newCompletionSource();
         final JSONObject requestData = new JSONObject();
         requestData.put("feedback", checkNotNull(extractions));
-        final BearerJsonObjectRequest request =
-                new BearerJsonObjectRequest(PUT, url, requestData, checkNotNull(session),
-                        mGiniApiType, completionSource, completionSource,
-                        mRetryPolicyFactory.newRetryPolicy(), mGiniApiType.getGiniJsonMediaType());
-        mRequestQueue.add(request);
-
-        return completionSource.getTask();
+        return doFeedbackRequest(url, requestData, checkNotNull(session));
     }
 
     public Task<JSONObject> sendFeedback(final String documentId, final JSONObject extractions,
@@ -205,20 +487,86 @@ public class ApiCommunicator {
             throws JSONException {
         final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions/feedback",
                 checkNotNull(documentId))).toString();
-        final RequestTaskCompletionSource<JSONObject> completionSource =
-                RequestTaskCompletionSource.newCompletionSource();
         final JSONObject requestData = new JSONObject();
         requestData.put("extractions", checkNotNull(extractions));
         requestData.put("compoundExtractions", checkNotNull(compoundExtractions));
+        return doFeedbackRequest(url, requestData, checkNotNull(session));
+    }
+
+    private Task<JSONObject> doFeedbackRequest(final String url, final JSONObject requestData, final Session session) {
+        final byte[] body = requestData.toString().getBytes(CHARSET_UTF8);
+        // Read once, because it may be replaced while the request is running
+        final RequestBodyCompression requestBodyCompression = mRequestBodyCompression;
+        if (shouldCompress(requestBodyCompression, mGiniApiType.getGiniJsonMediaType(), body)) {
+            return withUncompressedFallback(requestBodyCompression,
+                    doFeedbackRequest(url, requestData, session, RequestBodyCompression.gzip(body)),
+                    new Callable<Task<JSONObject>>() {
+                        @Override
+                        public Task<JSONObject> call() throws Exception {
+                            return doFeedbackRequest(url, requestData, session, null);
+                        }
+                    });
+        }
+        return doFeedbackRequest(url, requestData, session, null);
+    }
+
+    /**
+     * @param compressedBody the gzip compressed request data or null to send it uncompressed
+     */
+    private Task<JSONObject> doFeedbackRequest(final String url, final JSONObject requestData, final Session session,
+            @Nullable final byte[] compressedBody) {
+        final RequestTaskCompletionSource<JSONObject> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
         final BearerJsonObjectRequest request =
-                new BearerJsonObjectRequest(PUT, url, requestData, checkNotNull(session),
+                new BearerJsonObjectRequest(PUT, url, requestData, session,
                         mGiniApiType, completionSource, completionSource,
-                        mRetryPolicyFactory.newRetryPolicy(), mGiniApiType.getGiniJsonMediaType());
+                        mRetryPolicyFactory.newRetryPolicy(), mGiniApiType.getGiniJsonMediaType()) {
+                    @Override
+                    public byte[] getBody() {
+                        return compressedBody != null ? compressedBody : super.getBody();
+                    }
+
+                    @Override
+                    public Map<String, String> getHeaders() throws AuthFailureError {
+                        final Map<String, String> headers = super.getHeaders();
+                        if (compressedBody != null) {
+                            headers.put(RequestBodyCompression.CONTENT_ENCODING_HEADER, RequestBodyCompression.GZIP);
+                        }
+                        return headers;
+                    }
+                };
         mRequestQueue.add(request);
 
         return completionSource.getTask();
     }
 
+    private static boolean shouldCompress(@Nullable final RequestBodyCompression requestBodyCompression,
+            final String contentType, final byte[] body) {
+        return requestBodyCompression != null && requestBodyCompression.shouldCompress(contentType, body);
+    }
+
+    /**
+     * Sends the request again uncompressed, if the Gini API doesn't accept the compressed body. Compression is
+     * disabled afterwards.
+     */
+    private static <T> Task<T> withUncompressedFallback(final RequestBodyCompression requestBodyCompression,
+            final Task<T> compressedRequestTask, final Callable<Task<T>> uncompressedRequest) {
+        return compressedRequestTask.continueWithTask(new Continuation<T, Task<T>>() {
+            @Override
+            public Task<T> then(final Task<T> task) throws Exception {
+                if (task.isFaulted() && task.getError() instanceof VolleyError) {
+                    final NetworkResponse networkResponse = ((VolleyError) task.getError()).networkResponse;
+                    if (networkResponse != null
+                            && networkResponse.statusCode == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+                        requestBodyCompression.setRejectedByServer();
+                        return uncompressedRequest.call();
+                    }
+                }
+                return task;
+            }
+        });
+    }
+
     public Task<Bitmap> getPreview(final String documentId, final int pageNumber,
                                    PreviewSize previewSize, final Session session) {
         final String url = mBaseUri.buildUpon().path(String.format("documents/%s/pages/%s/%s",
@@ -247,11 +595,66 @@ public class ApiCommunicator {
         return doRequestWithJsonResponse(url, GET, session);
     }
 
+    /**
+     * Requests the layout of the document. Unlike {@link #getLayoutForDocument(String, Session)} the response is parsed
+     * directly into a {@link Layout} with a spatial index of the words.
+     */
+    public Task<Layout> getParsedLayoutForDocument(final String documentId, final Session session) {
+        final String url =
+                mBaseUri.buildUpon().path(String.format("/documents/%s/layout", checkNotNull(documentId))).toString();
+        final RequestTaskCompletionSource<Layout> completionSource = RequestTaskCompletionSource.newCompletionSource();
+        final BearerLayoutRequest request = new BearerLayoutRequest(url, checkNotNull(session), mGiniApiType,
+                completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy());
+        mRequestQueue.add(request);
+
+        return completionSource.getTask();
+    }
+
+    /**
+     * Requests a page of the document list. The Retry-After header of the response is kept, see
+     * {@link #consumeDocumentListRetryAfterHintMs()}.
+     */
     public Task<JSONObject> getDocumentList(final int offset, final int limit, final Session session) {
         final String url = mBaseUri.buildUpon().path("/documents")
                 .appendQueryParameter("offset", Integer.toString(offset))
                 .appendQueryParameter("limit", Integer.toString(limit)).toString();
-        return doRequestWithJsonResponse(url, GET, session);
+        final String hintKey = getDocumentListHintKey();
+        final RequestTaskCompletionSource<JSONObject> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
+        final BearerJsonObjectRequest request = new BearerJsonObjectRequest(GET, url, null, checkNotNull(session),
+                mGiniApiType, completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy()) {
+            @Override
+            protected Response<JSONObject> parseNetworkResponse(final NetworkResponse response) {
+                storeRetryAfterHint(hintKey, response);
+                return super.parseNetworkResponse(response);
+            }
+
+            @Override
+            protected VolleyError parseNetworkError(final VolleyError volleyError) {
+                if (volleyError.networkResponse != null) {
+                    storeRetryAfterHint(hintKey, volleyError.networkResponse);
+                }
+                return super.parseNetworkError(volleyError);
+            }
+        };
+        mRequestQueue.add(request);
+        return completionSource.getTask();
+    }
+
+    /**
+     * Returns the delay the Gini API asked for in the Retry-After header of the last document list response. The hint
+     * is returned only once.
+     *
+     * @return the delay in milliseconds or 0, if the last response had no Retry-After header
+     */
+    public long consumeDocumentListRetryAfterHintMs() {
+        final Long retryAfterMs = mRetryAfterHints.remove(getDocumentListHintKey());
+        return retryAfterMs != null ? retryAfterMs : 0;
+    }
+
+    private String getDocumentListHintKey() {
+        // All pages share one hint, the query is not part of the key
+        return uriRelativeToBaseUri(mBaseUri.buildUpon().path("documents").build()).toString();
     }
 
     public Task<JSONObject> searchDocuments(final String searchTerm, @Nullable final String docType, final int offset,
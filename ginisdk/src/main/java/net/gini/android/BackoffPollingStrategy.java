@@ -0,0 +1,125 @@
+package net.gini.android;
+
+import java.util.Random;
+
+/**
+ * {@link PollingStrategy} which increases the delay between requests exponentially up to a maximum delay.
+ * <p>
+ * Single page photos are usually processed quickly, so they are requested again soon. Longer documents are requested
+ * less and less often. The delays are randomized by the jitter to spread the requests of documents which were
+ * uploaded at the same time. A delay requested by the Gini API with the Retry-After header is never undercut. If a
+ * deadline is set, polling stops once it was reached.
+ */
+public class BackoffPollingStrategy implements PollingStrategy {
+
+    /**
+     * The default delay in milliseconds after the first request.
+     */
+    public static final long DEFAULT_INITIAL_DELAY_MS = 500;
+
+    /**
+     * The default maximum delay in milliseconds.
+     */
+    public static final long DEFAULT_MAX_DELAY_MS = 8000;
+
+    /**
+     * The default factor by which the delay is increased after each request.
+     */
+    public static final float DEFAULT_MULTIPLIER = 1.5f;
+
+    /**
+     * The default share by which delays are randomly lengthened or shortened.
+     */
+    public static final float DEFAULT_JITTER = 0.2f;
+
+    /**
+     * Disables the deadline.
+     */
+    public static final long NO_DEADLINE = 0;
+
+    private final long mInitialDelayMs;
+    private final long mMaxDelayMs;
+    private final float mMultiplier;
+    private final float mJitter;
+    private final long mDeadlineMs;
+    private final Random mRandom = new Random();
+
+    /**
+     * Creates a strategy with the default delays and without a deadline.
+     */
+    public BackoffPollingStrategy() {
+        this(NO_DEADLINE);
+    }
+
+    /**
+     * Creates a strategy with the default delays.
+     *
+     * @param deadlineMs the time in milliseconds after which polling is stopped or {@link #NO_DEADLINE}
+     */
+    public BackoffPollingStrategy(final long deadlineMs) {
+        this(DEFAULT_INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_MULTIPLIER, DEFAULT_JITTER, deadlineMs);
+    }
+
+    /**
+     * @param initialDelayMs the delay in milliseconds after the first request
+     * @param maxDelayMs     the maximum delay in milliseconds
+     * @param multiplier     the factor by which the delay is increased after each request
+     * @param jitter         the share between 0 and 1 by which delays are randomly lengthened or shortened
+     * @param deadlineMs     the time in milliseconds after which polling is stopped or {@link #NO_DEADLINE}
+     */
+    public BackoffPollingStrategy(final long initialDelayMs, final long maxDelayMs, final float multiplier,
+            final float jitter, final long deadlineMs) {
+        if (initialDelayMs < 0) {
+            throw new IllegalArgumentException("initialDelayMs can't be less than 0");
+        } else if (maxDelayMs < initialDelayMs) {
+            throw new IllegalArgumentException("maxDelayMs can't be less than initialDelayMs");
+        } else if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier can't be less than 1");
+        } else if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        } else if (deadlineMs < 0) {
+            throw new IllegalArgumentException("deadlineMs can't be less than 0");
+        }
+        mInitialDelayMs = initialDelayMs;
+        mMaxDelayMs = maxDelayMs;
+        mMultiplier = multiplier;
+        mJitter = jitter;
+        mDeadlineMs = deadlineMs;
+    }
+
+    public long getInitialDelayMs() {
+        return mInitialDelayMs;
+    }
+
+    public long getMaxDelayMs() {
+        return mMaxDelayMs;
+    }
+
+    public float getMultiplier() {
+        return mMultiplier;
+    }
+
+    public float getJitter() {
+        return mJitter;
+    }
+
+    public long getDeadlineMs() {
+        return mDeadlineMs;
+    }
+
+    @Override
+    public long getDelayMs(final int attempt, final long elapsedMs, final long retryAfterMs) {
+        double delay = Math.min(mInitialDelayMs * Math.pow(mMultiplier, Math.max(0, attempt - 1)), mMaxDelayMs);
+        delay *= 1 + mJitter * (2 * mRandom.nextDouble() - 1);
+        final long delayMs = Math.max(Math.round(delay), retryAfterMs);
+        if (mDeadlineMs == NO_DEADLINE) {
+            return delayMs;
+        }
+        final long remainingMs = mDeadlineMs - elapsedMs;
+        if (remainingMs <= 0 || retryAfterMs > remainingMs) {
+            return STOP_POLLING;
+        }
+        // The last request is made when the deadline is reached
+        return Math.min(delayMs, remainingMs);
+    }
+}
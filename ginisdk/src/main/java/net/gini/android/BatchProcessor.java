@@ -0,0 +1,184 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import net.gini.android.DocumentTaskManager.DocumentType;
+import net.gini.android.models.Document;
+import net.gini.android.models.ExtractionsContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import bolts.Continuation;
+import bolts.Task;
+
+/**
+ * Uploads, polls and retrieves the extractions of a batch of documents with a limited number of documents in flight.
+ * <p>
+ * Documents are started in batch order. No new documents are started while the app's memory usage or the number of
+ * pending requests is high, unless no document is in flight.
+ */
+class BatchProcessor {
+
+    /**
+     * The share of the maximum heap size above which no new documents are started.
+     */
+    static final float MAX_MEMORY_USAGE = 0.8f;
+
+    /**
+     * The number of pending requests above which no new documents are started.
+     */
+    static final int MAX_PENDING_REQUESTS = 16;
+
+    /**
+     * The delay in milliseconds after which starting new documents is attempted again when it was deferred.
+     */
+    static final long BACKPRESSURE_DELAY_MS = 250;
+
+    private final DocumentTaskManager mDocumentTaskManager;
+    private final ApiCommunicator mApiCommunicator;
+    private final List<DocumentPage> mDocuments;
+    private final DocumentType mDocumentType;
+    private final int mMaxInFlight;
+    private final BatchProgressListener mBatchProgressListener;
+    private final BatchResult[] mResults;
+    private final Task<List<BatchResult>>.TaskCompletionSource mCompletionSource = Task.create();
+    private int mNextIndex;
+    private int mInFlight;
+    private int mProcessedCount;
+    private boolean mRetryScheduled;
+
+    BatchProcessor(@NonNull final DocumentTaskManager documentTaskManager,
+            @NonNull final ApiCommunicator apiCommunicator, @NonNull final List<DocumentPage> documents,
+            @Nullable final DocumentType documentType, final int maxInFlight,
+            @Nullable final BatchProgressListener batchProgressListener) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight can't be less than 1");
+        }
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+        mApiCommunicator = checkNotNull(apiCommunicator);
+        mDocuments = new ArrayList<>(checkNotNull(documents));
+        mDocumentType = documentType;
+        mMaxInFlight = maxInFlight;
+        mBatchProgressListener = batchProgressListener;
+        mResults = new BatchResult[mDocuments.size()];
+    }
+
+    /**
+     * @return A Task which will resolve to the results in batch order once all documents were processed.
+     */
+    Task<List<BatchResult>> start() {
+        if (mDocuments.isEmpty()) {
+            return Task.forResult((List<BatchResult>) new ArrayList<BatchResult>());
+        }
+        startDocuments();
+        return mCompletionSource.getTask();
+    }
+
+    private void startDocuments() {
+        while (true) {
+            final int index;
+            synchronized (this) {
+                if (mNextIndex >= mDocuments.size() || mInFlight >= mMaxInFlight) {
+                    return;
+                }
+                if (mInFlight > 0 && isUnderPressure()) {
+                    scheduleRetry();
+                    return;
+                }
+                index = mNextIndex++;
+                mInFlight++;
+            }
+            process(index);
+        }
+    }
+
+    private void scheduleRetry() {
+        if (mRetryScheduled) {
+            return;
+        }
+        mRetryScheduled = true;
+        Task.delay(BACKPRESSURE_DELAY_MS).continueWith(new Continuation<Void, Void>() {
+            @Override
+            public Void then(final Task<Void> task) throws Exception {
+                synchronized (BatchProcessor.this) {
+                    mRetryScheduled = false;
+                }
+                startDocuments();
+                return null;
+            }
+        }, mDocumentTaskManager.getParsingExecutor());
+    }
+
+    private boolean isUnderPressure() {
+        final Runtime runtime = Runtime.getRuntime();
+        final long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        return usedMemory > runtime.maxMemory() * MAX_MEMORY_USAGE
+                || mApiCommunicator.getPendingRequestCount() > MAX_PENDING_REQUESTS;
+    }
+
+    private void process(final int index) {
+        final Executor executor = mDocumentTaskManager.getParsingExecutor();
+        Task<Document> createTask;
+        try {
+            createTask = mDocumentTaskManager.createSinglePageDocument(mDocuments.get(index), mDocumentType);
+        } catch (RuntimeException e) {
+            createTask = Task.forError(e);
+        }
+        final Task<Document> documentTask = createTask
+                .onSuccessTask(new Continuation<Document, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(final Task<Document> task) throws Exception {
+                        return mDocumentTaskManager.pollDocument(task.getResult());
+                    }
+                }, executor);
+        documentTask.onSuccessTask(new Continuation<Document, Task<ExtractionsContainer>>() {
+            @Override
+            public Task<ExtractionsContainer> then(final Task<Document> task) throws Exception {
+                return mDocumentTaskManager.getAllExtractions(task.getResult());
+            }
+        }, executor).continueWith(new Continuation<ExtractionsContainer, Void>() {
+            @Override
+            public Void then(final Task<ExtractionsContainer> task) throws Exception {
+                final Document document = documentTask.isFaulted() || documentTask.isCancelled()
+                        ? null : documentTask.getResult();
+                final BatchResult result;
+                if (task.isFaulted()) {
+                    result = new BatchResult(document, task.getError());
+                } else if (task.isCancelled()) {
+                    result = new BatchResult(document, new CancellationException("Processing was cancelled"));
+                } else {
+                    result = new BatchResult(document, task.getResult());
+                }
+                onDocumentProcessed(index, result);
+                return null;
+            }
+        }, executor);
+    }
+
+    private void onDocumentProcessed(final int index, @NonNull final BatchResult result) {
+        final int processedCount;
+        synchronized (this) {
+            mResults[index] = result;
+            mInFlight--;
+            processedCount = ++mProcessedCount;
+        }
+        try {
+            if (mBatchProgressListener != null) {
+                mBatchProgressListener.onDocumentProcessed(index, result, processedCount, mDocuments.size());
+            }
+        } finally {
+            // A failing listener must not stop the batch
+            if (processedCount == mDocuments.size()) {
+                mCompletionSource.setResult(Arrays.asList(mResults));
+            } else {
+                startDocuments();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package net.gini.android;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives the progress of a batch of documents which are being processed.
+ * <p>
+ * The listener is called on a background thread.
+ */
+public interface BatchProgressListener {
+
+    /**
+     * Called when processing a document of the batch finished either successfully or with an error.
+     *
+     * @param index          the position of the document in the batch
+     * @param result         the result of processing the document
+     * @param processedCount the number of documents which were processed so far
+     * @param totalCount     the number of documents in the batch
+     */
+    void onDocumentProcessed(int index, @NonNull BatchResult result, int processedCount, int totalCount);
+}
@@ -0,0 +1,62 @@
+package net.gini.android;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.ExtractionsContainer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The result of processing one document of a batch started with
+ * {@link DocumentTaskManager#processDocuments(java.util.List, DocumentTaskManager.DocumentType, int,
+ * BatchProgressListener)}.
+ */
+public class BatchResult {
+
+    private final Document mDocument;
+    private final ExtractionsContainer mExtractions;
+    private final Exception mError;
+
+    BatchResult(@NonNull final Document document, @NonNull final ExtractionsContainer extractions) {
+        mDocument = document;
+        mExtractions = extractions;
+        mError = null;
+    }
+
+    BatchResult(@Nullable final Document document, @NonNull final Exception error) {
+        mDocument = document;
+        mExtractions = null;
+        mError = error;
+    }
+
+    /**
+     * @return true, if the document was uploaded, processed and its extractions were retrieved
+     */
+    public boolean isSuccessful() {
+        return mError == null;
+    }
+
+    /**
+     * @return the processed document or null, if the document could not be created
+     */
+    @Nullable
+    public Document getDocument() {
+        return mDocument;
+    }
+
+    /**
+     * @return the document's extractions or null, if processing failed
+     */
+    @Nullable
+    public ExtractionsContainer getExtractions() {
+        return mExtractions;
+    }
+
+    /**
+     * @return the reason why processing failed or null, if it was successful
+     */
+    @Nullable
+    public Exception getError() {
+        return mError;
+    }
+}
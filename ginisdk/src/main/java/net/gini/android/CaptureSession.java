@@ -0,0 +1,168 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import net.gini.android.DocumentTaskManager.DocumentType;
+import net.gini.android.models.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import bolts.Continuation;
+import bolts.Task;
+
+/**
+ * A capture session collects the pages of a multi-page document while the user is still capturing them.
+ * <p>
+ * Each page is uploaded as a partial document as soon as it is added. Reordering, rotating and removing pages only
+ * changes the session's local state. When the user is done {@link #finish()} creates the composite document, which
+ * usually is the only remaining request because the pages have been uploaded in the meantime.
+ * <p>
+ * Create a capture session with {@link DocumentTaskManager#createCaptureSession(DocumentType, DocumentMetadata)}.
+ */
+public class CaptureSession {
+
+    private final DocumentTaskManager mDocumentTaskManager;
+    private final DocumentType mDocumentType;
+    private final DocumentMetadata mDocumentMetadata;
+    private final TaskLimiter mTaskLimiter;
+    private final List<Page> mPages = new ArrayList<>();
+    private boolean mFinished;
+
+    CaptureSession(@NonNull final DocumentTaskManager documentTaskManager, @Nullable final DocumentType documentType,
+            @Nullable final DocumentMetadata documentMetadata) {
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+        mDocumentType = documentType;
+        mDocumentMetadata = documentMetadata;
+        mTaskLimiter = new TaskLimiter(DocumentTaskManager.DEFAULT_PARALLEL_PAGE_UPLOADS);
+    }
+
+    /**
+     * Adds a page after the last page and starts uploading it.
+     *
+     * @param documentPage the captured page
+     *
+     * @return A Task which will resolve to the partial document of the page.
+     */
+    public synchronized Task<Document> addPage(@NonNull final DocumentPage documentPage) {
+        checkNotFinished();
+        final Page page = new Page(checkNotNull(documentPage));
+        page.mUploadTask = upload(documentPage);
+        mPages.add(page);
+        return page.mUploadTask;
+    }
+
+    /**
+     * Moves a page to a new position.
+     *
+     * @param fromIndex the current position of the page
+     * @param toIndex   the new position of the page
+     */
+    public synchronized void movePage(final int fromIndex, final int toIndex) {
+        checkNotFinished();
+        final Page page = mPages.remove(fromIndex);
+        mPages.add(toIndex, page);
+    }
+
+    /**
+     * Sets the amount in degrees the page has been rotated by the user.
+     *
+     * @param index    the position of the page
+     * @param rotation the rotation in degrees
+     */
+    public synchronized void setPageRotation(final int index, final int rotation) {
+        checkNotFinished();
+        mPages.get(index).mRotation = rotation;
+    }
+
+    /**
+     * Removes a page. The page won't be part of the composite document. Its partial document is not deleted.
+     *
+     * @param index the position of the page
+     */
+    public synchronized void removePage(final int index) {
+        checkNotFinished();
+        mPages.remove(index);
+    }
+
+    /**
+     * @return the number of pages
+     */
+    public synchronized int getPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * Creates the composite document from the pages in their current order and with their current rotations. Waits
+     * for pages which are still being uploaded and uploads pages again whose upload failed.
+     * <p>
+     * No pages may be changed after this method was called.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created composite document.
+     */
+    public Task<Document> finish() {
+        final List<Page> pages;
+        synchronized (this) {
+            checkNotFinished();
+            if (mPages.isEmpty()) {
+                throw new IllegalStateException("A capture session without pages can't be finished");
+            }
+            mFinished = true;
+            pages = new ArrayList<>(mPages);
+        }
+        final List<Task<Document>> pageTasks = new ArrayList<>(pages.size());
+        for (final Page page : pages) {
+            pageTasks.add(page.mUploadTask.continueWithTask(new Continuation<Document, Task<Document>>() {
+                @Override
+                public Task<Document> then(final Task<Document> task) throws Exception {
+                    if (task.isFaulted() || task.isCancelled()) {
+                        return upload(page.mDocumentPage);
+                    }
+                    return task;
+                }
+            }));
+        }
+        return Task.whenAll(pageTasks).onSuccessTask(new Continuation<Void, Task<Document>>() {
+            @Override
+            public Task<Document> then(final Task<Void> task) throws Exception {
+                final LinkedHashMap<Document, Integer> documentRotationMap = new LinkedHashMap<>();
+                for (int i = 0; i < pages.size(); i++) {
+                    documentRotationMap.put(pageTasks.get(i).getResult(), pages.get(i).mRotation);
+                }
+                return mDocumentTaskManager.createCompositeDocument(documentRotationMap, mDocumentType);
+            }
+        }, mDocumentTaskManager.getParsingExecutor());
+    }
+
+    private Task<Document> upload(@NonNull final DocumentPage documentPage) {
+        return mTaskLimiter.submit(new Callable<Task<Document>>() {
+            @Override
+            public Task<Document> call() throws Exception {
+                return mDocumentTaskManager.uploadPage(documentPage, mDocumentType, mDocumentMetadata,
+                        DocumentTaskManager.DEFAULT_PAGE_UPLOAD_RETRIES);
+            }
+        });
+    }
+
+    private void checkNotFinished() {
+        if (mFinished) {
+            throw new IllegalStateException("The capture session was already finished");
+        }
+    }
+
+    private static class Page {
+
+        private final DocumentPage mDocumentPage;
+        private Task<Document> mUploadTask;
+        private int mRotation;
+
+        Page(final DocumentPage documentPage) {
+            mDocumentPage = documentPage;
+            mRotation = documentPage.getRotation();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package net.gini.android;
+
+import com.android.volley.NetworkResponse;
+
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Remembers the validators (ETag and Last-Modified) and the parsed bodies of JSON responses to make conditional
+ * requests. If the Gini API responds with {@code 304 Not Modified}, the previously parsed body is reused without
+ * downloading or parsing it again.
+ * <p>
+ * The least recently used responses are evicted when the maximum number of entries is exceeded.
+ */
+class ConditionalRequestCache {
+
+    /**
+     * The default maximum number of remembered responses.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 100;
+
+    static final String ETAG_HEADER = "ETag";
+    static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+    private final Map<String, Entry> mEntries;
+
+    ConditionalRequestCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries can't be less than 1");
+        }
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Adds the conditional request headers for the remembered response of the URL, if there is one.
+     */
+    synchronized void addConditionalHeaders(@NonNull final String url, @NonNull final Map<String, String> headers) {
+        final Entry entry = mEntries.get(url);
+        if (entry == null) {
+            return;
+        }
+        if (entry.mETag != null) {
+            headers.put(IF_NONE_MATCH_HEADER, entry.mETag);
+        }
+        if (entry.mLastModified != null) {
+            headers.put(IF_MODIFIED_SINCE_HEADER, entry.mLastModified);
+        }
+    }
+
+    /**
+     * @return the remembered body, if the response is {@code 304 Not Modified} and a body was remembered for the URL.
+     * Otherwise null.
+     */
+    @Nullable
+    synchronized JSONObject getNotModifiedBody(@NonNull final String url, @NonNull final NetworkResponse response) {
+        if (response.statusCode != HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return null;
+        }
+        final Entry entry = mEntries.get(url);
+        return entry != null ? entry.mBody : null;
+    }
+
+    /**
+     * Remembers the validators and the parsed body of the response. Responses without validators are forgotten.
+     */
+    synchronized void put(@NonNull final String url, @NonNull final NetworkResponse response,
+            @Nullable final JSONObject body) {
+        final String eTag = response.headers != null ? response.headers.get(ETAG_HEADER) : null;
+        final String lastModified = response.headers != null ? response.headers.get(LAST_MODIFIED_HEADER) : null;
+        if (body == null || (eTag == null && lastModified == null)) {
+            mEntries.remove(url);
+        } else {
+            mEntries.put(url, new Entry(eTag, lastModified, body));
+        }
+    }
+
+    private static class Entry {
+
+        private final String mETag;
+        private final String mLastModified;
+        private final JSONObject mBody;
+
+        Entry(@Nullable final String eTag, @Nullable final String lastModified, @NonNull final JSONObject body) {
+            mETag = eTag;
+            mLastModified = lastModified;
+            mBody = body;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A page of a multi-page document which is uploaded as a partial document.
+ *
+ * <p> The page's content is given either as a byte array or as a {@link DocumentSource}.
+ */
+public class DocumentPage {
+
+    private final byte[] mData;
+    private final DocumentSource mDocumentSource;
+    private final String mContentType;
+    private final String mFilename;
+    private final int mRotation;
+
+    /**
+     * @param data        A byte array representing an image, a pdf or UTF-8 encoded text
+     * @param contentType The media type of the page's data
+     * @param filename    Optional the filename of the page
+     * @param rotation    The amount in degrees the page has been rotated by the user
+     */
+    public DocumentPage(@NonNull final byte[] data, @NonNull final String contentType,
+            @Nullable final String filename, final int rotation) {
+        mData = checkNotNull(data);
+        mDocumentSource = null;
+        mContentType = checkNotNull(contentType);
+        mFilename = filename;
+        mRotation = rotation;
+    }
+
+    /**
+     * A failed upload of the page is retried only if the document source is {@link DocumentSource#isRepeatable()
+     * repeatable}. Sources created with {@link DocumentSource#fromInputStream(java.io.InputStream, long)} are uploaded
+     * only once.
+     *
+     * @param documentSource A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param contentType    The media type of the page's data
+     * @param filename       Optional the filename of the page
+     * @param rotation       The amount in degrees the page has been rotated by the user
+     */
+    public DocumentPage(@NonNull final DocumentSource documentSource, @NonNull final String contentType,
+            @Nullable final String filename, final int rotation) {
+        mData = null;
+        mDocumentSource = checkNotNull(documentSource);
+        mContentType = checkNotNull(contentType);
+        mFilename = filename;
+        mRotation = rotation;
+    }
+
+    /**
+     * @return the page's data or null, if the page was created with a {@link DocumentSource}
+     */
+    @Nullable
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * @return the page's source or null, if the page was created with a byte array
+     */
+    @Nullable
+    public DocumentSource getDocumentSource() {
+        return mDocumentSource;
+    }
+
+    @NonNull
+    public String getContentType() {
+        return mContentType;
+    }
+
+    @Nullable
+    public String getFilename() {
+        return mFilename;
+    }
+
+    public int getRotation() {
+        return mRotation;
+    }
+}
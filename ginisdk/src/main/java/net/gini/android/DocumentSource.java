@@ -0,0 +1,206 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A document whose content is read while it is uploaded instead of being loaded into memory beforehand.
+ *
+ * <p> Use the factory methods to create a document source for a {@link File}, a {@link ParcelFileDescriptor} or an
+ * {@link InputStream} with a known length.
+ */
+public abstract class DocumentSource {
+
+    /**
+     * Create a document source which reads the given file.
+     *
+     * @param file a readable file
+     * @return a document source which can be uploaded repeatedly
+     */
+    @NonNull
+    public static DocumentSource fromFile(@NonNull final File file) {
+        return new FileDocumentSource(checkNotNull(file));
+    }
+
+    /**
+     * Create a document source which reads the given file descriptor from its beginning.
+     *
+     * <p> The file descriptor is not closed by the Gini SDK. Keep it open until the upload task has completed.
+     *
+     * @param fileDescriptor a seekable file descriptor of a regular file (e.g. one opened via a
+     *                       {@link android.content.ContentResolver})
+     * @return a document source which can be uploaded repeatedly
+     * @throws IllegalArgumentException if the size of the file is unknown, for example because the file descriptor is
+     *                                  a pipe or a socket. Use {@link #fromInputStream(InputStream, long)} with the
+     *                                  known length instead
+     */
+    @NonNull
+    public static DocumentSource fromFileDescriptor(@NonNull final ParcelFileDescriptor fileDescriptor) {
+        // The size is sent before the content, which requires a regular file
+        if (checkNotNull(fileDescriptor).getStatSize() < 0) {
+            throw new IllegalArgumentException("fileDescriptor must refer to a regular file of a known size");
+        }
+        return new FileDescriptorDocumentSource(fileDescriptor);
+    }
+
+    /**
+     * Create a document source which reads the given input stream.
+     *
+     * <p> An input stream can be read only once, therefore the upload cannot be retried. The stream is closed after
+     * it has been read.
+     *
+     * @param inputStream an input stream positioned at the beginning of the document
+     * @param length      the exact number of bytes which will be read from the stream
+     * @return a document source which can be uploaded only once
+     */
+    @NonNull
+    public static DocumentSource fromInputStream(@NonNull final InputStream inputStream, final long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length can't be less than 0");
+        }
+        return new InputStreamDocumentSource(checkNotNull(inputStream), length);
+    }
+
+    /**
+     * Create a document source which reads a region of a byte array without copying it. The array must not be
+     * modified until the upload has completed.
+     */
+    @NonNull
+    static DocumentSource fromByteArray(@NonNull final byte[] data, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ByteArrayDocumentSource(data, offset, length);
+    }
+
+    /**
+     * @return the number of bytes in the document
+     */
+    public abstract long getLength();
+
+    /**
+     * Document sources which can be read only once are not uploaded again when an upload failed.
+     *
+     * @return true, if {@link #openStream()} can be called more than once
+     */
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * Opens a new stream to read the document from its beginning. The caller has to close the returned stream.
+     *
+     * @return a stream of the document's bytes
+     * @throws IOException if the document cannot be read (again)
+     */
+    @NonNull
+    public abstract InputStream openStream() throws IOException;
+
+    private static class ByteArrayDocumentSource extends DocumentSource {
+
+        private final byte[] mData;
+        private final int mOffset;
+        private final int mLength;
+
+        ByteArrayDocumentSource(final byte[] data, final int offset, final int length) {
+            mData = data;
+            mOffset = offset;
+            mLength = length;
+        }
+
+        @Override
+        public long getLength() {
+            return mLength;
+        }
+
+        @NonNull
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(mData, mOffset, mLength);
+        }
+    }
+
+    private static class FileDocumentSource extends DocumentSource {
+
+        private final File mFile;
+
+        FileDocumentSource(final File file) {
+            mFile = file;
+        }
+
+        @Override
+        public long getLength() {
+            return mFile.length();
+        }
+
+        @NonNull
+        @Override
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(mFile);
+        }
+    }
+
+    private static class FileDescriptorDocumentSource extends DocumentSource {
+
+        private final ParcelFileDescriptor mFileDescriptor;
+
+        FileDescriptorDocumentSource(final ParcelFileDescriptor fileDescriptor) {
+            mFileDescriptor = fileDescriptor;
+        }
+
+        @Override
+        public long getLength() {
+            return mFileDescriptor.getStatSize();
+        }
+
+        @NonNull
+        @Override
+        public InputStream openStream() throws IOException {
+            // A FileInputStream does not own a file descriptor it was created with and won't close it.
+            final FileInputStream inputStream = new FileInputStream(mFileDescriptor.getFileDescriptor());
+            inputStream.getChannel().position(0);
+            return inputStream;
+        }
+    }
+
+    private static class InputStreamDocumentSource extends DocumentSource {
+
+        private final long mLength;
+        private InputStream mInputStream;
+
+        InputStreamDocumentSource(final InputStream inputStream, final long length) {
+            mInputStream = inputStream;
+            mLength = length;
+        }
+
+        @Override
+        public long getLength() {
+            return mLength;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @NonNull
+        @Override
+        public synchronized InputStream openStream() throws IOException {
+            if (mInputStream == null) {
+                throw new IOException("The input stream has already been read");
+            }
+            final InputStream inputStream = mInputStream;
+            mInputStream = null;
+            return inputStream;
+        }
+    }
+}
@@ -7,7 +7,12 @@ import static net.gini.android.Utils.checkNotNull;
 
 import android.graphics.Bitmap;
 import android.net.Uri;
+import android.os.SystemClock;
 
+import com.android.volley.NetworkResponse;
+import com.android.volley.VolleyError;
+
+import net.gini.android.EncodeBufferPool.EncodeBuffer;
 import net.gini.android.authorization.Session;
 import net.gini.android.authorization.SessionManager;
 import net.gini.android.models.Box;
@@ -15,25 +20,35 @@ import net.gini.android.models.CompoundExtraction;
 import net.gini.android.models.Document;
 import net.gini.android.models.Extraction;
 import net.gini.android.models.ExtractionsContainer;
-import net.gini.android.models.ReturnReason;
+import net.gini.android.models.Layout;
 import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.ExtractionsParser;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import bolts.CancellationToken;
+import bolts.CancellationTokenSource;
 import bolts.Continuation;
 import bolts.Task;
 
@@ -44,7 +59,19 @@ import bolts.Task;
 public class DocumentTaskManager {
 
     private final GiniApiType mGiniApiType;
-    private Map<Document, Boolean> mDocumentPollingsInProgress = new ConcurrentHashMap<>();
+    /**
+     * The pollings in progress by document id. Concurrent pollings of the same document share one polling.
+     */
+    private final Map<String, DocumentPolling> mDocumentPollingsInProgress = new HashMap<>();
+    private final SingleFlight<Document> mDocumentRequests = new SingleFlight<>();
+    private final AtomicBoolean mPendingPollingsResumed = new AtomicBoolean();
+    /**
+     * The documents parsed from the responses of the Gini API. Unmodified documents are answered with the same
+     * response instance, which doesn't need to be parsed again. Entries are removed once the ApiCommunicator doesn't
+     * keep the response anymore.
+     */
+    private final Map<JSONObject, Document> mParsedDocuments =
+            Collections.synchronizedMap(new WeakHashMap<JSONObject, Document>());
 
     /**
      * The available document type hints. See the documentation for more information.
@@ -71,15 +98,43 @@ public class DocumentTaskManager {
     }
 
     /**
-     * The time in milliseconds between HTTP requests when a document is polled.
+     * The time in milliseconds between HTTP requests when a document is polled. Used only if no
+     * {@link PollingStrategy} was set.
      */
     public static long POLLING_INTERVAL = 1000;
 
+    // Not defined in HttpURLConnection
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
     /**
      * The default compression rate which is used for JPEG compression in per cent.
      */
     public final static int DEFAULT_COMPRESSION = 50;
 
+    /**
+     * The default maximum number of pages which are uploaded at the same time by
+     * {@link #createMultiPageDocument(List, DocumentType)}.
+     */
+    public final static int DEFAULT_PARALLEL_PAGE_UPLOADS = 3;
+
+    /**
+     * The default number of times a failed page upload is retried by
+     * {@link #createMultiPageDocument(List, DocumentType)}.
+     */
+    public final static int DEFAULT_PAGE_UPLOAD_RETRIES = 2;
+
+    /**
+     * The default number of documents which are processed at the same time by
+     * {@link #processDocuments(List, DocumentType, BatchProgressListener)}.
+     */
+    public final static int DEFAULT_PARALLEL_DOCUMENTS = 4;
+
+    /**
+     * The minimum time in milliseconds between the requests made for documents watched with
+     * {@link #watch(List, DocumentWatchListener)}.
+     */
+    static final long WATCH_MIN_TICK_INTERVAL_MS = 1000;
+
     /**
      * The ApiCommunicator instance which is used to communicate with the Gini API.
      */
@@ -88,6 +143,42 @@ public class DocumentTaskManager {
      * The SessionManager instance which is used to create the documents.
      */
     private final SessionManager mSessionManager;
+    /**
+     * The pool of buffers into which bitmaps are encoded before they are uploaded.
+     */
+    private final EncodeBufferPool mEncodeBufferPool = new EncodeBufferPool(EncodeBufferPool.DEFAULT_SIZE_LIMIT);
+    /**
+     * The optional cache which is used to avoid uploading the same partial document again.
+     */
+    private volatile UploadDeduplicationCache mUploadDeduplicationCache;
+    /**
+     * The optional cache which is used to avoid requesting the extractions of completed documents again.
+     */
+    private volatile ExtractionsCache mExtractionsCache;
+    /**
+     * The optional cache which stores completed documents and their extractions on disk.
+     */
+    private volatile OfflineDocumentCache mOfflineDocumentCache;
+    /**
+     * The optional strategy which decides the delays between requests when a document is polled.
+     */
+    private volatile PollingStrategy mPollingStrategy;
+    /**
+     * The optional poller which polls all pending documents together.
+     */
+    private volatile MultiplexedDocumentPoller mMultiplexedDocumentPoller;
+    /**
+     * The rate limited poller which is shared by all document watches.
+     */
+    private MultiplexedDocumentPoller mWatchPoller;
+    /**
+     * The optional registry which persists the documents being polled.
+     */
+    private volatile PendingDocumentRegistry mPendingDocumentRegistry;
+    /**
+     * The executor on which responses are processed and parsed.
+     */
+    private volatile Executor mParsingExecutor = Task.BACKGROUND_EXECUTOR;
 
     public DocumentTaskManager(final ApiCommunicator apiCommunicator, final SessionManager sessionManager,
             final GiniApiType giniApiType) {
@@ -96,14 +187,100 @@ public class DocumentTaskManager {
         mGiniApiType = checkNotNull(giniApiType);
     }
 
+    /**
+     * Enables the deduplication of partial document uploads from byte arrays. Uploading the same data again resolves
+     * to the previously created partial document without any requests to the Gini API. The cached partial documents
+     * are not tied to a user, see {@link UploadDeduplicationCache}.
+     *
+     * @param uploadDeduplicationCache the cache of created partial documents or null to disable the deduplication
+     */
+    void setUploadDeduplicationCache(@Nullable final UploadDeduplicationCache uploadDeduplicationCache) {
+        mUploadDeduplicationCache = uploadDeduplicationCache;
+    }
+
+    /**
+     * Enables caching the extractions of completed documents in memory.
+     *
+     * @param extractionsCache the cache of extractions or null to disable the caching
+     */
+    void setExtractionsCache(@Nullable final ExtractionsCache extractionsCache) {
+        mExtractionsCache = extractionsCache;
+    }
+
+    /**
+     * Enables storing completed documents and their extractions on disk. {@link #getDocument(String)} and
+     * {@link #getAllExtractions(Document)} return the stored responses first and revalidate them in the background.
+     * The stored responses are not tied to a user, see {@link OfflineDocumentCache}.
+     *
+     * @param offlineDocumentCache the cache or null to disable it
+     */
+    void setOfflineDocumentCache(@Nullable final OfflineDocumentCache offlineDocumentCache) {
+        mOfflineDocumentCache = offlineDocumentCache;
+    }
+
+    /**
+     * Sets the strategy which decides the delays between requests when a document is polled.
+     *
+     * @param pollingStrategy the polling strategy or null to poll every {@link #POLLING_INTERVAL} milliseconds
+     */
+    void setPollingStrategy(@Nullable final PollingStrategy pollingStrategy) {
+        mPollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * Sets the executor on which the continuations processing and parsing the responses of the Gini API run.
+     *
+     * @param parsingExecutor the executor or null to use {@link Task#BACKGROUND_EXECUTOR}
+     */
+    void setParsingExecutor(@Nullable final Executor parsingExecutor) {
+        mParsingExecutor = parsingExecutor != null ? parsingExecutor : Task.BACKGROUND_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor on which responses are processed and parsed.
+     */
+    @NonNull
+    Executor getParsingExecutor() {
+        return mParsingExecutor;
+    }
+
+    /**
+     * Persists the documents being polled in the registry, so that polling them can be resumed with
+     * {@link #resumePendingPollings(DocumentWatchListener)} after the app's process was killed.
+     *
+     * @param pendingDocumentRegistry the registry or null to not persist the documents being polled
+     */
+    void setPendingDocumentRegistry(@Nullable final PendingDocumentRegistry pendingDocumentRegistry) {
+        mPendingDocumentRegistry = pendingDocumentRegistry;
+    }
+
+    /**
+     * Enables polling all pending documents together on a shared timer. The state of several due documents is
+     * requested with a single document list request instead of one request per document.
+     *
+     * @param enabled true to poll pending documents together
+     */
+    void setMultiplexedPolling(final boolean enabled) {
+        mMultiplexedDocumentPoller = enabled
+                ? new MultiplexedDocumentPoller(this, mApiCommunicator, mSessionManager) : null;
+    }
+
     /**
      * A Continuation that uses the JSON response from the Gini API and returns a new Document instance from the JSON.
+     * Reuses the Document instance if the same response was parsed before.
      */
-    private static final Continuation<JSONObject, Document> DOCUMENT_FROM_RESPONSE =
+    private final Continuation<JSONObject, Document> mCachedDocumentFromResponse =
             new Continuation<JSONObject, Document>() {
                 @Override
                 public Document then(Task<JSONObject> task) throws Exception {
-                    return Document.fromApiResponse(task.getResult());
+                    final JSONObject response = task.getResult();
+                    final Document cachedDocument = mParsedDocuments.get(response);
+                    if (cachedDocument != null) {
+                        return cachedDocument;
+                    }
+                    final Document document = Document.fromApiResponse(response);
+                    mParsedDocuments.put(response, document);
+                    return document;
                 }
             };
 
@@ -118,23 +295,32 @@ public class DocumentTaskManager {
      * @return A Task which will resolve to an empty string.
      */
     public Task<String> deletePartialDocumentAndParents(@NonNull final String documentId) {
-        return getDocument(documentId).onSuccessTask(new Continuation<Document, Task<Void>>() {
+        // The parents are not taken from the offline cache, because they may have changed
+        return requestDocument(documentId).onSuccessTask(new Continuation<Document, Task<Void>>() {
             @Override
             public Task<Void> then(Task<Document> documentTask) throws Exception {
                 final Document document = documentTask.getResult();
                 return deleteDocuments(document.getCompositeDocuments());
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<Void, Task<Session>>() {
+        }, mParsingExecutor).onSuccessTask(new Continuation<Void, Task<Session>>() {
             @Override
             public Task<Session> then(final Task<Void> task) throws Exception {
                 return mSessionManager.getSession();
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<Session, Task<String>>() {
+        }, mParsingExecutor).onSuccessTask(new Continuation<Session, Task<String>>() {
             @Override
             public Task<String> then(final Task<Session> task) throws Exception {
                 final Session session = task.getResult();
                 return mApiCommunicator.deleteDocument(documentId, session);
             }
+        }).onSuccess(new Continuation<String, String>() {
+            @Override
+            public String then(final Task<String> task) throws Exception {
+                removeFromUploadDeduplicationCache(documentId);
+                removeFromExtractionsCache(documentId);
+                removeFromOfflineDocumentCache(documentId);
+                return task.getResult();
+            }
         });
     }
 
@@ -154,9 +340,45 @@ public class DocumentTaskManager {
                 final Session session = task.getResult();
                 return mApiCommunicator.deleteDocument(documentId, session);
             }
+        }).onSuccess(new Continuation<String, String>() {
+            @Override
+            public String then(final Task<String> task) throws Exception {
+                removeFromUploadDeduplicationCache(documentId);
+                removeFromExtractionsCache(documentId);
+                removeFromOfflineDocumentCache(documentId);
+                return task.getResult();
+            }
         });
     }
 
+    private void removeFromUploadDeduplicationCache(@NonNull final String documentId) {
+        final UploadDeduplicationCache uploadDeduplicationCache = mUploadDeduplicationCache;
+        if (uploadDeduplicationCache != null) {
+            uploadDeduplicationCache.removeDocument(documentId);
+        }
+    }
+
+    private void removeFromExtractionsCache(@NonNull final String documentId) {
+        final ExtractionsCache extractionsCache = mExtractionsCache;
+        if (extractionsCache != null) {
+            extractionsCache.remove(documentId);
+        }
+    }
+
+    private void removeExtractionsFromOfflineDocumentCache(@NonNull final String documentId) {
+        final OfflineDocumentCache offlineDocumentCache = mOfflineDocumentCache;
+        if (offlineDocumentCache != null) {
+            offlineDocumentCache.removeExtractions(documentId);
+        }
+    }
+
+    private void removeFromOfflineDocumentCache(@NonNull final String documentId) {
+        final OfflineDocumentCache offlineDocumentCache = mOfflineDocumentCache;
+        if (offlineDocumentCache != null) {
+            offlineDocumentCache.remove(documentId);
+        }
+    }
+
     private Task<Void> deleteDocuments(@NonNull final List<Uri> documentUris) {
         return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Void>>() {
             @Override
@@ -165,10 +387,16 @@ public class DocumentTaskManager {
                 final List<Task<String>> deleteTasks = new ArrayList<>();
                 for (final Uri documentUri : documentUris) {
                     deleteTasks.add(mApiCommunicator.deleteDocument(documentUri, session));
+                    // The last path segment of a document's URI is its id
+                    final String documentId = documentUri.getLastPathSegment();
+                    if (documentId != null) {
+                        removeFromExtractionsCache(documentId);
+                        removeFromOfflineDocumentCache(documentId);
+                    }
                 }
                 return Task.whenAll(deleteTasks);
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mParsingExecutor);
     }
 
     /**
@@ -184,7 +412,7 @@ public class DocumentTaskManager {
      */
     public Task<Document> createPartialDocument(@NonNull final byte[] document, @NonNull final String contentType,
             @Nullable final String filename, @Nullable final DocumentType documentType) {
-        return createPartialDocumentInternal(document, contentType, filename, documentType, null);
+        return createPartialDocumentInternal(document, contentType, filename, documentType, null, null, null);
     }
 
     /**
@@ -202,11 +430,177 @@ public class DocumentTaskManager {
      */
     public Task<Document> createPartialDocument(@NonNull final byte[] document, @NonNull final String contentType,
             @Nullable final String filename, @Nullable final DocumentType documentType, @NonNull final DocumentMetadata documentMetadata) {
-        return createPartialDocumentInternal(document, contentType, filename, documentType, documentMetadata);
+        return createPartialDocumentInternal(document, contentType, filename, documentType, documentMetadata, null,
+                null);
+    }
+
+    /**
+     * Uploads raw data and creates a new Gini partial document. Reports the progress of the upload and aborts it
+     * when cancellation is requested.
+     *
+     * @param document          A byte array representing an image, a pdf or UTF-8 encoded text
+     * @param contentType       The media type of the uploaded data
+     * @param filename          Optional the filename of the given document
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values
+     * @param documentMetadata  Optional additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     * @param uploadListener    Optional listener for the upload progress. Called on a background thread
+     * @param cancellationToken Optional token to cancel the upload. The returned Task is cancelled then
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createPartialDocument(@NonNull final byte[] document, @NonNull final String contentType,
+            @Nullable final String filename, @Nullable final DocumentType documentType,
+            @Nullable final DocumentMetadata documentMetadata, @Nullable final UploadListener uploadListener,
+            @Nullable final CancellationToken cancellationToken) {
+        return createPartialDocumentInternal(document, contentType, filename, documentType, documentMetadata,
+                uploadListener, cancellationToken);
     }
 
     private Task<Document> createPartialDocumentInternal(@NonNull final byte[] document, @NonNull final String contentType,
-            @Nullable final String filename, @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata) {
+            @Nullable final String filename, @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            @Nullable final UploadListener uploadListener, @Nullable final CancellationToken cancellationToken) {
+        if (!mGiniApiType.getGiniJsonMediaType().equals(MediaTypes.GINI_JSON_V2)) {
+            throw new UnsupportedOperationException(
+                    "Partial documents may be used only with the default Gini API. Use GiniApiType.DEFAULT.");
+        }
+        final String apiDoctypeHint = documentType != null ? documentType.getApiDoctypeHint() : null;
+        final String partialDocumentMediaType = MediaTypes
+                .forPartialDocument(mGiniApiType.getGiniPartialMediaType(), checkNotNull(contentType));
+        final Continuation<Session, Task<Uri>> uploadContinuation = new Continuation<Session, Task<Uri>>() {
+            @Override
+            public Task<Uri> then(Task<Session> sessionTask) throws Exception {
+                final Session session = sessionTask.getResult();
+                return uploadDocument(document, partialDocumentMediaType, filename, apiDoctypeHint, session,
+                        documentMetadata, uploadListener, cancellationToken);
+            }
+        };
+        final UploadDeduplicationCache uploadDeduplicationCache = mUploadDeduplicationCache;
+        if (uploadDeduplicationCache == null) {
+            return createDocumentInternal(uploadContinuation, cancellationToken);
+        }
+        return Task.call(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return UploadDeduplicationCache.contentHash(document, partialDocumentMediaType, apiDoctypeHint,
+                        documentMetadata);
+            }
+        }, mParsingExecutor).onSuccessTask(new Continuation<String, Task<Document>>() {
+            @Override
+            public Task<Document> then(final Task<String> hashTask) throws Exception {
+                final String contentHash = hashTask.getResult();
+                final Document cachedDocument = uploadDeduplicationCache.get(contentHash);
+                if (cachedDocument != null) {
+                    return Task.forResult(cachedDocument);
+                }
+                return createDeduplicatedDocument(uploadContinuation, uploadDeduplicationCache, contentHash,
+                        cancellationToken);
+            }
+        }, mParsingExecutor, cancellationToken);
+    }
+
+    /**
+     * Like {@link #createDocumentInternal(Continuation, CancellationToken)}, but also stores the created document in the upload
+     * deduplication cache.
+     */
+    private Task<Document> createDeduplicatedDocument(@NonNull final Continuation<Session, Task<Uri>> uploadContinuation,
+            @NonNull final UploadDeduplicationCache uploadDeduplicationCache, @NonNull final String contentHash,
+            @Nullable final CancellationToken cancellationToken) {
+        return mSessionManager.getSession()
+                .onSuccessTask(uploadContinuation, mParsingExecutor, cancellationToken)
+                .onSuccessTask(new Continuation<Uri, Task<JSONObject>>() {
+                    @Override
+                    public Task<JSONObject> then(final Task<Uri> uploadTask) throws Exception {
+                        final Uri documentUri = uploadTask.getResult();
+                        return mSessionManager.getSession().onSuccessTask(
+                                new Continuation<Session, Task<JSONObject>>() {
+                                    @Override
+                                    public Task<JSONObject> then(final Task<Session> sessionTask) throws Exception {
+                                        return mApiCommunicator.getDocument(documentUri, sessionTask.getResult());
+                                    }
+                                }, mParsingExecutor);
+                    }
+                }, mParsingExecutor, cancellationToken)
+                .onSuccess(new Continuation<JSONObject, Document>() {
+                    @Override
+                    public Document then(final Task<JSONObject> task) throws Exception {
+                        final Document document = Document.fromApiResponse(task.getResult());
+                        uploadDeduplicationCache.put(contentHash, task.getResult());
+                        return document;
+                    }
+                }, mParsingExecutor);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and creates a new Gini partial document. Unlike
+     * {@link #createPartialDocument(byte[], String, String, DocumentType)} the document is never loaded into memory
+     * as a whole.
+     *
+     * @param documentSource A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param contentType    The media type of the uploaded data
+     * @param filename       Optional the filename of the given document
+     * @param documentType   Optional a document type hint. See the documentation for the document type hints for
+     *                       possible values
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createPartialDocument(@NonNull final DocumentSource documentSource,
+            @NonNull final String contentType, @Nullable final String filename,
+            @Nullable final DocumentType documentType) {
+        return createPartialDocumentInternal(documentSource, contentType, filename, documentType, null, null, null);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and creates a new Gini partial document. Unlike
+     * {@link #createPartialDocument(byte[], String, String, DocumentType, DocumentMetadata)} the document is never
+     * loaded into memory as a whole.
+     *
+     * @param documentSource    A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param contentType       The media type of the uploaded data
+     * @param filename          Optional the filename of the given document
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values
+     * @param documentMetadata  Additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createPartialDocument(@NonNull final DocumentSource documentSource,
+            @NonNull final String contentType, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @NonNull final DocumentMetadata documentMetadata) {
+        return createPartialDocumentInternal(documentSource, contentType, filename, documentType, documentMetadata,
+                null, null);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and creates a new Gini partial document. Reports the
+     * progress of the upload and aborts it when cancellation is requested.
+     *
+     * @param documentSource    A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param contentType       The media type of the uploaded data
+     * @param filename          Optional the filename of the given document
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values
+     * @param documentMetadata  Optional additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     * @param uploadListener    Optional listener for the upload progress. Called on a background thread
+     * @param cancellationToken Optional token to cancel the upload. The returned Task is cancelled then
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createPartialDocument(@NonNull final DocumentSource documentSource,
+            @NonNull final String contentType, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            @Nullable final UploadListener uploadListener, @Nullable final CancellationToken cancellationToken) {
+        return createPartialDocumentInternal(documentSource, contentType, filename, documentType, documentMetadata,
+                uploadListener, cancellationToken);
+    }
+
+    private Task<Document> createPartialDocumentInternal(@NonNull final DocumentSource documentSource,
+            @NonNull final String contentType, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            @Nullable final UploadListener uploadListener, @Nullable final CancellationToken cancellationToken) {
         if (!mGiniApiType.getGiniJsonMediaType().equals(MediaTypes.GINI_JSON_V2)) {
             throw new UnsupportedOperationException(
                     "Partial documents may be used only with the default Gini API. Use GiniApiType.DEFAULT.");
@@ -221,10 +615,10 @@ public class DocumentTaskManager {
                 final Session session = sessionTask.getResult();
                 final String partialDocumentMediaType = MediaTypes
                         .forPartialDocument(mGiniApiType.getGiniPartialMediaType(), checkNotNull(contentType));
-                return mApiCommunicator
-                        .uploadDocument(document, partialDocumentMediaType, filename, apiDoctypeHint, session, documentMetadata);
+                return uploadDocument(documentSource, partialDocumentMediaType, filename, apiDoctypeHint, session,
+                        documentMetadata, uploadListener, cancellationToken);
             }
-        });
+        }, cancellationToken);
     }
 
     /**
@@ -253,12 +647,12 @@ public class DocumentTaskManager {
                 return mApiCommunicator
                         .uploadDocument(compositeJson, mGiniApiType.getGiniCompositeJsonMediaType(), null, apiDoctypeHint, session, null);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<Uri, Task<Document>>() {
+        }, mParsingExecutor).onSuccessTask(new Continuation<Uri, Task<Document>>() {
             @Override
             public Task<Document> then(Task<Uri> uploadTask) throws Exception {
                 return getDocument(uploadTask.getResult());
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mParsingExecutor);
     }
 
     /**
@@ -290,15 +684,206 @@ public class DocumentTaskManager {
                 return mApiCommunicator
                         .uploadDocument(compositeJson, mGiniApiType.getGiniCompositeJsonMediaType(), null, apiDoctypeHint, session, null);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<Uri, Task<Document>>() {
+        }, mParsingExecutor).onSuccessTask(new Continuation<Uri, Task<Document>>() {
             @Override
             public Task<Document> then(Task<Uri> uploadTask) throws Exception {
                 return getDocument(uploadTask.getResult());
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mParsingExecutor);
+    }
+
+    /**
+     * Uploads the pages of a multi-page document and creates a new Gini composite document from them. See
+     * {@link #createMultiPageDocument(List, DocumentType, DocumentMetadata, int, int)} for details.
+     * <p>
+     * At most {@link #DEFAULT_PARALLEL_PAGE_UPLOADS} pages are uploaded at the same time and each page upload is
+     * retried at most {@link #DEFAULT_PAGE_UPLOAD_RETRIES} times.
+     *
+     * @param pages        The pages in the order in which they should appear in the composite document
+     * @param documentType Optional a document type hint. See the documentation for the document type hints for
+     *                     possible values
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created composite document.
+     */
+    public Task<Document> createMultiPageDocument(@NonNull final List<DocumentPage> pages,
+            @Nullable final DocumentType documentType) {
+        return createMultiPageDocument(pages, documentType, null, DEFAULT_PARALLEL_PAGE_UPLOADS,
+                DEFAULT_PAGE_UPLOAD_RETRIES);
+    }
+
+    /**
+     * Uploads the pages of a multi-page document and creates a new Gini composite document from them.
+     * <p>
+     * The pages are uploaded concurrently as partial documents. A failed page upload is retried without affecting
+     * the other pages. Pages whose {@link DocumentSource} can be read only once are not retried. Once all pages were
+     * uploaded the composite document is created with the pages in the given order and with their rotations.
+     * <p>
+     * If a page could not be uploaded the task fails and the composite document is not created. Partial documents
+     * which were uploaded until then are not deleted.
+     *
+     * @param pages                The pages in the order in which they should appear in the composite document
+     * @param documentType         Optional a document type hint. See the documentation for the document type hints
+     *                             for possible values
+     * @param documentMetadata     Optional additional information related to the document (e.g. the branch id to
+     *                             which the client app belongs)
+     * @param maxParallelUploads   The maximum number of pages which are uploaded at the same time
+     * @param maxPageUploadRetries How many times the upload of a page is retried before giving up
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created composite document.
+     */
+    public Task<Document> createMultiPageDocument(@NonNull final List<DocumentPage> pages,
+            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            final int maxParallelUploads, final int maxPageUploadRetries) {
+        if (!mGiniApiType.getGiniJsonMediaType().equals(MediaTypes.GINI_JSON_V2)) {
+            throw new UnsupportedOperationException(
+                    "Multi-page documents may be used only with the default Gini API. Use GiniApiType.DEFAULT.");
+        }
+        checkNotNull(pages);
+        if (pages.isEmpty()) {
+            throw new IllegalArgumentException("pages can't be empty");
+        }
+        if (maxPageUploadRetries < 0) {
+            throw new IllegalArgumentException("maxPageUploadRetries can't be less than 0");
+        }
+        final TaskLimiter taskLimiter = new TaskLimiter(maxParallelUploads);
+        final List<Task<Document>> pageTasks = new ArrayList<>(pages.size());
+        for (final DocumentPage page : pages) {
+            pageTasks.add(taskLimiter.submit(new Callable<Task<Document>>() {
+                @Override
+                public Task<Document> call() throws Exception {
+                    return uploadPage(page, documentType, documentMetadata, maxPageUploadRetries);
+                }
+            }));
+        }
+        return Task.whenAll(pageTasks).onSuccessTask(new Continuation<Void, Task<Document>>() {
+            @Override
+            public Task<Document> then(final Task<Void> task) throws Exception {
+                final LinkedHashMap<Document, Integer> documentRotationMap = new LinkedHashMap<>();
+                for (int i = 0; i < pages.size(); i++) {
+                    documentRotationMap.put(pageTasks.get(i).getResult(), pages.get(i).getRotation());
+                }
+                return createCompositeDocument(documentRotationMap, documentType);
+            }
+        }, mParsingExecutor);
+    }
+
+    Task<Document> uploadPage(@NonNull final DocumentPage page, @Nullable final DocumentType documentType,
+            @Nullable final DocumentMetadata documentMetadata, final int retries) {
+        final Task<Document> uploadTask;
+        if (page.getDocumentSource() != null) {
+            uploadTask = createPartialDocumentInternal(page.getDocumentSource(), page.getContentType(),
+                    page.getFilename(), documentType, documentMetadata, null, null);
+        } else {
+            uploadTask = createPartialDocumentInternal(page.getData(), page.getContentType(),
+                    page.getFilename(), documentType, documentMetadata, null, null);
+        }
+        // A document source which was already read can't be uploaded again
+        final boolean repeatable = page.getDocumentSource() == null || page.getDocumentSource().isRepeatable();
+        return uploadTask.continueWithTask(new Continuation<Document, Task<Document>>() {
+            @Override
+            public Task<Document> then(final Task<Document> task) throws Exception {
+                if (task.isFaulted() && retries > 0 && repeatable) {
+                    return uploadPage(page, documentType, documentMetadata, retries - 1);
+                }
+                return task;
+            }
+        });
+    }
+
+    /**
+     * Processes a batch of single page documents. Each document is uploaded, polled until processing completed and
+     * then its extractions are retrieved. At most {@link #DEFAULT_PARALLEL_DOCUMENTS} documents are processed at the
+     * same time.
+     * <p>
+     * See {@link #processDocuments(List, DocumentType, int, BatchProgressListener)} for details.
+     *
+     * @param documents             The documents to process
+     * @param documentType          Optional a document type hint for all documents. See the documentation for the
+     *                              document type hints for possible values
+     * @param batchProgressListener Optional listener which is notified whenever a document was processed
+     *
+     * @return A Task which will resolve to the results in the order of the documents.
+     */
+    public Task<List<BatchResult>> processDocuments(@NonNull final List<DocumentPage> documents,
+            @Nullable final DocumentType documentType, @Nullable final BatchProgressListener batchProgressListener) {
+        return processDocuments(documents, documentType, DEFAULT_PARALLEL_DOCUMENTS, batchProgressListener);
+    }
+
+    /**
+     * Processes a batch of single page documents. Each document is uploaded, polled until processing completed and
+     * then its extractions are retrieved.
+     * <p>
+     * The session is retrieved once before the first document is started. Documents are started in the order of the
+     * list. No new documents are started while the app's memory usage or the number of pending requests is high.
+     * <p>
+     * A failed document doesn't stop the batch. The returned Task always resolves to a result for every document,
+     * which contains either the extractions or the error. With the default Gini API every document is uploaded as a
+     * partial document and then a composite document is created with the page's rotation.
+     *
+     * @param documents             The documents to process
+     * @param documentType          Optional a document type hint for all documents. See the documentation for the
+     *                              document type hints for possible values
+     * @param maxInFlight           The maximum number of documents which are processed at the same time
+     * @param batchProgressListener Optional listener which is notified whenever a document was processed
+     *
+     * @return A Task which will resolve to the results in the order of the documents.
+     */
+    public Task<List<BatchResult>> processDocuments(@NonNull final List<DocumentPage> documents,
+            @Nullable final DocumentType documentType, final int maxInFlight,
+            @Nullable final BatchProgressListener batchProgressListener) {
+        final BatchProcessor batchProcessor = new BatchProcessor(this, mApiCommunicator, documents, documentType,
+                maxInFlight, batchProgressListener);
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<List<BatchResult>>>() {
+            @Override
+            public Task<List<BatchResult>> then(final Task<Session> task) throws Exception {
+                return batchProcessor.start();
+            }
+        }, mParsingExecutor);
+    }
+
+    /**
+     * Creates a document from a single page. Uses a partial and a composite document with the default Gini API.
+     */
+    Task<Document> createSinglePageDocument(@NonNull final DocumentPage page,
+            @Nullable final DocumentType documentType) {
+        if (mGiniApiType.getGiniJsonMediaType().equals(MediaTypes.GINI_JSON_V2)) {
+            return uploadPage(page, documentType, null, DEFAULT_PAGE_UPLOAD_RETRIES)
+                    .onSuccessTask(new Continuation<Document, Task<Document>>() {
+                        @Override
+                        public Task<Document> then(final Task<Document> task) throws Exception {
+                            final LinkedHashMap<Document, Integer> documentRotationMap = new LinkedHashMap<>();
+                            documentRotationMap.put(task.getResult(), page.getRotation());
+                            return createCompositeDocument(documentRotationMap, documentType);
+                        }
+                    }, mParsingExecutor);
+        }
+        if (page.getDocumentSource() != null) {
+            return createDocument(page.getDocumentSource(), page.getFilename(), documentType);
+        }
+        return createDocument(page.getData(), page.getFilename(), documentType);
+    }
+
+    /**
+     * Creates a capture session which uploads the pages of a multi-page document while they are being captured. See
+     * {@link CaptureSession} for details.
+     *
+     * @param documentType     Optional a document type hint. See the documentation for the document type hints for
+     *                         possible values
+     * @param documentMetadata Optional additional information related to the document (e.g. the branch id to which
+     *                         the client app belongs)
+     *
+     * @return A new capture session without pages.
+     */
+    public CaptureSession createCaptureSession(@Nullable final DocumentType documentType,
+            @Nullable final DocumentMetadata documentMetadata) {
+        if (!mGiniApiType.getGiniJsonMediaType().equals(MediaTypes.GINI_JSON_V2)) {
+            throw new UnsupportedOperationException(
+                    "Capture sessions may be used only with the default Gini API. Use GiniApiType.DEFAULT.");
+        }
+        return new CaptureSession(this, documentType, documentMetadata);
     }
 
-    private byte[] createCompositeJson(@NonNull final List<Document> documents)
+    static byte[] createCompositeJson(@NonNull final List<Document> documents)
             throws JSONException {
         final LinkedHashMap<Document, Integer> documentRotationMap = new LinkedHashMap<>();
         for (final Document document : documents) {
@@ -307,7 +892,7 @@ public class DocumentTaskManager {
         return createCompositeJson(documentRotationMap);
     }
 
-    private byte[] createCompositeJson(@NonNull final LinkedHashMap<Document, Integer> documentRotationMap)
+    static byte[] createCompositeJson(@NonNull final LinkedHashMap<Document, Integer> documentRotationMap)
             throws JSONException {
         final JSONObject jsonObject = new JSONObject();
         final JSONArray partialDocuments = new JSONArray();
@@ -343,7 +928,7 @@ public class DocumentTaskManager {
      */
     public Task<Document> createDocument(@NonNull final byte[] document, @Nullable final String filename,
             @Nullable final DocumentType documentType) {
-        return createDocumentInternal(document, filename, documentType, null);
+        return createDocumentInternal(document, filename, documentType, null, null, null);
     }
 
     /**
@@ -366,11 +951,34 @@ public class DocumentTaskManager {
      */
     public Task<Document> createDocument(@NonNull final byte[] document, @Nullable final String filename,
             @Nullable final DocumentType documentType, @NonNull final DocumentMetadata documentMetadata) {
-        return createDocumentInternal(document, filename, documentType, documentMetadata);
+        return createDocumentInternal(document, filename, documentType, documentMetadata, null, null);
+    }
+
+    /**
+     * Uploads raw data and creates a new Gini document. Reports the progress of the upload and aborts it when
+     * cancellation is requested.
+     *
+     * @param document          A byte array representing an image, a pdf or UTF-8 encoded text
+     * @param filename          Optional the filename of the given document.
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values.
+     * @param documentMetadata  Optional additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     * @param uploadListener    Optional listener for the upload progress. Called on a background thread
+     * @param cancellationToken Optional token to cancel the upload. The returned Task is cancelled then
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(@NonNull final byte[] document, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            @Nullable final UploadListener uploadListener, @Nullable final CancellationToken cancellationToken) {
+        return createDocumentInternal(document, filename, documentType, documentMetadata, uploadListener,
+                cancellationToken);
     }
 
     private Task<Document> createDocumentInternal(@NonNull final byte[] document, @Nullable final String filename,
-            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata) {
+            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            @Nullable final UploadListener uploadListener, @Nullable final CancellationToken cancellationToken) {
         return createDocumentInternal(new Continuation<Session, Task<Uri>>() {
             @Override
             public Task<Uri> then(Task<Session> sessionTask) throws Exception {
@@ -379,21 +987,140 @@ public class DocumentTaskManager {
                     apiDoctypeHint = documentType.getApiDoctypeHint();
                 }
                 final Session session = sessionTask.getResult();
-                return mApiCommunicator
-                        .uploadDocument(document, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, session, documentMetadata);
+                return uploadDocument(document, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, session,
+                        documentMetadata, uploadListener, cancellationToken);
             }
-        });
+        }, cancellationToken);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and creates a new Gini document. Unlike
+     * {@link #createDocument(byte[], String, DocumentType)} the document is never loaded into memory as a whole.
+     *
+     * @param documentSource A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param filename       Optional the filename of the given document.
+     * @param documentType   Optional a document type hint. See the documentation for the document type hints for
+     *                       possible values.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     *
+     * <b>Important:</b> If using the default Gini API, then use
+     * {@link #createPartialDocument(DocumentSource, String, String, DocumentType)} to upload the document and then
+     * call {@link #createCompositeDocument(LinkedHashMap, DocumentType)} to finish document creation.
+     */
+    public Task<Document> createDocument(@NonNull final DocumentSource documentSource, @Nullable final String filename,
+            @Nullable final DocumentType documentType) {
+        return createDocumentInternal(documentSource, filename, documentType, null, null, null);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and creates a new Gini document. Unlike
+     * {@link #createDocument(byte[], String, DocumentType, DocumentMetadata)} the document is never loaded into
+     * memory as a whole.
+     *
+     * @param documentSource    A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param filename          Optional the filename of the given document.
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values.
+     * @param documentMetadata  Additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     *
+     * <b>Important:</b> If using the default Gini API, then use
+     * {@link #createPartialDocument(DocumentSource, String, String, DocumentType, DocumentMetadata)} to upload the
+     * document and then call {@link #createCompositeDocument(LinkedHashMap, DocumentType)} to finish document
+     * creation.
+     */
+    public Task<Document> createDocument(@NonNull final DocumentSource documentSource, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @NonNull final DocumentMetadata documentMetadata) {
+        return createDocumentInternal(documentSource, filename, documentType, documentMetadata, null, null);
+    }
+
+    /**
+     * Uploads a document by streaming it from the given source and creates a new Gini document. Reports the progress
+     * of the upload and aborts it when cancellation is requested.
+     *
+     * @param documentSource    A source for an image, a pdf or UTF-8 encoded text (e.g. a file)
+     * @param filename          Optional the filename of the given document.
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values.
+     * @param documentMetadata  Optional additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     * @param uploadListener    Optional listener for the upload progress. Called on a background thread
+     * @param cancellationToken Optional token to cancel the upload. The returned Task is cancelled then
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(@NonNull final DocumentSource documentSource, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @Nullable final DocumentMetadata documentMetadata,
+            @Nullable final UploadListener uploadListener, @Nullable final CancellationToken cancellationToken) {
+        return createDocumentInternal(documentSource, filename, documentType, documentMetadata, uploadListener,
+                cancellationToken);
+    }
+
+    private Task<Document> createDocumentInternal(@NonNull final DocumentSource documentSource,
+            @Nullable final String filename, @Nullable final DocumentType documentType,
+            @Nullable final DocumentMetadata documentMetadata, @Nullable final UploadListener uploadListener,
+            @Nullable final CancellationToken cancellationToken) {
+        return createDocumentInternal(new Continuation<Session, Task<Uri>>() {
+            @Override
+            public Task<Uri> then(Task<Session> sessionTask) throws Exception {
+                String apiDoctypeHint = null;
+                if (documentType != null) {
+                    apiDoctypeHint = documentType.getApiDoctypeHint();
+                }
+                final Session session = sessionTask.getResult();
+                return uploadDocument(documentSource, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, session,
+                        documentMetadata, uploadListener, cancellationToken);
+            }
+        }, cancellationToken);
     }
 
     private Task<Document> createDocumentInternal(@NonNull final Continuation<Session, Task<Uri>> successContinuation) {
+        return createDocumentInternal(successContinuation, null);
+    }
+
+    private Task<Document> createDocumentInternal(@NonNull final Continuation<Session, Task<Uri>> successContinuation,
+            @Nullable final CancellationToken cancellationToken) {
         return mSessionManager.getSession()
-                .onSuccessTask(successContinuation, Task.BACKGROUND_EXECUTOR)
+                .onSuccessTask(successContinuation, mParsingExecutor, cancellationToken)
                 .onSuccessTask(new Continuation<Uri, Task<Document>>() {
                     @Override
                     public Task<Document> then(Task<Uri> uploadTask) throws Exception {
                         return getDocument(uploadTask.getResult());
                     }
-                }, Task.BACKGROUND_EXECUTOR);
+                }, mParsingExecutor, cancellationToken);
+    }
+
+    /**
+     * Uploads with progress reporting and cancellation only if they were requested.
+     */
+    private Task<Uri> uploadDocument(@NonNull final byte[] document, @NonNull final String contentType,
+            @Nullable final String filename, @Nullable final String apiDoctypeHint, @NonNull final Session session,
+            @Nullable final DocumentMetadata documentMetadata, @Nullable final UploadListener uploadListener,
+            @Nullable final CancellationToken cancellationToken) {
+        if (uploadListener == null && cancellationToken == null) {
+            return mApiCommunicator.uploadDocument(document, contentType, filename, apiDoctypeHint, session,
+                    documentMetadata);
+        }
+        return mApiCommunicator.uploadDocument(document, contentType, filename, apiDoctypeHint, session,
+                documentMetadata, uploadListener, cancellationToken);
+    }
+
+    /**
+     * Uploads with progress reporting and cancellation only if they were requested.
+     */
+    private Task<Uri> uploadDocument(@NonNull final DocumentSource documentSource, @NonNull final String contentType,
+            @Nullable final String filename, @Nullable final String apiDoctypeHint, @NonNull final Session session,
+            @Nullable final DocumentMetadata documentMetadata, @Nullable final UploadListener uploadListener,
+            @Nullable final CancellationToken cancellationToken) {
+        if (uploadListener == null && cancellationToken == null) {
+            return mApiCommunicator.uploadDocument(documentSource, contentType, filename, apiDoctypeHint, session,
+                    documentMetadata);
+        }
+        return mApiCommunicator.uploadDocument(documentSource, contentType, filename, apiDoctypeHint, session,
+                documentMetadata, uploadListener, cancellationToken);
     }
 
     /**
@@ -508,15 +1235,204 @@ public class DocumentTaskManager {
     private Task<Document> createDocumentInternal(@NonNull final Bitmap document, @Nullable final String filename,
             @Nullable final String apiDoctypeHint, final int compressionRate,
             @Nullable final DocumentMetadata documentMetadata) {
-        return createDocumentInternal(new Continuation<Session, Task<Uri>>() {
+        return createEncodedDocumentInternal(new Callable<EncodeBuffer>() {
             @Override
-            public Task<Uri> then(Task<Session> sessionTask) throws Exception {
-                final Session session = sessionTask.getResult();
-                final ByteArrayOutputStream documentOutputStream = new ByteArrayOutputStream();
-                document.compress(JPEG, compressionRate, documentOutputStream);
-                final byte[] uploadData = documentOutputStream.toByteArray();
-                return mApiCommunicator
-                        .uploadDocument(uploadData, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, session, documentMetadata);
+            public EncodeBuffer call() throws Exception {
+                final EncodeBuffer encodeBuffer = mEncodeBufferPool.obtainForJpeg(document, compressionRate);
+                document.compress(JPEG, compressionRate, encodeBuffer);
+                return encodeBuffer;
+            }
+        }, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, documentMetadata);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document. The photo is encoded as a JPEG which
+     * fits into the byte budget of the given encoder.
+     *
+     * @param document     A Bitmap representing the image
+     * @param filename     Optional the filename of the given document.
+     * @param documentType Optional a document type hint.
+     * @param jpegEncoder  The encoder which creates the JPEG representation of the document
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(@NonNull final Bitmap document, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @NonNull final AdaptiveJpegEncoder jpegEncoder) {
+        return createDocumentInternal(document, filename, getApiDoctypeHint(documentType), jpegEncoder, null);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document. The photo is encoded as a JPEG which
+     * fits into the byte budget of the given encoder.
+     *
+     * @param document     A Bitmap representing the image
+     * @param filename     Optional the filename of the given document.
+     * @param documentType Optional a document type hint. See the documentation for the document type hints for
+     *                     possible values.
+     * @param jpegEncoder  The encoder which creates the JPEG representation of the document
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     *
+     * @deprecated Use {@link #createDocument(Bitmap, String, DocumentType, AdaptiveJpegEncoder)} instead.
+     */
+    @Deprecated
+    public Task<Document> createDocument(@NonNull final Bitmap document, @Nullable final String filename,
+            @Nullable final String documentType, @NonNull final AdaptiveJpegEncoder jpegEncoder) {
+        return createDocumentInternal(document, filename, documentType, jpegEncoder, null);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document. The photo is encoded as a JPEG which
+     * fits into the byte budget of the given encoder.
+     *
+     * @param document          A Bitmap representing the image
+     * @param filename          Optional the filename of the given document.
+     * @param documentType      Optional a document type hint.
+     * @param jpegEncoder       The encoder which creates the JPEG representation of the document
+     * @param documentMetadata  Additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(@NonNull final Bitmap document, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @NonNull final AdaptiveJpegEncoder jpegEncoder,
+            @NonNull final DocumentMetadata documentMetadata) {
+        return createDocumentInternal(document, filename, getApiDoctypeHint(documentType), jpegEncoder,
+                documentMetadata);
+    }
+
+    private Task<Document> createDocumentInternal(@NonNull final Bitmap document, @Nullable final String filename,
+            @Nullable final String apiDoctypeHint, @NonNull final AdaptiveJpegEncoder jpegEncoder,
+            @Nullable final DocumentMetadata documentMetadata) {
+        checkNotNull(jpegEncoder);
+        return createEncodedDocumentInternal(new Callable<EncodeBuffer>() {
+            @Override
+            public EncodeBuffer call() throws Exception {
+                return jpegEncoder.encode(document, mEncodeBufferPool);
+            }
+        }, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, documentMetadata);
+    }
+
+    /**
+     * Uploads the given photo of a document page and creates a new Gini partial document. The photo is encoded as a
+     * JPEG which fits into the byte budget of the given encoder.
+     *
+     * @param document     A Bitmap representing the image
+     * @param filename     Optional the filename of the given document
+     * @param documentType Optional a document type hint. See the documentation for the document type hints for
+     *                     possible values
+     * @param jpegEncoder  The encoder which creates the JPEG representation of the document
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createPartialDocument(@NonNull final Bitmap document, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @NonNull final AdaptiveJpegEncoder jpegEncoder) {
+        return createPartialDocumentInternal(document, filename, documentType, jpegEncoder, null);
+    }
+
+    /**
+     * Uploads the given photo of a document page and creates a new Gini partial document. The photo is encoded as a
+     * JPEG which fits into the byte budget of the given encoder.
+     *
+     * @param document          A Bitmap representing the image
+     * @param filename          Optional the filename of the given document
+     * @param documentType      Optional a document type hint. See the documentation for the document type hints for
+     *                          possible values
+     * @param jpegEncoder       The encoder which creates the JPEG representation of the document
+     * @param documentMetadata  Additional information related to the document (e.g. the branch id
+     *                          to which the client app belongs)
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createPartialDocument(@NonNull final Bitmap document, @Nullable final String filename,
+            @Nullable final DocumentType documentType, @NonNull final AdaptiveJpegEncoder jpegEncoder,
+            @NonNull final DocumentMetadata documentMetadata) {
+        return createPartialDocumentInternal(document, filename, documentType, jpegEncoder, documentMetadata);
+    }
+
+    private Task<Document> createPartialDocumentInternal(@NonNull final Bitmap document,
+            @Nullable final String filename, @Nullable final DocumentType documentType,
+            @NonNull final AdaptiveJpegEncoder jpegEncoder, @Nullable final DocumentMetadata documentMetadata) {
+        if (!mGiniApiType.getGiniJsonMediaType().equals(MediaTypes.GINI_JSON_V2)) {
+            throw new UnsupportedOperationException(
+                    "Partial documents may be used only with the default Gini API. Use GiniApiType.DEFAULT.");
+        }
+        checkNotNull(jpegEncoder);
+        String apiDoctypeHint = null;
+        if (documentType != null) {
+            apiDoctypeHint = documentType.getApiDoctypeHint();
+        }
+        final String partialDocumentMediaType = MediaTypes
+                .forPartialDocument(mGiniApiType.getGiniPartialMediaType(), MediaTypes.IMAGE_JPEG);
+        return createEncodedDocumentInternal(new Callable<EncodeBuffer>() {
+            @Override
+            public EncodeBuffer call() throws Exception {
+                return jpegEncoder.encode(document, mEncodeBufferPool);
+            }
+        }, partialDocumentMediaType, filename, apiDoctypeHint, documentMetadata);
+    }
+
+    @Nullable
+    private static String getApiDoctypeHint(@Nullable final DocumentType documentType) {
+        return documentType != null ? documentType.getApiDoctypeHint() : null;
+    }
+
+    /**
+     * Encodes the document in the background while the session is requested. This way a login doesn't delay the
+     * encoding and the upload starts as soon as both have completed.
+     */
+    private Task<Document> createEncodedDocumentInternal(@NonNull final Callable<EncodeBuffer> encoder,
+            @NonNull final String contentType, @Nullable final String filename, @Nullable final String apiDoctypeHint,
+            @Nullable final DocumentMetadata documentMetadata) {
+        final Task<EncodeBuffer> encodeTask = Task.callInBackground(encoder);
+        final Task<Session> sessionTask = mSessionManager.getSession();
+        return Task.whenAll(Arrays.<Task<?>>asList(encodeTask, sessionTask))
+                .continueWithTask(new Continuation<Void, Task<Uri>>() {
+                    @Override
+                    public Task<Uri> then(final Task<Void> task) throws Exception {
+                        if (encodeTask.isFaulted()) {
+                            return Task.forError(encodeTask.getError());
+                        }
+                        final EncodeBuffer encodeBuffer = encodeTask.getResult();
+                        if (sessionTask.isFaulted()) {
+                            encodeBuffer.close();
+                            return Task.forError(sessionTask.getError());
+                        } else if (sessionTask.isCancelled()) {
+                            encodeBuffer.close();
+                            return Task.cancelled();
+                        }
+                        return uploadEncodedDocument(encodeBuffer, contentType, filename, apiDoctypeHint,
+                                sessionTask.getResult(), documentMetadata);
+                    }
+                }, mParsingExecutor)
+                .onSuccessTask(new Continuation<Uri, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(Task<Uri> uploadTask) throws Exception {
+                        return getDocument(uploadTask.getResult());
+                    }
+                }, mParsingExecutor);
+    }
+
+    /**
+     * Uploads the encoded document directly from the pooled buffer and returns the buffer to the pool once the
+     * upload has completed.
+     */
+    private Task<Uri> uploadEncodedDocument(@NonNull final EncodeBuffer encodeBuffer,
+            @NonNull final String contentType, @Nullable final String filename, @Nullable final String apiDoctypeHint,
+            @NonNull final Session session, @Nullable final DocumentMetadata documentMetadata) {
+        final Task<Uri> uploadTask;
+        try {
+            uploadTask = mApiCommunicator.uploadDocument(encodeBuffer.toDocumentSource(), contentType, filename,
+                    apiDoctypeHint, session, documentMetadata);
+        } catch (RuntimeException e) {
+            encodeBuffer.close();
+            throw e;
+        }
+        return uploadTask.continueWithTask(new Continuation<Uri, Task<Uri>>() {
+            @Override
+            public Task<Uri> then(final Task<Uri> task) throws Exception {
+                encodeBuffer.close();
+                return task;
             }
         });
     }
@@ -535,6 +1451,8 @@ public class DocumentTaskManager {
      */
     public Task<Map<String, SpecificExtraction>> getExtractions(@NonNull final Document document) {
         final String documentId = document.getId();
+        // The extractions cache is not used, because these extractions lack the compound extractions and can't be
+        // cached. Looking them up would only count misses.
         return mSessionManager.getSession()
                 .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
                     @Override
@@ -542,7 +1460,7 @@ public class DocumentTaskManager {
                         final Session session = sessionTask.getResult();
                         return mApiCommunicator.getExtractions(documentId, session);
                     }
-                }, Task.BACKGROUND_EXECUTOR)
+                }, mParsingExecutor)
                 .onSuccess(new Continuation<JSONObject, Map<String, SpecificExtraction>>() {
                     @Override
                     public Map<String, SpecificExtraction> then(Task<JSONObject> task) throws Exception {
@@ -577,7 +1495,7 @@ public class DocumentTaskManager {
 
                         return extractionsByName;
                     }
-                }, Task.BACKGROUND_EXECUTOR);
+                }, mParsingExecutor);
     }
 
     /**
@@ -589,106 +1507,175 @@ public class DocumentTaskManager {
      */
     public Task<ExtractionsContainer> getAllExtractions(@NonNull final Document document) {
         final String documentId = document.getId();
-        return mSessionManager.getSession()
-                .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+        final ExtractionsCache extractionsCache = mExtractionsCache;
+        final OfflineDocumentCache offlineDocumentCache = mOfflineDocumentCache;
+        // The extractions of pending documents may still change
+        if (document.getState() != Document.ProcessingState.COMPLETED) {
+            return requestAllExtractions(documentId);
+        }
+        if (extractionsCache == null) {
+            return offlineDocumentCache != null
+                    ? getOfflineExtractions(documentId, offlineDocumentCache)
+                    : requestAllExtractions(documentId);
+        }
+        final ExtractionsContainer cachedExtractions = extractionsCache.get(documentId);
+        if (cachedExtractions != null) {
+            return Task.forResult(cachedExtractions);
+        }
+        final long generation = extractionsCache.getGeneration();
+        final Task<ExtractionsContainer> extractionsTask = offlineDocumentCache != null
+                ? getOfflineExtractions(documentId, offlineDocumentCache)
+                : requestAllExtractions(documentId);
+        return extractionsTask
+                .onSuccess(new Continuation<ExtractionsContainer, ExtractionsContainer>() {
                     @Override
-                    public Task<JSONObject> then(Task<Session> sessionTask) {
-                        final Session session = sessionTask.getResult();
-                        return mApiCommunicator.getExtractions(documentId, session);
+                    public ExtractionsContainer then(final Task<ExtractionsContainer> task) throws Exception {
+                        extractionsCache.put(documentId, task.getResult(), generation);
+                        return task.getResult();
                     }
-                }, Task.BACKGROUND_EXECUTOR)
-                .onSuccess(new Continuation<JSONObject, ExtractionsContainer>() {
-                    @Override
-                    public ExtractionsContainer then(Task<JSONObject> task) throws Exception {
-                        final JSONObject responseData = task.getResult();
-                        final JSONObject candidatesData = responseData.getJSONObject("candidates");
-                        Map<String, List<Extraction>> candidates =
-                                extractionCandidatesFromApiResponse(candidatesData);
+                });
+    }
 
-                        final Map<String, SpecificExtraction> specificExtractions =
-                                parseSpecificExtractions(responseData.getJSONObject("extractions"), candidates);
+    /**
+     * Returns the extractions stored in the offline cache and revalidates them in the background. Requests and stores
+     * them, if they are not stored.
+     */
+    private Task<ExtractionsContainer> getOfflineExtractions(@NonNull final String documentId,
+            @NonNull final OfflineDocumentCache offlineDocumentCache) {
+        return Task.call(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return offlineDocumentCache.getExtractions(documentId);
+            }
+        }, mParsingExecutor).continueWithTask(new Continuation<byte[], Task<ExtractionsContainer>>() {
+            @Override
+            public Task<ExtractionsContainer> then(final Task<byte[]> task) throws Exception {
+                final byte[] response = task.getResult();
+                if (response != null) {
+                    final ExtractionsContainer extractions;
+                    try {
+                        extractions = parseExtractions(response);
+                    } catch (IOException e) {
+                        offlineDocumentCache.removeExtractions(documentId);
+                        return requestAndStoreExtractions(documentId, offlineDocumentCache);
+                    }
+                    revalidate(documentId, revalidateExtractions(documentId, response, offlineDocumentCache),
+                            offlineDocumentCache);
+                    return Task.forResult(extractions);
+                }
+                return requestAndStoreExtractions(documentId, offlineDocumentCache);
+            }
+        }, mParsingExecutor);
+    }
 
-                        final Map<String, CompoundExtraction> compoundExtractions =
-                                parseCompoundExtractions(responseData.optJSONObject("compoundExtractions"), candidates);
+    private Task<ExtractionsContainer> requestAndStoreExtractions(@NonNull final String documentId,
+            @NonNull final OfflineDocumentCache offlineDocumentCache) {
+        final long generation = offlineDocumentCache.getGeneration();
+        return requestExtractionsResponse(documentId, null)
+                .onSuccess(new Continuation<NetworkResponse, ExtractionsContainer>() {
+                    @Override
+                    public ExtractionsContainer then(final Task<NetworkResponse> task) throws Exception {
+                        final NetworkResponse response = task.getResult();
+                        final ExtractionsContainer extractions = parseExtractions(response.data);
+                        // Stored only after it was parsed successfully
+                        offlineDocumentCache.putExtractions(documentId, response.data, getETag(response),
+                                generation);
+                        return extractions;
+                    }
+                }, mParsingExecutor);
+    }
 
-                        final List<ReturnReason> returnReasons = parseReturnReason(responseData.optJSONArray("returnReasons"));
+    /**
+     * Requests the extractions conditionally and stores them, if they changed. Unchanged extractions are neither parsed
+     * nor written again.
+     *
+     * @param storedResponse the stored extractions response
+     */
+    private Task<Void> revalidateExtractions(@NonNull final String documentId, @NonNull final byte[] storedResponse,
+            @NonNull final OfflineDocumentCache offlineDocumentCache) {
+        final long generation = offlineDocumentCache.getGeneration();
+        final String storedETag = offlineDocumentCache.getExtractionsETag(documentId);
+        return requestExtractionsResponse(documentId, storedETag)
+                .onSuccess(new Continuation<NetworkResponse, Void>() {
+                    @Override
+                    public Void then(final Task<NetworkResponse> task) throws Exception {
+                        final NetworkResponse response = task.getResult();
+                        if (response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                            return null;
+                        }
+                        final String eTag = getETag(response);
+                        final boolean modified = !Arrays.equals(storedResponse, response.data);
+                        if (!modified && (eTag == null ? storedETag == null : eTag.equals(storedETag))) {
+                            return null;
+                        }
+                        if (modified) {
+                            // Stored only if it can be parsed
+                            parseExtractions(response.data);
+                        }
+                        offlineDocumentCache.putExtractions(documentId, response.data, eTag, generation);
+                        return null;
+                    }
+                }, mParsingExecutor);
+    }
 
-                        return new ExtractionsContainer(specificExtractions, compoundExtractions, returnReasons);
+    private Task<NetworkResponse> requestExtractionsResponse(@NonNull final String documentId,
+            @Nullable final String eTag) {
+        return mSessionManager.getSession()
+                .onSuccessTask(new Continuation<Session, Task<NetworkResponse>>() {
+                    @Override
+                    public Task<NetworkResponse> then(Task<Session> sessionTask) {
+                        final Session session = sessionTask.getResult();
+                        return mApiCommunicator.getExtractionsResponse(documentId, eTag, session);
                     }
-                }, Task.BACKGROUND_EXECUTOR);
+                }, mParsingExecutor);
+    }
 
+    @Nullable
+    private static String getETag(@NonNull final NetworkResponse response) {
+        return response.headers != null ? response.headers.get(ConditionalRequestCache.ETAG_HEADER) : null;
     }
 
     @NonNull
-    private Map<String, SpecificExtraction> parseSpecificExtractions(@NonNull final JSONObject specificExtractionsJson,
-            @NonNull final Map<String, List<Extraction>> candidates)
-            throws JSONException {
-        final Map<String, SpecificExtraction> specificExtractions = new HashMap<>();
-        @SuppressWarnings("unchecked")
-        // Quote Android Source: "/* Return a raw type for API compatibility */"
-        final Iterator<String> extractionsNameIterator = specificExtractionsJson.keys();
-        while (extractionsNameIterator.hasNext()) {
-            final String extractionName = extractionsNameIterator.next();
-            final JSONObject extractionData = specificExtractionsJson.getJSONObject(extractionName);
-            final Extraction extraction = extractionFromApiResponse(extractionData);
-            List<Extraction> candidatesForExtraction = new ArrayList<Extraction>();
-            if (extractionData.has("candidates")) {
-                final String candidatesName = extractionData.getString("candidates");
-                if (candidates.containsKey(candidatesName)) {
-                    candidatesForExtraction = candidates.get(candidatesName);
-                }
-            }
-            final SpecificExtraction specificExtraction =
-                    new SpecificExtraction(extractionName, extraction.getValue(),
-                            extraction.getEntity(), extraction.getBox(),
-                            candidatesForExtraction);
-            specificExtractions.put(extractionName, specificExtraction);
+    private ExtractionsContainer parseExtractions(@Nullable final byte[] response) throws IOException {
+        if (response == null) {
+            throw new IOException("The extractions response has no body");
         }
-        return specificExtractions;
+        return mApiCommunicator.isLazyExtractionsDecoding()
+                ? ExtractionsParser.parseLazily(response)
+                : ExtractionsParser.parse(new ByteArrayInputStream(response));
     }
 
-    private Map<String, CompoundExtraction> parseCompoundExtractions(@Nullable final JSONObject compoundExtractionsJson,
-            @NonNull final Map<String, List<Extraction>> candidates)
-            throws JSONException {
-        if (compoundExtractionsJson == null) {
-            return Collections.emptyMap();
-        }
-        final HashMap<String, CompoundExtraction> compoundExtractions = new HashMap<>();
-        final Iterator<String> extractionsNameIterator = compoundExtractionsJson.keys();
-        while (extractionsNameIterator.hasNext()) {
-            final String extractionName = extractionsNameIterator.next();
-            final List<Map<String, SpecificExtraction>> specificExtractionMaps = new ArrayList<>();
-            final JSONArray compoundExtractionData = compoundExtractionsJson.getJSONArray(extractionName);
-            for (int i = 0; i < compoundExtractionData.length(); i++) {
-                final JSONObject specificExtractionsData = compoundExtractionData.getJSONObject(i);
-                specificExtractionMaps.add(parseSpecificExtractions(specificExtractionsData, candidates));
+    /**
+     * Removes a document and its extractions from the offline cache, if revalidating them shows that the document
+     * doesn't exist anymore.
+     */
+    private void revalidate(@NonNull final String documentId, @NonNull final Task<?> revalidationTask,
+            @NonNull final OfflineDocumentCache offlineDocumentCache) {
+        revalidationTask.continueWith(new Continuation<Object, Void>() {
+            @Override
+            public Void then(final Task<Object> task) throws Exception {
+                if (task.isFaulted() && task.getError() instanceof VolleyError) {
+                    final NetworkResponse networkResponse = ((VolleyError) task.getError()).networkResponse;
+                    if (networkResponse != null && networkResponse.statusCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                        offlineDocumentCache.remove(documentId);
+                    }
+                }
+                // Other errors (e.g. no network connection) are ignored and the stored responses are kept
+                return null;
             }
-            compoundExtractions.put(extractionName, new CompoundExtraction(extractionName, specificExtractionMaps));
-        }
-        return compoundExtractions;
+        });
     }
 
-    private List<ReturnReason> parseReturnReason(@Nullable final JSONArray returnReasonsJson) throws JSONException {
-        if (returnReasonsJson == null) {
-            return Collections.emptyList();
-        }
-        final List<ReturnReason> returnReasons = new ArrayList<>();
-        for (int i = 0; i < returnReasonsJson.length(); i++) {
-            final JSONObject returnReasonJson = returnReasonsJson.getJSONObject(i);
-
-            Map<String, String> localizedLabels = new HashMap<>();
-
-            final Iterator<String> keys = returnReasonJson.keys();
-            while (keys.hasNext()) {
-                final String key = keys.next();
-                if (key.equals("id")) {
-                    continue;
-                }
-                localizedLabels.put(key, returnReasonJson.getString(key));
-            }
-            returnReasons.add(new ReturnReason(returnReasonJson.getString("id"), localizedLabels));
-        }
-        return returnReasons;
+    private Task<ExtractionsContainer> requestAllExtractions(@NonNull final String documentId) {
+        return mSessionManager.getSession()
+                .onSuccessTask(new Continuation<Session, Task<ExtractionsContainer>>() {
+                    @Override
+                    public Task<ExtractionsContainer> then(Task<Session> sessionTask) {
+                        final Session session = sessionTask.getResult();
+                        // The response is parsed in a single pass without building a JSON object tree
+                        return mApiCommunicator.getExtractionsContainer(documentId, session);
+                    }
+                }, mParsingExecutor);
     }
 
     /**
@@ -700,15 +1687,70 @@ public class DocumentTaskManager {
      */
     public Task<Document> getDocument(@NonNull final String documentId) {
         checkNotNull(documentId);
-        return mSessionManager.getSession()
-                .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+        final OfflineDocumentCache offlineDocumentCache = mOfflineDocumentCache;
+        if (offlineDocumentCache == null) {
+            return requestDocument(documentId);
+        }
+        return Task.call(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return offlineDocumentCache.getDocument(documentId);
+            }
+        }, mParsingExecutor).continueWithTask(new Continuation<byte[], Task<Document>>() {
+            @Override
+            public Task<Document> then(final Task<byte[]> task) throws Exception {
+                final byte[] response = task.getResult();
+                if (response == null) {
+                    return requestDocument(documentId);
+                }
+                final Document document;
+                try {
+                    document = Document.fromApiResponse(new JSONObject(new String(response, CHARSET_UTF8)));
+                } catch (JSONException e) {
+                    offlineDocumentCache.remove(documentId);
+                    return requestDocument(documentId);
+                }
+                revalidate(documentId, requestDocument(documentId), offlineDocumentCache);
+                return Task.forResult(document);
+            }
+        }, mParsingExecutor);
+    }
+
+    /**
+     * Requests the document from the Gini API and stores it in the offline cache, if it is completed.
+     */
+    private Task<Document> requestDocument(@NonNull final String documentId) {
+        checkNotNull(documentId);
+        // Concurrent requests for the same document share one request
+        return mDocumentRequests.execute(documentId, new Callable<Task<Document>>() {
+            @Override
+            public Task<Document> call() throws Exception {
+                final OfflineDocumentCache offlineDocumentCache = mOfflineDocumentCache;
+                final Task<JSONObject> responseTask = mSessionManager.getSession()
+                        .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+                            @Override
+                            public Task<JSONObject> then(Task<Session> sessionTask) throws Exception {
+                                final Session session = sessionTask.getResult();
+                                return mApiCommunicator.getDocument(documentId, session);
+                            }
+                        }, mParsingExecutor);
+                if (offlineDocumentCache == null) {
+                    return responseTask.onSuccess(mCachedDocumentFromResponse, mParsingExecutor);
+                }
+                final long generation = offlineDocumentCache.getGeneration();
+                return responseTask.onSuccess(new Continuation<JSONObject, Document>() {
                     @Override
-                    public Task<JSONObject> then(Task<Session> sessionTask) throws Exception {
-                        final Session session = sessionTask.getResult();
-                        return mApiCommunicator.getDocument(documentId, session);
+                    public Document then(final Task<JSONObject> task) throws Exception {
+                        final Document document = mCachedDocumentFromResponse.then(task);
+                        if (document.getState() == Document.ProcessingState.COMPLETED) {
+                            offlineDocumentCache.putDocument(documentId,
+                                    task.getResult().toString().getBytes(CHARSET_UTF8), generation);
+                        }
+                        return document;
                     }
-                }, Task.BACKGROUND_EXECUTOR)
-                .onSuccess(DOCUMENT_FROM_RESPONSE, Task.BACKGROUND_EXECUTOR);
+                }, mParsingExecutor);
+            }
+        });
     }
 
     /**
@@ -724,21 +1766,35 @@ public class DocumentTaskManager {
      */
     public Task<Document> getDocument(@NonNull final Uri documentUri) {
         checkNotNull(documentUri);
-        return mSessionManager.getSession()
-                .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
-                    @Override
-                    public Task<JSONObject> then(Task<Session> sessionTask) throws Exception {
-                        final Session session = sessionTask.getResult();
-                        return mApiCommunicator.getDocument(documentUri, session);
-                    }
-                }, Task.BACKGROUND_EXECUTOR)
-                .onSuccess(DOCUMENT_FROM_RESPONSE, Task.BACKGROUND_EXECUTOR);
+        // Concurrent requests for the same document share one request, also with getDocument(String). The last
+        // path segment of a document's URI is its id.
+        final String documentId = documentUri.getLastPathSegment();
+        return mDocumentRequests.execute(documentId != null ? documentId : documentUri.toString(),
+                new Callable<Task<Document>>() {
+            @Override
+            public Task<Document> call() throws Exception {
+                return mSessionManager.getSession()
+                        .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+                            @Override
+                            public Task<JSONObject> then(Task<Session> sessionTask) throws Exception {
+                                final Session session = sessionTask.getResult();
+                                return mApiCommunicator.getDocument(documentUri, session);
+                            }
+                        }, mParsingExecutor)
+                        .onSuccess(mCachedDocumentFromResponse, mParsingExecutor);
+            }
+        });
     }
 
     /**
      * Continually checks the document status (via the Gini API) until the document is fully processed. To avoid
-     * flooding the network, there is a pause of at least the number of seconds that is set in the POLLING_INTERVAL
-     * constant of this class.
+     * flooding the network, there is a pause between the requests. Its length is decided by the
+     * {@link PollingStrategy} set with {@link SdkBuilder#setPollingStrategy(PollingStrategy)}. Without a polling
+     * strategy the pause is at least the number of milliseconds that is set in the POLLING_INTERVAL constant of this
+     * class. No thread is blocked during the pause.
+     * <p>
+     * Responses with the status 429 (Too Many Requests) or 503 (Service Unavailable) don't fail the polling. The
+     * document is requested again after the pause, which takes the Retry-After header of the response into account.
      *
      * <b>This method returns a Task which will resolve to a new document instance. It does not update the given
      * document instance.</b>
@@ -749,41 +1805,246 @@ public class DocumentTaskManager {
         if (document.getState() != Document.ProcessingState.PENDING) {
             return Task.forResult(document);
         }
-        mDocumentPollingsInProgress.put(document, false);
-        final String documentId = document.getId();
+        return pollDocument(document.getId(), System.currentTimeMillis(), true);
+    }
+
+    /**
+     * @param startTimeMs the time in milliseconds since the epoch when polling the document was started
+     * @param subscribe   true to count the caller as a subscriber, who has to cancel with
+     *                    {@link #cancelDocumentPolling(Document)} before the shared polling is cancelled
+     */
+    private Task<Document> pollDocument(@NonNull final String documentId, final long startTimeMs,
+            final boolean subscribe) {
+        final DocumentPolling documentPolling;
+        final boolean started;
+        synchronized (mDocumentPollingsInProgress) {
+            final DocumentPolling runningPolling = mDocumentPollingsInProgress.get(documentId);
+            started = runningPolling == null;
+            documentPolling = started ? new DocumentPolling() : runningPolling;
+            if (started) {
+                mDocumentPollingsInProgress.put(documentId, documentPolling);
+            }
+            if (subscribe) {
+                documentPolling.mSubscriberCount++;
+            }
+        }
+        if (!started) {
+            return documentPolling.mCompletionSource.getTask();
+        }
+        final PendingDocumentRegistry pendingDocumentRegistry = mPendingDocumentRegistry;
+        if (pendingDocumentRegistry != null) {
+            pendingDocumentRegistry.add(documentId, startTimeMs);
+        }
+        final long elapsedStartTimeMs =
+                SystemClock.elapsedRealtime() - Math.max(0, System.currentTimeMillis() - startTimeMs);
+        final CancellationToken cancellationToken = documentPolling.mCancellationTokenSource.getToken();
+        final MultiplexedDocumentPoller multiplexedDocumentPoller = mMultiplexedDocumentPoller;
+        final Task<Document> pollingTask = multiplexedDocumentPoller != null
+                ? multiplexedDocumentPoller.poll(documentId, cancellationToken, elapsedStartTimeMs)
+                : pollDocument(documentId, cancellationToken, 1, elapsedStartTimeMs);
+        pollingTask.continueWith(new Continuation<Document, Void>() {
+            @Override
+            public Void then(Task<Document> task) throws Exception {
+                // Removed before completing so that callers notified of the completion start a new polling
+                synchronized (mDocumentPollingsInProgress) {
+                    mDocumentPollingsInProgress.remove(documentId);
+                }
+                if (pendingDocumentRegistry != null) {
+                    pendingDocumentRegistry.remove(documentId);
+                }
+                if (task.isFaulted()) {
+                    documentPolling.mCompletionSource.setError(task.getError());
+                } else if (task.isCancelled()) {
+                    documentPolling.mCompletionSource.setCancelled();
+                } else {
+                    documentPolling.mCompletionSource.setResult(task.getResult());
+                }
+                return null;
+            }
+        });
+        return documentPolling.mCompletionSource.getTask();
+    }
+
+    /**
+     * Resumes polling the documents of the pending document registry, which were pending when the app's process was
+     * killed. The pollings are resumed only once, later calls don't resume anything.
+     *
+     * @param listener notified once each document is not pending anymore
+     * @return A Task which will resolve to the ids of the documents whose polling was resumed
+     */
+    Task<List<String>> resumePendingPollings(@Nullable final DocumentWatchListener listener) {
+        final PendingDocumentRegistry pendingDocumentRegistry = mPendingDocumentRegistry;
+        if (pendingDocumentRegistry == null || !mPendingPollingsResumed.compareAndSet(false, true)) {
+            return Task.forResult(Collections.<String>emptyList());
+        }
+        // The registry is read from the shared preferences off the calling thread
+        return Task.callInBackground(new Callable<List<String>>() {
+            @Override
+            public List<String> call() throws Exception {
+                final Map<String, Long> pendingDocuments = pendingDocumentRegistry.getPendingDocuments();
+                for (final Map.Entry<String, Long> pendingDocument : pendingDocuments.entrySet()) {
+                    resumePolling(pendingDocument.getKey(), pendingDocument.getValue(), listener);
+                }
+                return new ArrayList<>(pendingDocuments.keySet());
+            }
+        });
+    }
+
+    private void resumePolling(@NonNull final String documentId, final long startTimeMs,
+            @Nullable final DocumentWatchListener listener) {
+        // Resumed pollings don't hold the shared polling, so apps can still cancel it
+        pollDocument(documentId, startTimeMs, false).continueWith(new Continuation<Document, Void>() {
+            @Override
+            public Void then(final Task<Document> task) throws Exception {
+                if (listener == null || task.isCancelled()) {
+                    return null;
+                }
+                if (task.isFaulted()) {
+                    listener.onError(documentId, task.getError());
+                } else {
+                    listener.onDocumentProcessed(task.getResult());
+                }
+                return null;
+            }
+        }, mParsingExecutor);
+    }
+
+    private Task<Document> pollDocument(@NonNull final String documentId,
+            @NonNull final CancellationToken cancellationToken, final int attempt, final long startTimeMs) {
         return getDocument(documentId).continueWithTask(new Continuation<Document, Task<Document>>() {
             @Override
             public Task<Document> then(Task<Document> task) throws Exception {
-                if (task.isFaulted() || task.isCancelled()
-                        || task.getResult().getState() != Document.ProcessingState.PENDING) {
-                    mDocumentPollingsInProgress.remove(document);
+                final boolean retryable = task.isFaulted() && isRetryablePollingError(task.getError());
+                if (!retryable && (task.isFaulted() || task.isCancelled()
+                        || task.getResult().getState() != Document.ProcessingState.PENDING)) {
                     return task;
-                } else {
-                    if (mDocumentPollingsInProgress.containsKey(document)
-                            && mDocumentPollingsInProgress.get(document)) {
-                        mDocumentPollingsInProgress.remove(document);
-                        return Task.cancelled();
+                } else if (cancellationToken.isCancellationRequested()) {
+                    return Task.cancelled();
+                }
+                final long delayMs = getPollingDelayMs(documentId, attempt, startTimeMs);
+                if (delayMs < 0) {
+                    return retryable ? task
+                            : Task.<Document>forError(
+                                    new TimeoutException("Polling the document " + documentId + " timed out"));
+                }
+                // The delay is scheduled on a timer, so no thread is blocked until the document is requested again.
+                // Cancelling ends the delay immediately.
+                return Task.delay(delayMs, cancellationToken)
+                        .onSuccessTask(new Continuation<Void, Task<Document>>() {
+                            @Override
+                            public Task<Document> then(Task<Void> delayTask) throws Exception {
+                                return pollDocument(documentId, cancellationToken, attempt + 1, startTimeMs);
+                            }
+                        }, mParsingExecutor);
+            }
+        }, mParsingExecutor);
+    }
+
+    /**
+     * @return true, if the Gini API asked to request the document again later
+     */
+    static boolean isRetryablePollingError(@Nullable final Exception error) {
+        if (!(error instanceof VolleyError)) {
+            return false;
+        }
+        final NetworkResponse networkResponse = ((VolleyError) error).networkResponse;
+        return networkResponse != null && (networkResponse.statusCode == HTTP_TOO_MANY_REQUESTS
+                || networkResponse.statusCode == HttpURLConnection.HTTP_UNAVAILABLE);
+    }
+
+    /**
+     * @return the delay in milliseconds before the document is requested again or a negative value to stop polling
+     */
+    long getPollingDelayMs(@NonNull final String documentId, final int attempt, final long startTimeMs) {
+        return getPollingDelayMs(documentId, attempt, startTimeMs, 0);
+    }
+
+    /**
+     * @param minRetryAfterMs a delay the Gini API asked for in a response which was not only for the document (e.g. the
+     *                        document list)
+     * @return the delay in milliseconds before the document is requested again or a negative value to stop polling
+     */
+    long getPollingDelayMs(@NonNull final String documentId, final int attempt, final long startTimeMs,
+            final long minRetryAfterMs) {
+        final long retryAfterMs = Math.max(minRetryAfterMs, mApiCommunicator.consumeRetryAfterHintMs(documentId));
+        final PollingStrategy pollingStrategy = mPollingStrategy;
+        if (pollingStrategy == null) {
+            return Math.max(POLLING_INTERVAL, retryAfterMs);
+        }
+        return pollingStrategy.getDelayMs(attempt, SystemClock.elapsedRealtime() - startTimeMs, retryAfterMs);
+    }
+
+    /**
+     * Watches the processing of the documents and notifies the listener once each document is not pending anymore.
+     * <p>
+     * All watches share one rate limited poller, which requests the states of all watched documents together. The
+     * number of requests therefore doesn't grow with the number of watched documents or watches.
+     *
+     * @param documentIds The ids of the documents to watch
+     * @param listener    The listener which is notified on a background thread
+     *
+     * @return The watch which has to be cancelled when the documents' states aren't needed anymore.
+     */
+    public DocumentWatch watch(@NonNull final List<String> documentIds, @NonNull final DocumentWatchListener listener) {
+        checkNotNull(documentIds);
+        checkNotNull(listener);
+        final CancellationTokenSource cancellationTokenSource = new CancellationTokenSource();
+        final CancellationToken cancellationToken = cancellationTokenSource.getToken();
+        final MultiplexedDocumentPoller watchPoller = getWatchPoller();
+        for (final String documentId : documentIds) {
+            watchPoller.poll(documentId, cancellationToken).continueWith(new Continuation<Document, Void>() {
+                @Override
+                public Void then(final Task<Document> task) throws Exception {
+                    if (task.isCancelled() || cancellationToken.isCancellationRequested()) {
+                        return null;
+                    }
+                    if (task.isFaulted()) {
+                        listener.onError(documentId, task.getError());
                     } else {
-                        // The continuation is executed in a background thread by Bolts, so it does not block the UI
-                        // when we sleep here. Infinite recursions are also prevented by Bolts (the task will then resolve
-                        // to a failure).
-                        Thread.sleep(POLLING_INTERVAL);
-                        return pollDocument(document);
+                        listener.onDocumentProcessed(task.getResult());
                     }
+                    return null;
                 }
-            }
-        }, Task.BACKGROUND_EXECUTOR);
+            }, mParsingExecutor);
+        }
+        return new DocumentWatch(cancellationTokenSource);
+    }
+
+    private synchronized MultiplexedDocumentPoller getWatchPoller() {
+        if (mWatchPoller == null) {
+            mWatchPoller = new MultiplexedDocumentPoller(this, mApiCommunicator, mSessionManager,
+                    WATCH_MIN_TICK_INTERVAL_MS);
+        }
+        return mWatchPoller;
     }
 
     /**
-     * Cancels document polling.
+     * Cancels document polling. Pollings are shared by document id, so each call of
+     * {@link #pollDocument(Document)} has to be matched by a call of this method. The shared polling is cancelled once
+     * all callers polling the document cancelled it. Until then the polling continues for the other callers.
      *
      * @param document The document which is being polled
      */
     public void cancelDocumentPolling(@NonNull final Document document) {
-        if (mDocumentPollingsInProgress.containsKey(document)) {
-            mDocumentPollingsInProgress.put(document, true);
+        final CancellationTokenSource cancellationTokenSource;
+        synchronized (mDocumentPollingsInProgress) {
+            final DocumentPolling documentPolling = mDocumentPollingsInProgress.get(document.getId());
+            if (documentPolling == null || --documentPolling.mSubscriberCount > 0) {
+                return;
+            }
+            cancellationTokenSource = documentPolling.mCancellationTokenSource;
         }
+        cancellationTokenSource.cancel();
+    }
+
+    /**
+     * A polling which is shared by all callers polling the same document.
+     */
+    private static class DocumentPolling {
+
+        private final CancellationTokenSource mCancellationTokenSource = new CancellationTokenSource();
+        private final Task<Document>.TaskCompletionSource mCompletionSource = Task.create();
+        private int mSubscriberCount;
     }
 
     /**
@@ -805,14 +2066,7 @@ public class DocumentTaskManager {
             @NonNull final Map<String, SpecificExtraction> extractions)
             throws JSONException {
         final String documentId = document.getId();
-        final JSONObject feedbackForExtractions = new JSONObject();
-        for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
-            final Extraction extraction = entry.getValue();
-            final JSONObject extractionData = new JSONObject();
-            extractionData.put("value", extraction.getValue());
-            extractionData.put("entity", extraction.getEntity());
-            feedbackForExtractions.put(entry.getKey(), extractionData);
-        }
+        final JSONObject feedbackForExtractions = createFeedbackJson(extractions);
 
         return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
             @Override
@@ -820,15 +2074,18 @@ public class DocumentTaskManager {
                 final Session session = task.getResult();
                 return mApiCommunicator.sendFeedback(documentId, feedbackForExtractions, session);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccess(new Continuation<JSONObject, Document>() {
+        }, mParsingExecutor).onSuccess(new Continuation<JSONObject, Document>() {
             @Override
             public Document then(Task<JSONObject> task) throws Exception {
                 for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
                     entry.getValue().setIsDirty(false);
                 }
+                // The Gini API returns the feedback as the extractions from now on
+                removeFromExtractionsCache(documentId);
+                removeExtractionsFromOfflineDocumentCache(documentId);
                 return document;
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mParsingExecutor);
     }
 
     public Task<Document> sendFeedbackForExtractions(@NonNull final Document document,
@@ -836,7 +2093,35 @@ public class DocumentTaskManager {
             @NonNull final Map<String, CompoundExtraction> compoundExtractions)
             throws JSONException {
         final String documentId = document.getId();
+        final JSONObject feedbackForExtractions = createFeedbackJson(extractions);
+        final JSONObject feedbackForCompoundExtractions = createCompoundFeedbackJson(compoundExtractions);
 
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+            @Override
+            public Task<JSONObject> then(Task<Session> task) throws Exception {
+                final Session session = task.getResult();
+                return mApiCommunicator.sendFeedback(documentId, feedbackForExtractions, feedbackForCompoundExtractions, session);
+            }
+        }, mParsingExecutor).onSuccess(new Continuation<JSONObject, Document>() {
+            @Override
+            public Document then(Task<JSONObject> task) throws Exception {
+                for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
+                    entry.getValue().setIsDirty(false);
+                }
+                // The Gini API returns the feedback as the extractions from now on
+                removeFromExtractionsCache(documentId);
+                removeExtractionsFromOfflineDocumentCache(documentId);
+                return document;
+            }
+        }, mParsingExecutor);
+    }
+
+    /**
+     * Creates the feedback for specific extractions as expected by the Gini API.
+     */
+    @NonNull
+    static JSONObject createFeedbackJson(@NonNull final Map<String, SpecificExtraction> extractions)
+            throws JSONException {
         final JSONObject feedbackForExtractions = new JSONObject();
         for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
             final Extraction extraction = entry.getValue();
@@ -845,40 +2130,25 @@ public class DocumentTaskManager {
             extractionData.put("entity", extraction.getEntity());
             feedbackForExtractions.put(entry.getKey(), extractionData);
         }
+        return feedbackForExtractions;
+    }
 
+    /**
+     * Creates the feedback for compound extractions as expected by the Gini API.
+     */
+    @NonNull
+    static JSONObject createCompoundFeedbackJson(@NonNull final Map<String, CompoundExtraction> compoundExtractions)
+            throws JSONException {
         final JSONObject feedbackForCompoundExtractions = new JSONObject();
         for (Map.Entry<String, CompoundExtraction> compoundExtractionEntry : compoundExtractions.entrySet()) {
-            final CompoundExtraction compoundExtraction = compoundExtractionEntry.getValue();
             final JSONArray specificExtractionsFeedbackObjects = new JSONArray();
-            for (final Map<String, SpecificExtraction> specificExtractionMap : compoundExtraction.getSpecificExtractionMaps()) {
-                final JSONObject specificExtractionsFeedback = new JSONObject();
-                for (Map.Entry<String, SpecificExtraction> specificExtractionEntry : specificExtractionMap.entrySet()) {
-                    final Extraction extraction = specificExtractionEntry.getValue();
-                    final JSONObject extractionData = new JSONObject();
-                    extractionData.put("value", extraction.getValue());
-                    extractionData.put("entity", extraction.getEntity());
-                    specificExtractionsFeedback.put(specificExtractionEntry.getKey(), extractionData);
-                }
-                specificExtractionsFeedbackObjects.put(specificExtractionsFeedback);
+            for (final Map<String, SpecificExtraction> specificExtractionMap
+                    : compoundExtractionEntry.getValue().getSpecificExtractionMaps()) {
+                specificExtractionsFeedbackObjects.put(createFeedbackJson(specificExtractionMap));
             }
             feedbackForCompoundExtractions.put(compoundExtractionEntry.getKey(), specificExtractionsFeedbackObjects);
         }
-
-        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
-            @Override
-            public Task<JSONObject> then(Task<Session> task) throws Exception {
-                final Session session = task.getResult();
-                return mApiCommunicator.sendFeedback(documentId, feedbackForExtractions, feedbackForCompoundExtractions, session);
-            }
-        }, Task.BACKGROUND_EXECUTOR).onSuccess(new Continuation<JSONObject, Document>() {
-            @Override
-            public Document then(Task<JSONObject> task) throws Exception {
-                for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
-                    entry.getValue().setIsDirty(false);
-                }
-                return document;
-            }
-        }, Task.BACKGROUND_EXECUTOR);
+        return feedbackForCompoundExtractions;
     }
 
     /**
@@ -904,13 +2174,13 @@ public class DocumentTaskManager {
                 final Session session = task.getResult();
                 return mApiCommunicator.errorReportForDocument(documentId, summary, description, session);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccess(new Continuation<JSONObject, String>() {
+        }, mParsingExecutor).onSuccess(new Continuation<JSONObject, String>() {
             @Override
             public String then(Task<JSONObject> task) throws Exception {
                 final JSONObject responseData = task.getResult();
                 return responseData.getString("errorId");
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mParsingExecutor);
     }
 
     /**
@@ -929,7 +2199,109 @@ public class DocumentTaskManager {
                 final Session session = task.getResult();
                 return mApiCommunicator.getLayoutForDocument(documentId, session);
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mParsingExecutor);
+    }
+
+    /**
+     * Gets the parsed layout of a document. The words of each page are indexed, so that the word at a point or the
+     * words inside an extraction's {@link Box} can be found quickly.
+     *
+     * @param document The document for which the layout is requested.
+     *
+     * @return A task which will resolve to the layout.
+     */
+    public Task<Layout> getParsedLayout(@NonNull final Document document) {
+        final String documentId = document.getId();
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Layout>>() {
+            @Override
+            public Task<Layout> then(Task<Session> task) throws Exception {
+                final Session session = task.getResult();
+                return mApiCommunicator.getParsedLayoutForDocument(documentId, session);
+            }
+        }, mParsingExecutor);
+    }
+
+    /**
+     * Polls the document until it is processed and then retrieves its extractions, its layout and the medium sized
+     * preview of its first page in parallel.
+     *
+     * @param document The document which was created (e.g. with {@link #createCompositeDocument(List, DocumentType)})
+     *
+     * @return A Task which will resolve to the processed document and its data.
+     */
+    public Task<AnalysisResult> analyzeDocument(@NonNull final Document document) {
+        return analyzeDocument(document, ApiCommunicator.PreviewSize.MEDIUM, false);
+    }
+
+    /**
+     * Polls the document until it is processed and then retrieves its extractions, its layout, the preview of its
+     * first page and optionally its incubator extractions in parallel.
+     * <p>
+     * The extractions are read from and stored in the {@link ExtractionsCache} and the {@link OfflineDocumentCache},
+     * if they are set. Only failing to retrieve the extractions fails the returned task. The other parts of the result
+     * are null, if they could not be retrieved. The returned task fails with an {@link IllegalStateException} without
+     * retrieving anything, if the document could not be processed (e.g. it is in the {@code ERROR} state).
+     *
+     * @param document                     The document which was created (e.g. with
+     *                                     {@link #createCompositeDocument(List, DocumentType)})
+     * @param previewSize                  The size of the first page's preview
+     * @param includeIncubatorExtractions  Whether the incubator extractions should be retrieved, too
+     *
+     * @return A Task which will resolve to the processed document and its data.
+     */
+    public Task<AnalysisResult> analyzeDocument(@NonNull final Document document,
+            @NonNull final ApiCommunicator.PreviewSize previewSize, final boolean includeIncubatorExtractions) {
+        checkNotNull(previewSize);
+        return pollDocument(document).onSuccessTask(new Continuation<Document, Task<AnalysisResult>>() {
+            @Override
+            public Task<AnalysisResult> then(final Task<Document> pollTask) throws Exception {
+                final Document processedDocument = pollTask.getResult();
+                // Only completed documents have extractions, a layout and previews
+                if (processedDocument.getState() != Document.ProcessingState.COMPLETED) {
+                    return Task.forError(new IllegalStateException("The document " + processedDocument.getId()
+                            + " can't be analyzed, because its state is " + processedDocument.getState()));
+                }
+                return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<AnalysisResult>>() {
+                    @Override
+                    public Task<AnalysisResult> then(final Task<Session> sessionTask) throws Exception {
+                        return fetchAnalysisResult(processedDocument, sessionTask.getResult(), previewSize,
+                                includeIncubatorExtractions);
+                    }
+                }, mParsingExecutor);
+            }
+        }, mParsingExecutor);
+    }
+
+    private Task<AnalysisResult> fetchAnalysisResult(@NonNull final Document document, @NonNull final Session session,
+            @NonNull final ApiCommunicator.PreviewSize previewSize, final boolean includeIncubatorExtractions) {
+        final String documentId = document.getId();
+        // All requests are started right away and run in parallel. The extractions go through the caches like all
+        // other extractions reads, so that showing the document again doesn't request them again.
+        final Task<ExtractionsContainer> extractionsTask = getAllExtractions(document);
+        final Task<JSONObject> layoutTask = mApiCommunicator.getLayoutForDocument(documentId, session);
+        final Task<Bitmap> previewTask = mApiCommunicator.getPreview(documentId, 1, previewSize, session);
+        final Task<JSONObject> incubatorExtractionsTask = includeIncubatorExtractions
+                ? mApiCommunicator.getIncubatorExtractions(documentId, session)
+                : Task.<JSONObject>forResult(null);
+        return Task.whenAll(Arrays.<Task<?>>asList(extractionsTask, layoutTask, previewTask, incubatorExtractionsTask))
+                .continueWithTask(new Continuation<Void, Task<AnalysisResult>>() {
+                    @Override
+                    public Task<AnalysisResult> then(final Task<Void> task) throws Exception {
+                        if (extractionsTask.isFaulted()) {
+                            return Task.forError(extractionsTask.getError());
+                        } else if (extractionsTask.isCancelled()) {
+                            return Task.cancelled();
+                        }
+                        return Task.forResult(new AnalysisResult(document, extractionsTask.getResult(),
+                                resultOrNull(layoutTask), resultOrNull(previewTask),
+                                resultOrNull(incubatorExtractionsTask)));
+                    }
+                });
+    }
+
+    @Nullable
+    private static <T> T resultOrNull(@NonNull final Task<T> task) {
+        return task.isFaulted() || task.isCancelled() ? null : task.getResult();
     }
 
     /**
@@ -993,6 +2365,7 @@ public class DocumentTaskManager {
         private String mDocumentType;
         private DocumentType mDocumentTypeHint;
         private int mCompressionRate;
+        private AdaptiveJpegEncoder mJpegEncoder;
 
         public DocumentUploadBuilder() {
             mCompressionRate = DocumentTaskManager.DEFAULT_COMPRESSION;
@@ -1066,6 +2439,15 @@ public class DocumentTaskManager {
             return this;
         }
 
+        /**
+         * The bitmap (if set) will be converted into a JPEG representation which fits into the byte budget of the
+         * given encoder. If an encoder is set, the compression rate is ignored.
+         */
+        public DocumentUploadBuilder setJpegEncoder(@NonNull final AdaptiveJpegEncoder jpegEncoder) {
+            mJpegEncoder = jpegEncoder;
+            return this;
+        }
+
         /**
          * Use the given DocumentTaskManager instance to upload the document with all the features which were set with
          * this builder.
@@ -1076,7 +2458,13 @@ public class DocumentTaskManager {
          */
         public Task<Document> upload(@NonNull final DocumentTaskManager documentTaskManager) {
             if (mDocumentBitmap != null) {
-                if (mDocumentTypeHint != null) {
+                if (mJpegEncoder != null && mDocumentTypeHint != null) {
+                    return documentTaskManager.createDocument(mDocumentBitmap, mFilename, mDocumentTypeHint,
+                            mJpegEncoder);
+                } else if (mJpegEncoder != null) {
+                    return documentTaskManager.createDocument(mDocumentBitmap, mFilename, mDocumentType,
+                            mJpegEncoder);
+                } else if (mDocumentTypeHint != null) {
                     return documentTaskManager.createDocument(mDocumentBitmap, mFilename, mDocumentTypeHint);
                 } else {
                     return documentTaskManager.createDocument(mDocumentBitmap, mFilename, mDocumentType, mCompressionRate);
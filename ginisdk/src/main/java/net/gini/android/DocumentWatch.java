@@ -0,0 +1,30 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import bolts.CancellationTokenSource;
+
+/**
+ * A watch of documents started with {@link DocumentTaskManager#watch(java.util.List, DocumentWatchListener)}. Cancel it
+ * when the documents' states aren't needed anymore (e.g. when the screen showing them is closed).
+ */
+public class DocumentWatch {
+
+    private final CancellationTokenSource mCancellationTokenSource;
+
+    DocumentWatch(@NonNull final CancellationTokenSource cancellationTokenSource) {
+        mCancellationTokenSource = checkNotNull(cancellationTokenSource);
+    }
+
+    /**
+     * Stops watching the documents. The listener isn't called anymore afterwards.
+     */
+    public void cancel() {
+        mCancellationTokenSource.cancel();
+    }
+
+    public boolean isCancelled() {
+        return mCancellationTokenSource.isCancellationRequested();
+    }
+}
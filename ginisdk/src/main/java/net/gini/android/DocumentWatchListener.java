@@ -0,0 +1,30 @@
+package net.gini.android;
+
+import net.gini.android.models.Document;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives the processing results of documents watched with
+ * {@link DocumentTaskManager#watch(java.util.List, DocumentWatchListener)}.
+ * <p>
+ * The listener is called on a background thread.
+ */
+public interface DocumentWatchListener {
+
+    /**
+     * Called once the document is not pending anymore, either because it was processed or because processing failed.
+     * Documents which were already processed when the watch was started are reported after the first request.
+     *
+     * @param document the document with its final processing state
+     */
+    void onDocumentProcessed(@NonNull Document document);
+
+    /**
+     * Called if the state of the document could not be retrieved. The document is not watched anymore.
+     *
+     * @param documentId the id of the watched document
+     * @param error      the reason of the failure
+     */
+    void onError(@NonNull String documentId, @NonNull Exception error);
+}
@@ -0,0 +1,82 @@
+package net.gini.android;
+
+import android.graphics.Bitmap;
+
+import com.android.volley.toolbox.ByteArrayPool;
+import com.android.volley.toolbox.PoolingByteArrayOutputStream;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Pool of reusable buffers into which bitmaps are encoded before they are uploaded.
+ * <p>
+ * Buffers are presized to the estimated size of the encoded bitmap to avoid growing them while encoding. The encoded
+ * bytes can be uploaded directly from the buffer without copying them.
+ */
+class EncodeBufferPool {
+
+    /**
+     * The maximum number of bytes which are kept in the pool for reuse.
+     */
+    static final int DEFAULT_SIZE_LIMIT = 8 * 1024 * 1024;
+
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteArrayPool mByteArrayPool;
+
+    EncodeBufferPool(final int sizeLimit) {
+        mByteArrayPool = new ByteArrayPool(sizeLimit);
+    }
+
+    /**
+     * Returns a buffer which is large enough for most JPEGs of the bitmap with the given quality. The buffer has to
+     * be closed to return it to the pool.
+     */
+    @NonNull
+    EncodeBuffer obtainForJpeg(@NonNull final Bitmap bitmap, final int quality) {
+        return new EncodeBuffer(mByteArrayPool, estimateJpegSize(bitmap, quality));
+    }
+
+    /**
+     * Estimates the JPEG size of a photo of a document. Lower qualities need less bytes per pixel.
+     */
+    static int estimateJpegSize(@NonNull final Bitmap bitmap, final int quality) {
+        final long pixels = (long) bitmap.getWidth() * bitmap.getHeight();
+        final double bytesPerPixel = 0.05 + 0.35 * Math.max(0, Math.min(100, quality)) / 100.0;
+        final long estimate = Math.min((long) (pixels * bytesPerPixel), bitmap.getByteCount());
+        return (int) Math.max(MIN_BUFFER_SIZE, estimate);
+    }
+
+    /**
+     * Output stream whose pooled buffer can be read without copying it.
+     */
+    static class EncodeBuffer extends PoolingByteArrayOutputStream {
+
+        EncodeBuffer(final ByteArrayPool pool, final int size) {
+            super(pool, size);
+        }
+
+        /**
+         * Returns the buffer to the pool.
+         */
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } catch (IOException ignore) {
+                // Closing a byte array output stream doesn't throw
+            }
+        }
+
+        /**
+         * @return a document source for the bytes written so far. The buffer must not be written to or closed
+         * while the document source is in use.
+         */
+        @NonNull
+        DocumentSource toDocumentSource() {
+            return DocumentSource.fromByteArray(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import android.util.LruCache;
+
+import net.gini.android.models.ExtractionsContainer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Keeps the extractions of recently viewed documents in memory to avoid requesting them again, for example when
+ * navigating back and forth between a list of documents and the review of a document.
+ * <p>
+ * Only the extractions of completed documents are cached, keyed by the document id. The cache is used by
+ * {@link DocumentTaskManager#getAllExtractions(net.gini.android.models.Document)} and
+ * {@link DocumentTaskManager#analyzeDocument(net.gini.android.models.Document)}, but not by the deprecated
+ * {@link DocumentTaskManager#getExtractions(net.gini.android.models.Document)}. The cache holds at most the
+ * maximum number of entries and evicts the least recently used ones. An entry is removed when feedback is sent for the
+ * document or when the document is deleted with the {@link DocumentTaskManager}.
+ * <p>
+ * The cached {@link ExtractionsContainer} instances are returned as they are, so changes made to the extractions
+ * (e.g. corrected values) are visible to the next caller.
+ * <p>
+ * Set it with {@link SdkBuilder#setExtractionsCache(ExtractionsCache)} to enable caching of extractions.
+ */
+public class ExtractionsCache {
+
+    /**
+     * The default maximum number of cached extractions.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 20;
+
+    private final LruCache<String, ExtractionsContainer> mEntries;
+    /**
+     * Incremented on each removal, so that extractions requested before a removal are not cached afterwards.
+     */
+    private long mGeneration;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_ENTRIES}.
+     */
+    public ExtractionsCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached extractions
+     */
+    public ExtractionsCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries can't be less than 1");
+        }
+        mEntries = new LruCache<>(maxEntries);
+    }
+
+    public int getMaxEntries() {
+        return mEntries.maxSize();
+    }
+
+    /**
+     * @return the number of cached extractions
+     */
+    public int getSize() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return the number of times cached extractions were returned
+     */
+    public int getHitCount() {
+        return mEntries.hitCount();
+    }
+
+    /**
+     * @return the number of times extractions had to be requested, because they were not cached
+     */
+    public int getMissCount() {
+        return mEntries.missCount();
+    }
+
+    /**
+     * @return the number of extractions which were evicted because the cache was full or cleared
+     */
+    public int getEvictionCount() {
+        return mEntries.evictionCount();
+    }
+
+    /**
+     * @return the cached extractions of the document or null, if there are none
+     */
+    @Nullable
+    ExtractionsContainer get(@NonNull final String documentId) {
+        return mEntries.get(checkNotNull(documentId));
+    }
+
+    /**
+     * Returns a value to pass to {@link #put(String, ExtractionsContainer, long)} once the extractions were received.
+     * Must be called before the extractions are requested.
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Caches the extractions of the document, unless an entry was removed since the extractions were requested.
+     *
+     * @param generation the value of {@link #getGeneration()} before the extractions were requested
+     */
+    synchronized void put(@NonNull final String documentId, @NonNull final ExtractionsContainer extractions,
+            final long generation) {
+        if (generation == mGeneration) {
+            mEntries.put(checkNotNull(documentId), checkNotNull(extractions));
+        }
+    }
+
+    /**
+     * Removes the extractions of the document, if they are cached.
+     */
+    synchronized void remove(@NonNull final String documentId) {
+        mGeneration++;
+        mEntries.remove(checkNotNull(documentId));
+    }
+
+    /**
+     * Removes all cached extractions. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        mGeneration++;
+        mEntries.evictAll();
+    }
+}
@@ -0,0 +1,175 @@
+package net.gini.android;
+
+import android.os.SystemClock;
+
+import com.android.volley.Request;
+import com.android.volley.toolbox.HurlStack;
+
+import net.gini.android.requests.BearerStreamingUploadRequest;
+import net.gini.android.requests.BearerUploadRequest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link HurlStack} which writes upload bodies directly into the connection.
+ * <p>
+ * By default {@link HttpURLConnection} buffers the whole request body before sending it. For uploads the body length
+ * is known in advance, so fixed length streaming mode is used instead. The body of a
+ * {@link BearerStreamingUploadRequest} is read from its {@link DocumentSource} while it is being sent.
+ * <p>
+ * Upload bodies are written in chunks to report the progress to the request's {@link UploadListener} and to abort
+ * the upload as soon as the request was cancelled.
+ */
+class GiniHurlStack extends HurlStack {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    GiniHurlStack() {
+        super();
+    }
+
+    GiniHurlStack(final UrlRewriter urlRewriter, final SSLSocketFactory sslSocketFactory) {
+        super(urlRewriter, sslSocketFactory);
+    }
+
+    @Override
+    protected OutputStream createOutputStream(final Request<?> request, final HttpURLConnection connection,
+            final int length) throws IOException {
+        if (request instanceof BearerStreamingUploadRequest) {
+            final BearerStreamingUploadRequest uploadRequest = (BearerStreamingUploadRequest) request;
+            final DocumentSource documentSource = uploadRequest.getDocumentSource();
+            connection.setFixedLengthStreamingMode(documentSource.getLength());
+            return new DocumentSourceOutputStream(
+                    new ProgressOutputStream(super.createOutputStream(request, connection, length), uploadRequest,
+                            documentSource.getLength()),
+                    documentSource);
+        }
+        if (request instanceof BearerUploadRequest) {
+            connection.setFixedLengthStreamingMode(length);
+            return new ProgressOutputStream(super.createOutputStream(request, connection, length),
+                    (BearerUploadRequest) request, length);
+        }
+        return super.createOutputStream(request, connection, length);
+    }
+
+    /**
+     * Writes the body in chunks to report the upload progress. Aborts the upload with an {@link IOException} once the
+     * request was cancelled.
+     */
+    private static class ProgressOutputStream extends FilterOutputStream {
+
+        private static final long REPORT_INTERVAL_MS = 100;
+
+        private final BearerUploadRequest mRequest;
+        private final long mTotalBytes;
+        private long mBytesSent;
+        private long mLastReportTime;
+        private long mLastReportBytesSent;
+
+        ProgressOutputStream(final OutputStream out, final BearerUploadRequest request, final long totalBytes) {
+            super(out);
+            mRequest = request;
+            mTotalBytes = totalBytes;
+            mLastReportTime = SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            final int end = off + len;
+            while (offset < end) {
+                checkNotCancelled();
+                final int chunkLength = Math.min(BUFFER_SIZE, end - offset);
+                out.write(b, offset, chunkLength);
+                offset += chunkLength;
+                onBytesSent(chunkLength);
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            checkNotCancelled();
+            out.write(b);
+            onBytesSent(1);
+        }
+
+        private void checkNotCancelled() throws IOException {
+            if (mRequest.isCanceled()) {
+                throw new IOException("The upload was cancelled");
+            }
+        }
+
+        private void onBytesSent(final int byteCount) {
+            mBytesSent += byteCount;
+            final UploadListener uploadListener = mRequest.getUploadListener();
+            if (uploadListener == null) {
+                return;
+            }
+            final long now = SystemClock.elapsedRealtime();
+            final long elapsedMs = now - mLastReportTime;
+            if (elapsedMs < REPORT_INTERVAL_MS && mBytesSent < mTotalBytes) {
+                return;
+            }
+            final double bytesPerSecond = (mBytesSent - mLastReportBytesSent) * 1000.0 / Math.max(1, elapsedMs);
+            mLastReportTime = now;
+            mLastReportBytesSent = mBytesSent;
+            uploadListener.onProgress(mBytesSent, mTotalBytes, bytesPerSecond);
+        }
+    }
+
+    /**
+     * HurlStack writes the (empty) placeholder body and then closes the stream. The document is copied into the
+     * connection right before closing.
+     */
+    private static class DocumentSourceOutputStream extends FilterOutputStream {
+
+        private final DocumentSource mDocumentSource;
+        private boolean mDocumentWritten;
+
+        DocumentSourceOutputStream(final OutputStream out, final DocumentSource documentSource) {
+            super(out);
+            mDocumentSource = documentSource;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            // Ignore the placeholder body
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            // Ignore the placeholder body
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!mDocumentWritten) {
+                    mDocumentWritten = true;
+                    writeDocument();
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeDocument() throws IOException {
+            final InputStream inputStream = mDocumentSource.openStream();
+            try {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+}
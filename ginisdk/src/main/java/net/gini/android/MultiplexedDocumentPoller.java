@@ -0,0 +1,351 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import android.os.SystemClock;
+
+import net.gini.android.authorization.Session;
+import net.gini.android.authorization.SessionManager;
+import net.gini.android.models.Document;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import androidx.annotation.NonNull;
+import bolts.CancellationToken;
+import bolts.CancellationTokenRegistration;
+import bolts.CancellationTokenSource;
+import bolts.Continuation;
+import bolts.Task;
+
+/**
+ * Polls all pending documents together with a shared timer.
+ * <p>
+ * On each tick the documents which are due are looked up in a single document list request. Documents which are not
+ * in the list (e.g. because many newer documents exist) are requested individually. A single due document is always
+ * requested individually. If the document list request fails, the due documents are requested individually, too. Each
+ * document's task is resolved as soon as the document is not pending anymore.
+ * <p>
+ * After a 429 (Too Many Requests) or 503 (Service Unavailable) response the documents are requested again after the
+ * delay of the polling strategy, which gets the Retry-After hint of the response. If the document list request gets
+ * such a response, the documents are not requested individually on that tick.
+ * <p>
+ * A document which is added while a later tick is scheduled moves the tick forward to its own due time.
+ * <p>
+ * Ticks can be rate limited with a minimum interval between them to bound the number of requests regardless of how
+ * many documents are polled.
+ */
+class MultiplexedDocumentPoller {
+
+    /**
+     * The maximum number of documents requested with the document list on each tick.
+     */
+    static final int DOCUMENT_LIST_LIMIT = 100;
+
+    /**
+     * The delay in milliseconds before newly added documents are requested. Documents which start being polled at
+     * about the same time (e.g. the documents of a batch) are requested together.
+     */
+    static final long COALESCING_DELAY_MS = 50;
+
+    private final DocumentTaskManager mDocumentTaskManager;
+    private final ApiCommunicator mApiCommunicator;
+    private final SessionManager mSessionManager;
+    private final long mMinTickIntervalMs;
+    private final List<PendingDocument> mPendingDocuments = new ArrayList<>();
+    /**
+     * The time of the next scheduled tick or {@link Long#MAX_VALUE}, if none is scheduled.
+     */
+    private long mScheduledTickTimeMs = Long.MAX_VALUE;
+    /**
+     * Incremented whenever a tick is scheduled, so that a tick which was replaced by an earlier one does nothing.
+     */
+    private long mTickGeneration;
+    private CancellationTokenSource mTickTimerCancellation;
+    private boolean mTickInProgress;
+    private long mLastTickTimeMs = Long.MIN_VALUE / 2;
+
+    MultiplexedDocumentPoller(@NonNull final DocumentTaskManager documentTaskManager,
+            @NonNull final ApiCommunicator apiCommunicator, @NonNull final SessionManager sessionManager) {
+        this(documentTaskManager, apiCommunicator, sessionManager, 0);
+    }
+
+    /**
+     * @param minTickIntervalMs the minimum time in milliseconds between two ticks
+     */
+    MultiplexedDocumentPoller(@NonNull final DocumentTaskManager documentTaskManager,
+            @NonNull final ApiCommunicator apiCommunicator, @NonNull final SessionManager sessionManager,
+            final long minTickIntervalMs) {
+        if (minTickIntervalMs < 0) {
+            throw new IllegalArgumentException("minTickIntervalMs can't be less than 0");
+        }
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+        mApiCommunicator = checkNotNull(apiCommunicator);
+        mSessionManager = checkNotNull(sessionManager);
+        mMinTickIntervalMs = minTickIntervalMs;
+    }
+
+    /**
+     * Polls the document until it is not pending anymore.
+     *
+     * @return A Task which will resolve to the processed document
+     */
+    Task<Document> poll(@NonNull final String documentId, @NonNull final CancellationToken cancellationToken) {
+        return poll(documentId, cancellationToken, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Polls the document until it is not pending anymore.
+     *
+     * @param startTimeMs the {@link SystemClock#elapsedRealtime()} when polling the document was started
+     * @return A Task which will resolve to the processed document
+     */
+    Task<Document> poll(@NonNull final String documentId, @NonNull final CancellationToken cancellationToken,
+            final long startTimeMs) {
+        final PendingDocument pendingDocument = new PendingDocument(checkNotNull(documentId), startTimeMs);
+        synchronized (this) {
+            mPendingDocuments.add(pendingDocument);
+        }
+        final CancellationTokenRegistration registration = cancellationToken.register(new Runnable() {
+            @Override
+            public void run() {
+                finish(pendingDocument);
+                pendingDocument.mCompletionSource.trySetCancelled();
+            }
+        });
+        final boolean finished;
+        synchronized (this) {
+            finished = !mPendingDocuments.contains(pendingDocument);
+            if (!finished) {
+                pendingDocument.mCancellationRegistration = registration;
+            }
+        }
+        if (finished) {
+            registration.close();
+        }
+        scheduleTick();
+        return pendingDocument.mCompletionSource.getTask();
+    }
+
+    /**
+     * Schedules the next tick for the earliest due document. If a later tick is scheduled already, it is replaced.
+     */
+    private void scheduleTick() {
+        final long delayMs;
+        final long generation;
+        final CancellationTokenSource timerCancellation = new CancellationTokenSource();
+        final CancellationTokenSource replacedTimerCancellation;
+        synchronized (this) {
+            if (mTickInProgress || mPendingDocuments.isEmpty()) {
+                return;
+            }
+            long nextPollTimeMs = Long.MAX_VALUE;
+            for (final PendingDocument pendingDocument : mPendingDocuments) {
+                nextPollTimeMs = Math.min(nextPollTimeMs, pendingDocument.mNextPollTimeMs);
+            }
+            nextPollTimeMs = Math.max(nextPollTimeMs, mLastTickTimeMs + mMinTickIntervalMs);
+            if (nextPollTimeMs >= mScheduledTickTimeMs) {
+                return;
+            }
+            mScheduledTickTimeMs = nextPollTimeMs;
+            generation = ++mTickGeneration;
+            replacedTimerCancellation = mTickTimerCancellation;
+            mTickTimerCancellation = timerCancellation;
+            delayMs = Math.max(0, nextPollTimeMs - SystemClock.elapsedRealtime());
+        }
+        if (replacedTimerCancellation != null) {
+            replacedTimerCancellation.cancel();
+        }
+        // The delay is scheduled on a timer, so no thread is blocked until the next tick
+        Task.delay(delayMs, timerCancellation.getToken()).continueWith(new Continuation<Void, Void>() {
+            @Override
+            public Void then(final Task<Void> task) throws Exception {
+                tick(generation);
+                return null;
+            }
+        }, mDocumentTaskManager.getParsingExecutor());
+    }
+
+    private void tick(final long generation) {
+        final List<PendingDocument> dueDocuments = new ArrayList<>();
+        synchronized (this) {
+            if (generation != mTickGeneration || mTickInProgress) {
+                // Replaced by an earlier tick
+                return;
+            }
+            mScheduledTickTimeMs = Long.MAX_VALUE;
+            mTickTimerCancellation = null;
+            final long nowMs = SystemClock.elapsedRealtime();
+            for (final PendingDocument pendingDocument : mPendingDocuments) {
+                if (pendingDocument.mNextPollTimeMs <= nowMs) {
+                    dueDocuments.add(pendingDocument);
+                }
+            }
+            if (!dueDocuments.isEmpty()) {
+                mTickInProgress = true;
+                mLastTickTimeMs = nowMs;
+            }
+        }
+        if (dueDocuments.isEmpty()) {
+            scheduleTick();
+            return;
+        }
+        fetchDocuments(dueDocuments).continueWith(new Continuation<Map<String, Task<Document>>, Void>() {
+            @Override
+            public Void then(final Task<Map<String, Task<Document>>> task) throws Exception {
+                // Only the document list request fails the whole tick
+                final long listRetryAfterMs = task.isFaulted()
+                        ? mApiCommunicator.consumeDocumentListRetryAfterHintMs() : 0;
+                for (final PendingDocument pendingDocument : dueDocuments) {
+                    final Task<Document> documentTask = task.isFaulted()
+                            ? Task.<Document>forError(task.getError())
+                            : task.getResult().get(pendingDocument.mDocumentId);
+                    onDocumentFetched(pendingDocument, documentTask, listRetryAfterMs);
+                }
+                synchronized (MultiplexedDocumentPoller.this) {
+                    mTickInProgress = false;
+                }
+                scheduleTick();
+                return null;
+            }
+        }, mDocumentTaskManager.getParsingExecutor());
+    }
+
+    /**
+     * @param listRetryAfterMs the Retry-After hint of the failed document list request or 0
+     */
+    private void onDocumentFetched(@NonNull final PendingDocument pendingDocument,
+            @NonNull final Task<Document> documentTask, final long listRetryAfterMs) {
+        final String documentId = pendingDocument.mDocumentId;
+        final boolean retryable = documentTask.isFaulted()
+                && DocumentTaskManager.isRetryablePollingError(documentTask.getError());
+        if (documentTask.isFaulted() && !retryable) {
+            finish(pendingDocument);
+            pendingDocument.mCompletionSource.trySetError(documentTask.getError());
+            return;
+        } else if (documentTask.isCancelled()) {
+            finish(pendingDocument);
+            pendingDocument.mCompletionSource.trySetCancelled();
+            return;
+        } else if (!retryable && documentTask.getResult().getState() != Document.ProcessingState.PENDING) {
+            finish(pendingDocument);
+            pendingDocument.mCompletionSource.trySetResult(documentTask.getResult());
+            return;
+        }
+        final long delayMs = mDocumentTaskManager.getPollingDelayMs(documentId, pendingDocument.mAttempt,
+                pendingDocument.mStartTimeMs, listRetryAfterMs);
+        if (delayMs < 0) {
+            finish(pendingDocument);
+            pendingDocument.mCompletionSource.trySetError(retryable ? documentTask.getError()
+                    : new TimeoutException("Polling the document " + documentId + " timed out"));
+            return;
+        }
+        synchronized (this) {
+            pendingDocument.mAttempt++;
+            pendingDocument.mNextPollTimeMs = SystemClock.elapsedRealtime() + delayMs;
+        }
+    }
+
+    private void finish(@NonNull final PendingDocument pendingDocument) {
+        final CancellationTokenRegistration registration;
+        synchronized (this) {
+            mPendingDocuments.remove(pendingDocument);
+            registration = pendingDocument.mCancellationRegistration;
+            pendingDocument.mCancellationRegistration = null;
+        }
+        // Closed outside of the lock, because the registration's lock is held while it runs its action
+        if (registration != null) {
+            registration.close();
+        }
+    }
+
+    /**
+     * @return A Task which will resolve to a map of the document ids to the tasks of the fetched documents
+     */
+    private Task<Map<String, Task<Document>>> fetchDocuments(@NonNull final List<PendingDocument> pendingDocuments) {
+        if (pendingDocuments.size() == 1) {
+            return fetchDocumentsIndividually(pendingDocuments, new HashMap<String, Task<Document>>());
+        }
+        final Task<Map<String, Task<Document>>> listTask = mSessionManager.getSession()
+                .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+                    @Override
+                    public Task<JSONObject> then(final Task<Session> task) throws Exception {
+                        return mApiCommunicator.getDocumentList(0, DOCUMENT_LIST_LIMIT, task.getResult());
+                    }
+                }, mDocumentTaskManager.getParsingExecutor())
+                .onSuccessTask(new Continuation<JSONObject, Task<Map<String, Task<Document>>>>() {
+                    @Override
+                    public Task<Map<String, Task<Document>>> then(final Task<JSONObject> task) throws Exception {
+                        final Map<String, Task<Document>> documents = new HashMap<>();
+                        final JSONArray documentsJson = task.getResult().getJSONArray("documents");
+                        for (int i = 0; i < documentsJson.length(); i++) {
+                            final Document document = Document.fromApiResponse(documentsJson.getJSONObject(i));
+                            documents.put(document.getId(), Task.forResult(document));
+                        }
+                        final List<PendingDocument> missingDocuments = new ArrayList<>();
+                        for (final PendingDocument pendingDocument : pendingDocuments) {
+                            if (!documents.containsKey(pendingDocument.mDocumentId)) {
+                                missingDocuments.add(pendingDocument);
+                            }
+                        }
+                        return fetchDocumentsIndividually(missingDocuments, documents);
+                    }
+                }, mDocumentTaskManager.getParsingExecutor());
+        return listTask.continueWithTask(
+                new Continuation<Map<String, Task<Document>>, Task<Map<String, Task<Document>>>>() {
+                    @Override
+                    public Task<Map<String, Task<Document>>> then(final Task<Map<String, Task<Document>>> task)
+                            throws Exception {
+                        if (task.isFaulted() && !DocumentTaskManager.isRetryablePollingError(task.getError())) {
+                            // A failed document list doesn't fail the documents, they are requested individually.
+                            // After a 429 or 503 response the documents are retried later instead.
+                            return fetchDocumentsIndividually(pendingDocuments,
+                                    new HashMap<String, Task<Document>>());
+                        }
+                        return task;
+                    }
+                }, mDocumentTaskManager.getParsingExecutor());
+    }
+
+    private Task<Map<String, Task<Document>>> fetchDocumentsIndividually(
+            @NonNull final List<PendingDocument> pendingDocuments,
+            @NonNull final Map<String, Task<Document>> documents) {
+        final List<Task<Document>> documentTasks = new ArrayList<>();
+        for (final PendingDocument pendingDocument : pendingDocuments) {
+            if (documents.containsKey(pendingDocument.mDocumentId)) {
+                // The same document is polled more than once
+                continue;
+            }
+            final Task<Document> documentTask = mDocumentTaskManager.getDocument(pendingDocument.mDocumentId);
+            documents.put(pendingDocument.mDocumentId, documentTask);
+            documentTasks.add(documentTask);
+        }
+        return Task.whenAll(documentTasks).continueWith(new Continuation<Void, Map<String, Task<Document>>>() {
+            @Override
+            public Map<String, Task<Document>> then(final Task<Void> task) throws Exception {
+                return documents;
+            }
+        });
+    }
+
+    private static class PendingDocument {
+
+        private final String mDocumentId;
+        private final Task<Document>.TaskCompletionSource mCompletionSource = Task.create();
+        private final long mStartTimeMs;
+        private CancellationTokenRegistration mCancellationRegistration;
+        private int mAttempt = 1;
+        private long mNextPollTimeMs = SystemClock.elapsedRealtime() + COALESCING_DELAY_MS;
+
+        PendingDocument(@NonNull final String documentId, final long startTimeMs) {
+            mDocumentId = documentId;
+            mStartTimeMs = startTimeMs;
+        }
+    }
+}
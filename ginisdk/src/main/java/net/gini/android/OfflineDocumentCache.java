@@ -0,0 +1,346 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Stores completed documents and their extractions on disk, so that they can be read without a network connection.
+ * <p>
+ * The responses of the Gini API are stored as they are, one file for each document and one for its extractions, in
+ * the given directory. The total size of the files is limited to the maximum size. When the limit is exceeded the
+ * least recently read or written files are deleted. A document's extractions are removed when feedback is sent for it
+ * and both files are removed when the document is deleted with the {@link DocumentTaskManager}.
+ * <p>
+ * Reads are served from the cache first and the cached responses are revalidated with the Gini API in the background.
+ * The ETag of the extractions is stored with them, so that unchanged extractions are revalidated with a
+ * {@code 304 Not Modified} response.
+ * <p>
+ * Stored responses are returned without a session, so they are not tied to the user who requested them. Call
+ * {@link #clear()} when the user logs out or another user logs in, otherwise the next user can read the previous
+ * user's documents.
+ * <p>
+ * Set it with {@link SdkBuilder#setOfflineDocumentCache(OfflineDocumentCache)} to enable the cache.
+ */
+public class OfflineDocumentCache {
+
+    /**
+     * The default maximum size of the cache in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 10 * 1024 * 1024;
+
+    private static final String DOCUMENT_SUFFIX = ".document";
+    private static final String EXTRACTIONS_SUFFIX = ".extractions";
+    private static final String EXTRACTIONS_ETAG_SUFFIX = ".extractions-etag";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // Document ids are UUIDs. Other ids are not cached to keep them from being used as paths.
+    private static final Pattern DOCUMENT_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final File mDirectory;
+    private final long mMaxSizeBytes;
+    /**
+     * The sizes of the cached files by file name, from the least to the most recently used one. Read from the
+     * directory when the cache is used for the first time.
+     */
+    private LinkedHashMap<String, Long> mFileSizes;
+    private long mSizeBytes;
+    /**
+     * Incremented on each removal, so that responses requested before a removal are not stored afterwards.
+     */
+    private long mGeneration;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_SIZE_BYTES}.
+     *
+     * @param directory the directory in which the cache is stored (e.g. a subdirectory of
+     *                  {@link android.content.Context#getCacheDir()}). Should not be used for anything else
+     */
+    public OfflineDocumentCache(@NonNull final File directory) {
+        this(directory, DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    /**
+     * @param directory    the directory in which the cache is stored (e.g. a subdirectory of
+     *                     {@link android.content.Context#getCacheDir()}). Should not be used for anything else
+     * @param maxSizeBytes the maximum size of the cache in bytes
+     */
+    public OfflineDocumentCache(@NonNull final File directory, final long maxSizeBytes) {
+        if (maxSizeBytes < 1) {
+            throw new IllegalArgumentException("maxSizeBytes can't be less than 1");
+        }
+        mDirectory = checkNotNull(directory);
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    public long getMaxSizeBytes() {
+        return mMaxSizeBytes;
+    }
+
+    /**
+     * Reads the directory, if the cache wasn't used yet. Should not be called on the main thread.
+     *
+     * @return the total size of the cached files in bytes
+     */
+    public synchronized long getSizeBytes() {
+        ensureInitialized();
+        return mSizeBytes;
+    }
+
+    /**
+     * @return the cached document response or null, if there is none
+     */
+    @Nullable
+    byte[] getDocument(@NonNull final String documentId) {
+        return read(documentId, DOCUMENT_SUFFIX);
+    }
+
+    /**
+     * @return the cached extractions response or null, if there is none
+     */
+    @Nullable
+    byte[] getExtractions(@NonNull final String documentId) {
+        return read(documentId, EXTRACTIONS_SUFFIX);
+    }
+
+    /**
+     * @return the ETag of the cached extractions response or null, if there is none
+     */
+    @Nullable
+    String getExtractionsETag(@NonNull final String documentId) {
+        final byte[] eTag = read(documentId, EXTRACTIONS_ETAG_SUFFIX);
+        return eTag != null ? new String(eTag, Utils.CHARSET_UTF8) : null;
+    }
+
+    /**
+     * Returns a value to pass to the put methods once a response was received. Must be called before the response is
+     * requested.
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores the document response, unless a response was removed since it was requested.
+     *
+     * @param generation the value of {@link #getGeneration()} before the response was requested
+     */
+    void putDocument(@NonNull final String documentId, @NonNull final byte[] response, final long generation) {
+        write(documentId, DOCUMENT_SUFFIX, response, generation);
+    }
+
+    /**
+     * Stores the extractions response, unless a response was removed since it was requested.
+     *
+     * @param eTag       the ETag of the response or null, if it had none
+     * @param generation the value of {@link #getGeneration()} before the response was requested
+     */
+    synchronized void putExtractions(@NonNull final String documentId, @NonNull final byte[] response,
+            @Nullable final String eTag, final long generation) {
+        if (generation != mGeneration || !isCacheable(checkNotNull(documentId))) {
+            return;
+        }
+        write(documentId, EXTRACTIONS_SUFFIX, response, generation);
+        if (eTag != null) {
+            write(documentId, EXTRACTIONS_ETAG_SUFFIX, eTag.getBytes(Utils.CHARSET_UTF8), generation);
+        } else {
+            // The ETag of a previous response doesn't match the new one
+            ensureInitialized();
+            delete(documentId + EXTRACTIONS_ETAG_SUFFIX);
+        }
+    }
+
+    /**
+     * Removes the cached extractions of the document.
+     */
+    synchronized void removeExtractions(@NonNull final String documentId) {
+        mGeneration++;
+        if (isCacheable(documentId)) {
+            ensureInitialized();
+            delete(documentId + EXTRACTIONS_SUFFIX);
+            delete(documentId + EXTRACTIONS_ETAG_SUFFIX);
+        }
+    }
+
+    /**
+     * Removes the cached document and its extractions.
+     */
+    synchronized void remove(@NonNull final String documentId) {
+        mGeneration++;
+        if (isCacheable(documentId)) {
+            ensureInitialized();
+            delete(documentId + DOCUMENT_SUFFIX);
+            delete(documentId + EXTRACTIONS_SUFFIX);
+            delete(documentId + EXTRACTIONS_ETAG_SUFFIX);
+        }
+    }
+
+    /**
+     * Removes all cached documents and extractions, e.g. when the user logs out. Should not be called on the main
+     * thread.
+     */
+    public synchronized void clear() {
+        mGeneration++;
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        mFileSizes = new LinkedHashMap<>(16, 0.75f, true);
+        mSizeBytes = 0;
+    }
+
+    @Nullable
+    private synchronized byte[] read(@NonNull final String documentId, @NonNull final String suffix) {
+        if (!isCacheable(checkNotNull(documentId))) {
+            return null;
+        }
+        ensureInitialized();
+        final String fileName = documentId + suffix;
+        // Marks the file as the most recently used one
+        if (mFileSizes.get(fileName) == null) {
+            return null;
+        }
+        final File file = new File(mDirectory, fileName);
+        try {
+            final byte[] data = readFile(file);
+            // The order is restored from the modification times when the cache is initialized again
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            delete(fileName);
+            return null;
+        }
+    }
+
+    private synchronized void write(@NonNull final String documentId, @NonNull final String suffix,
+            @NonNull final byte[] data, final long generation) {
+        if (generation != mGeneration || !isCacheable(checkNotNull(documentId)) || data.length > mMaxSizeBytes) {
+            return;
+        }
+        ensureInitialized();
+        final String fileName = documentId + suffix;
+        delete(fileName);
+        // Written to a temporary file first to never leave a partially written file behind
+        final File temporaryFile = new File(mDirectory, fileName + TEMPORARY_SUFFIX);
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("Could not create " + mDirectory);
+            }
+            writeFile(temporaryFile, data);
+            if (!temporaryFile.renameTo(new File(mDirectory, fileName))) {
+                throw new IOException("Could not rename " + temporaryFile);
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temporaryFile.delete();
+            return;
+        }
+        mFileSizes.put(fileName, (long) data.length);
+        mSizeBytes += data.length;
+        evict();
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> iterator = mFileSizes.entrySet().iterator();
+        while (mSizeBytes > mMaxSizeBytes && iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+            //noinspection ResultOfMethodCallIgnored
+            new File(mDirectory, entry.getKey()).delete();
+            mSizeBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void delete(@NonNull final String fileName) {
+        final Long size = mFileSizes.remove(fileName);
+        if (size != null) {
+            mSizeBytes -= size;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, fileName).delete();
+    }
+
+    private void ensureInitialized() {
+        if (mFileSizes != null) {
+            return;
+        }
+        mFileSizes = new LinkedHashMap<>(16, 0.75f, true);
+        mSizeBytes = 0;
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        final Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // Read once, because sorting by a changing value could fail
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer lhs, final Integer rhs) {
+                return Long.compare(lastModified[lhs], lastModified[rhs]);
+            }
+        });
+        for (final int i : order) {
+            final File file = files[i];
+            if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                // Left behind when the process was killed while writing
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                continue;
+            }
+            mFileSizes.put(file.getName(), file.length());
+            mSizeBytes += file.length();
+        }
+        evict();
+    }
+
+    private static boolean isCacheable(@NonNull final String documentId) {
+        return DOCUMENT_ID_PATTERN.matcher(documentId).matches();
+    }
+
+    @NonNull
+    private static byte[] readFile(@NonNull final File file) throws IOException {
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void writeFile(@NonNull final File file, @NonNull final byte[] data) throws IOException {
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(data);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Remembers the documents which are being polled, so that polling them can be resumed after the app's process was
+ * killed.
+ * <p>
+ * The ids of the documents and the times when polling them started are persisted in the given shared preferences.
+ * Documents are removed once polling them finished or was cancelled. Documents which have been pending for longer
+ * than the maximum age are not resumed anymore.
+ * <p>
+ * Set it with {@link SdkBuilder#setPendingDocumentRegistry(PendingDocumentRegistry, DocumentWatchListener)} to resume
+ * polling when the Gini instance is built.
+ */
+public class PendingDocumentRegistry {
+
+    /**
+     * The default maximum time in milliseconds after which polling a document is not resumed anymore.
+     */
+    public static final long DEFAULT_MAX_AGE_MS = 24 * 60 * 60 * 1000;
+
+    private final SharedPreferences mSharedPreferences;
+    private final long mMaxAgeMs;
+
+    /**
+     * Creates a registry with {@link #DEFAULT_MAX_AGE_MS}.
+     *
+     * @param sharedPreferences the shared preferences in which the registry is persisted. Should not be used for
+     *                          anything else
+     */
+    public PendingDocumentRegistry(@NonNull final SharedPreferences sharedPreferences) {
+        this(sharedPreferences, DEFAULT_MAX_AGE_MS);
+    }
+
+    /**
+     * @param sharedPreferences the shared preferences in which the registry is persisted. Should not be used for
+     *                          anything else
+     * @param maxAgeMs          the time in milliseconds after which polling a document is not resumed anymore
+     */
+    public PendingDocumentRegistry(@NonNull final SharedPreferences sharedPreferences, final long maxAgeMs) {
+        if (maxAgeMs < 1) {
+            throw new IllegalArgumentException("maxAgeMs can't be less than 1");
+        }
+        mSharedPreferences = checkNotNull(sharedPreferences);
+        mMaxAgeMs = maxAgeMs;
+    }
+
+    public long getMaxAgeMs() {
+        return mMaxAgeMs;
+    }
+
+    /**
+     * Remembers that polling the document started at the given time.
+     *
+     * @param startTimeMs the time in milliseconds since the epoch
+     */
+    synchronized void add(@NonNull final String documentId, final long startTimeMs) {
+        mSharedPreferences.edit().putLong(checkNotNull(documentId), startTimeMs).apply();
+    }
+
+    synchronized void remove(@NonNull final String documentId) {
+        mSharedPreferences.edit().remove(checkNotNull(documentId)).apply();
+    }
+
+    /**
+     * Returns the documents which are still pending and removes the expired ones.
+     *
+     * @return a map of the document ids to the times in milliseconds since the epoch when polling them started
+     */
+    @NonNull
+    synchronized Map<String, Long> getPendingDocuments() {
+        final Map<String, Long> pendingDocuments = new HashMap<>();
+        final SharedPreferences.Editor editor = mSharedPreferences.edit();
+        final long nowMs = System.currentTimeMillis();
+        for (final Map.Entry<String, ?> entry : mSharedPreferences.getAll().entrySet()) {
+            if (!(entry.getValue() instanceof Long) || nowMs - (Long) entry.getValue() >= mMaxAgeMs) {
+                editor.remove(entry.getKey());
+            } else {
+                pendingDocuments.put(entry.getKey(), (Long) entry.getValue());
+            }
+        }
+        editor.apply();
+        return pendingDocuments;
+    }
+
+    /**
+     * Forgets all pending documents.
+     */
+    public synchronized void clear() {
+        mSharedPreferences.edit().clear().apply();
+    }
+}
@@ -0,0 +1,30 @@
+package net.gini.android;
+
+/**
+ * Decides how long to wait before the status of a document is requested again while it is polled by
+ * {@link DocumentTaskManager#pollDocument(net.gini.android.models.Document)}.
+ * <p>
+ * Set it with {@link SdkBuilder#setPollingStrategy(PollingStrategy)}. See {@link BackoffPollingStrategy} for the
+ * implementation provided by the SDK.
+ */
+public interface PollingStrategy {
+
+    /**
+     * Returned by {@link #getDelayMs(int, long, long)} to stop polling. The polling task then fails with a
+     * {@link java.util.concurrent.TimeoutException} or, after a 429 or 503 response, with the error of that response.
+     */
+    long STOP_POLLING = -1;
+
+    /**
+     * Called after each response in which the document was still being processed and after each response with the
+     * status 429 (Too Many Requests) or 503 (Service Unavailable). Implementations must be thread safe, because
+     * several documents may be polled at the same time.
+     *
+     * @param attempt      the number of times the document was requested so far, starting with 1
+     * @param elapsedMs    the time in milliseconds since polling the document was started
+     * @param retryAfterMs the delay in milliseconds the Gini API asked for in the Retry-After header of the last
+     *                     response or 0, if there was none
+     * @return the delay in milliseconds before the document is requested again or {@link #STOP_POLLING}
+     */
+    long getDelayMs(int attempt, long elapsedMs, long retryAfterMs);
+}
@@ -0,0 +1,116 @@
+package net.gini.android;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Configures the gzip compression of JSON and text request bodies.
+ * <p>
+ * Bodies of composite documents, extraction feedback and text documents which are at least as large as the minimum
+ * body size are sent with the {@code Content-Encoding: gzip} header. If the Gini API rejects a compressed body with
+ * {@code 415 Unsupported Media Type} the request is sent again uncompressed and compression is disabled. Use
+ * {@link #isRejectedByServer()} to check whether that happened.
+ * <p>
+ * Set it with {@link SdkBuilder#setRequestBodyCompression(RequestBodyCompression)} to enable compression.
+ */
+public class RequestBodyCompression {
+
+    /**
+     * The default minimum body size in bytes. Smaller bodies are not worth compressing.
+     */
+    public static final int DEFAULT_MIN_BODY_SIZE = 1024;
+
+    static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    static final String GZIP = "gzip";
+
+    private static final int TEXT_SNIFF_LENGTH = 512;
+
+    private final int mMinBodySize;
+    private volatile boolean mRejectedByServer;
+
+    /**
+     * Creates a configuration which compresses bodies of at least {@link #DEFAULT_MIN_BODY_SIZE} bytes.
+     */
+    public RequestBodyCompression() {
+        this(DEFAULT_MIN_BODY_SIZE);
+    }
+
+    /**
+     * @param minBodySize the minimum size in bytes of bodies which are compressed
+     */
+    public RequestBodyCompression(final int minBodySize) {
+        if (minBodySize < 0) {
+            throw new IllegalArgumentException("minBodySize can't be less than 0");
+        }
+        mMinBodySize = minBodySize;
+    }
+
+    public int getMinBodySize() {
+        return mMinBodySize;
+    }
+
+    /**
+     * @return true, if the Gini API responded that it doesn't accept compressed bodies. No bodies are compressed
+     * afterwards.
+     */
+    public boolean isRejectedByServer() {
+        return mRejectedByServer;
+    }
+
+    void setRejectedByServer() {
+        mRejectedByServer = true;
+    }
+
+    /**
+     * @return true, if a body with the given media type should be compressed
+     */
+    boolean shouldCompress(@NonNull final String contentType, @NonNull final byte[] body) {
+        if (mRejectedByServer || body.length < mMinBodySize) {
+            return false;
+        }
+        if (isTextMediaType(contentType)) {
+            return true;
+        }
+        // Documents are often uploaded without their real media type and the Gini API detects it
+        return looksLikeText(body);
+    }
+
+    private static boolean isTextMediaType(@NonNull final String contentType) {
+        return contentType.contains("json") || contentType.startsWith("text/") || contentType.endsWith("+plain");
+    }
+
+    /**
+     * Checks the beginning of the data for bytes which don't appear in UTF-8 encoded text. PDFs start with text, but
+     * their content is usually compressed already.
+     */
+    private static boolean looksLikeText(@NonNull final byte[] data) {
+        if (data.length >= 4 && data[0] == '%' && data[1] == 'P' && data[2] == 'D' && data[3] == 'F') {
+            return false;
+        }
+        final int length = Math.min(data.length, TEXT_SNIFF_LENGTH);
+        for (int i = 0; i < length; i++) {
+            final int b = data[i] & 0xFF;
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    static byte[] gzip(@NonNull final byte[] data) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length / 4);
+        try {
+            final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+            gzipOutputStream.write(data);
+            gzipOutputStream.close();
+        } catch (IOException e) {
+            // Can't happen when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -8,6 +8,7 @@ import android.os.Build;
 import com.android.volley.Cache;
 import com.android.volley.Network;
 import com.android.volley.RequestQueue;
+import com.android.volley.ResponseDelivery;
 import com.android.volley.toolbox.BaseHttpStack;
 import com.android.volley.toolbox.BasicNetwork;
 import com.android.volley.toolbox.DiskBasedCache;
@@ -46,6 +47,11 @@ class RequestQueueBuilder {
      */
     private static final String DEFAULT_CACHE_DIR = "volley";
 
+    /**
+     * Number of network dispatcher threads, the same as Volley's default.
+     */
+    private static final int NETWORK_THREAD_POOL_SIZE = 4;
+
     private final Context mContext;
 
     private Cache mCache;
@@ -57,6 +63,7 @@ class RequestQueueBuilder {
     @XmlRes
     private int mNetworkSecurityConfigResId;
     private TrustManager mTrustManager;
+    private ResponseDelivery mResponseDelivery;
 
     RequestQueueBuilder(final Context context) {
         mContext = context;
@@ -82,9 +89,20 @@ class RequestQueueBuilder {
         return this;
     }
 
+    /**
+     * Sets how responses and errors are posted to the requests' listeners. If not set, they are posted on the main
+     * thread like Volley does by default.
+     */
+    RequestQueueBuilder setResponseDelivery(@NonNull final ResponseDelivery responseDelivery) {
+        mResponseDelivery = responseDelivery;
+        return this;
+    }
+
 
     RequestQueue build() {
-        RequestQueue queue = new RequestQueue(getCache(), getNetwork());
+        RequestQueue queue = mResponseDelivery != null
+                ? new RequestQueue(getCache(), getNetwork(), NETWORK_THREAD_POOL_SIZE, mResponseDelivery)
+                : new RequestQueue(getCache(), getNetwork());
         queue.start();
         return queue;
     }
@@ -120,9 +138,9 @@ class RequestQueueBuilder {
     private HurlStack getHurlStack() {
         SSLSocketFactory sslSocketFactory = getSSLSocketFactory();
         if (sslSocketFactory != null) {
-            return new HurlStack(null, sslSocketFactory);
+            return new GiniHurlStack(null, sslSocketFactory);
         }
-        return new HurlStack();
+        return new GiniHurlStack();
     }
 
     private SSLSocketFactory getSSLSocketFactory() {
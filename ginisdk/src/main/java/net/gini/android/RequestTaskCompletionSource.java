@@ -30,13 +30,20 @@ public class RequestTaskCompletionSource<T> implements Response.Listener<T>, Res
         return mCompletionSource.getTask();
     }
 
+    /**
+     * Cancels the task. A response or error which arrives afterwards is ignored.
+     */
+    public void cancel() {
+        mCompletionSource.trySetCancelled();
+    }
+
     @Override
     public void onResponse(T response) {
-        mCompletionSource.setResult(response);
+        mCompletionSource.trySetResult(response);
     }
 
     @Override
     public synchronized void onErrorResponse(VolleyError error) {
-        mCompletionSource.setError(error);
+        mCompletionSource.trySetError(error);
     }
 }
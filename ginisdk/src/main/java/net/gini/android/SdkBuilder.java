@@ -7,7 +7,9 @@ import android.content.SharedPreferences;
 
 import com.android.volley.Cache;
 import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.ExecutorDelivery;
 import com.android.volley.RequestQueue;
+import com.android.volley.ResponseDelivery;
 
 import net.gini.android.authorization.AnonymousSessionManager;
 import net.gini.android.authorization.CredentialsStore;
@@ -22,9 +24,12 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.XmlRes;
+import bolts.Task;
 
 import javax.net.ssl.TrustManager;
 
@@ -55,6 +60,17 @@ public class SdkBuilder {
     private Cache mCache;
     private GiniApiType mGiniApiType;
     private TrustManager mTrustManager;
+    private UploadDeduplicationCache mUploadDeduplicationCache;
+    private ExtractionsCache mExtractionsCache;
+    private OfflineDocumentCache mOfflineDocumentCache;
+    private RequestBodyCompression mRequestBodyCompression;
+    private PollingStrategy mPollingStrategy;
+    private boolean mMultiplexedPolling;
+    private PendingDocumentRegistry mPendingDocumentRegistry;
+    private boolean mLazyExtractionsDecoding;
+    private ResponseDelivery mResponseDelivery;
+    private Executor mParsingExecutor;
+    private DocumentWatchListener mPendingDocumentListener;
 
     /**
      * Constructor to initialize a new builder instance where anonymous Gini users are used. <b>This requires access to
@@ -221,13 +237,163 @@ public class SdkBuilder {
         return this;
     }
 
+    /**
+     * Set how the responses of the Gini API are delivered to the SDK. If no response delivery is set, responses are
+     * delivered directly on the parsing executor instead of passing through the main thread.
+     *
+     * @param responseDelivery A response delivery instance (e.g. an {@link ExecutorDelivery}).
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setResponseDelivery(@NonNull final ResponseDelivery responseDelivery) {
+        mResponseDelivery = checkNotNull(responseDelivery);
+        return this;
+    }
+
+    /**
+     * Set the executor on which the responses of the Gini API are processed and parsed. If no executor is set, Bolts'
+     * {@link Task#BACKGROUND_EXECUTOR} is used.
+     * <p>
+     * The tasks returned by the {@link DocumentTaskManager} are completed on this executor. Use
+     * {@link Task#UI_THREAD_EXECUTOR} for continuations which update the UI.
+     *
+     * @param parsingExecutor An executor which runs the tasks on background threads.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setParsingExecutor(@NonNull final Executor parsingExecutor) {
+        mParsingExecutor = checkNotNull(parsingExecutor);
+        return this;
+    }
+
+    /**
+     * Set the cache which is used to avoid uploading the same partial document again. If no cache is set, every
+     * partial document is uploaded.
+     * <p>
+     * The cached partial documents are not tied to a user. Clear the cache with
+     * {@link UploadDeduplicationCache#clear()} when the user changes, otherwise the next user gets the previous user's
+     * partial documents.
+     *
+     * @param uploadDeduplicationCache An upload deduplication cache instance.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setUploadDeduplicationCache(@NonNull final UploadDeduplicationCache uploadDeduplicationCache) {
+        mUploadDeduplicationCache = checkNotNull(uploadDeduplicationCache);
+        return this;
+    }
+
+    /**
+     * Set the cache which keeps the extractions of completed documents in memory. If no cache is set, the extractions
+     * are requested every time.
+     * <p>
+     * Use {@link ExtractionsCache#getHitCount()} and {@link ExtractionsCache#getMissCount()} to check how effective
+     * the cache is.
+     *
+     * @param extractionsCache An extractions cache instance.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setExtractionsCache(@NonNull final ExtractionsCache extractionsCache) {
+        mExtractionsCache = checkNotNull(extractionsCache);
+        return this;
+    }
+
+    /**
+     * Set the cache which stores completed documents and their extractions on disk. If a cache is set, documents and
+     * extractions are returned from the cache without a network connection and revalidated in the background. If no
+     * cache is set, they are requested every time.
+     * <p>
+     * The stored documents are returned without a session. Clear the cache with {@link OfflineDocumentCache#clear()}
+     * when the user changes, otherwise the next user can read the previous user's documents.
+     *
+     * @param offlineDocumentCache An offline document cache instance.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setOfflineDocumentCache(@NonNull final OfflineDocumentCache offlineDocumentCache) {
+        mOfflineDocumentCache = checkNotNull(offlineDocumentCache);
+        return this;
+    }
+
+    /**
+     * Enable the gzip compression of JSON and text request bodies. If no configuration is set, request bodies are
+     * sent uncompressed.
+     * <p>
+     * Use {@link RequestBodyCompression#isRejectedByServer()} to check whether the Gini API accepts compressed bodies.
+     *
+     * @param requestBodyCompression A request body compression configuration.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setRequestBodyCompression(@NonNull final RequestBodyCompression requestBodyCompression) {
+        mRequestBodyCompression = checkNotNull(requestBodyCompression);
+        return this;
+    }
+
+    /**
+     * Set the strategy which decides the delays between requests when a document is polled. If no strategy is set,
+     * documents are polled every {@link DocumentTaskManager#POLLING_INTERVAL} milliseconds.
+     *
+     * @param pollingStrategy A polling strategy instance (e.g. a {@link BackoffPollingStrategy}).
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setPollingStrategy(@NonNull final PollingStrategy pollingStrategy) {
+        mPollingStrategy = checkNotNull(pollingStrategy);
+        return this;
+    }
+
+    /**
+     * Enable polling all pending documents together. Instead of requesting each pending document separately, the
+     * state of all due documents is requested with a single document list request on a shared timer. This reduces the
+     * number of requests when many documents are processed at the same time. Disabled by default.
+     *
+     * @param multiplexedPolling Whether pending documents should be polled together.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setMultiplexedPolling(final boolean multiplexedPolling) {
+        mMultiplexedPolling = multiplexedPolling;
+        return this;
+    }
+
+    /**
+     * Enable decoding extractions when they are accessed for the first time. The extractions response is kept and a
+     * specific or compound extraction is only decoded when it is looked up in the maps of the
+     * {@link net.gini.android.models.ExtractionsContainer}. This reduces the time until the first extractions can be
+     * shown when only a few of them are used. Disabled by default.
+     *
+     * @param lazyExtractionsDecoding Whether extractions should be decoded on first access.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setLazyExtractionsDecoding(final boolean lazyExtractionsDecoding) {
+        mLazyExtractionsDecoding = lazyExtractionsDecoding;
+        return this;
+    }
+
+    /**
+     * Set the registry in which the documents being polled are persisted. When the Gini instance is built for the first
+     * time, polling the documents which were still pending when the app's process was killed is resumed in the
+     * background. If no registry is set, pending documents are not remembered.
+     * <p>
+     * The listener is notified once each resumed document was processed and can be used to retrieve its extractions.
+     * It is called on a background thread.
+     *
+     * @param pendingDocumentRegistry A pending document registry instance.
+     * @param listener                A listener for the resumed documents or null.
+     * @return The builder instance to enable chaining.
+     */
+    public SdkBuilder setPendingDocumentRegistry(@NonNull final PendingDocumentRegistry pendingDocumentRegistry,
+            @Nullable final DocumentWatchListener listener) {
+        mPendingDocumentRegistry = checkNotNull(pendingDocumentRegistry);
+        mPendingDocumentListener = listener;
+        return this;
+    }
+
     /**
      * Builds the Gini instance with the configuration settings of the builder instance.
      *
      * @return The fully configured Gini instance.
      */
     public Gini build() {
-        return new Gini(getDocumentTaskManager(), getCredentialsStore());
+        final DocumentTaskManager documentTaskManager = getDocumentTaskManager();
+        if (mPendingDocumentRegistry != null) {
+            documentTaskManager.resumePendingPollings(mPendingDocumentListener);
+        }
+        return new Gini(documentTaskManager, getCredentialsStore());
     }
 
     /**
@@ -249,11 +415,31 @@ public class SdkBuilder {
             } else if (mTrustManager != null) {
                 requestQueueBuilder.setTrustManager(mTrustManager);
             }
+            requestQueueBuilder.setResponseDelivery(getResponseDelivery());
             mRequestQueue = requestQueueBuilder.build();
         }
         return mRequestQueue;
     }
 
+    /**
+     * Return the {@link ResponseDelivery} set via #setResponseDelivery. If no response delivery has been set, default
+     * to delivering the responses on the parsing executor.
+     *
+     * @return The ResponseDelivery instance.
+     */
+    @NonNull
+    private synchronized ResponseDelivery getResponseDelivery() {
+        if (mResponseDelivery == null) {
+            mResponseDelivery = new ExecutorDelivery(getParsingExecutor());
+        }
+        return mResponseDelivery;
+    }
+
+    @NonNull
+    private Executor getParsingExecutor() {
+        return mParsingExecutor != null ? mParsingExecutor : Task.BACKGROUND_EXECUTOR;
+    }
+
     private String getApiBaseUrl() {
         return mApiBaseUrl != null ? mApiBaseUrl : mGiniApiType.getBaseUrl();
     }
@@ -284,6 +470,8 @@ public class SdkBuilder {
         if (mApiCommunicator == null) {
             mApiCommunicator = new ApiCommunicator(getApiBaseUrl(), mGiniApiType, getRequestQueue(),
                     getRetryPolicyFactory());
+            mApiCommunicator.setRequestBodyCompression(mRequestBodyCompression);
+            mApiCommunicator.setLazyExtractionsDecoding(mLazyExtractionsDecoding);
         }
         return mApiCommunicator;
     }
@@ -364,6 +552,13 @@ public class SdkBuilder {
         if (mDocumentTaskManager == null) {
             mDocumentTaskManager = new DocumentTaskManager(getApiCommunicator(),
                     getSessionManager(), mGiniApiType);
+            mDocumentTaskManager.setUploadDeduplicationCache(mUploadDeduplicationCache);
+            mDocumentTaskManager.setExtractionsCache(mExtractionsCache);
+            mDocumentTaskManager.setOfflineDocumentCache(mOfflineDocumentCache);
+            mDocumentTaskManager.setPollingStrategy(mPollingStrategy);
+            mDocumentTaskManager.setMultiplexedPolling(mMultiplexedPolling);
+            mDocumentTaskManager.setPendingDocumentRegistry(mPendingDocumentRegistry);
+            mDocumentTaskManager.setParsingExecutor(getParsingExecutor());
         }
         return mDocumentTaskManager;
     }
@@ -0,0 +1,58 @@
+package net.gini.android;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import bolts.Continuation;
+import bolts.Task;
+
+/**
+ * Shares a running task between all callers which request it with the same key. A new task is started only if no
+ * task with the key is running.
+ */
+class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, Task<T>> mRunningTasks = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the running task with the given key or starts a new one with the given factory.
+     *
+     * @param key         identifies the task
+     * @param taskFactory creates the task if none with the key is running
+     * @return A Task which will resolve to the result of the shared task.
+     */
+    Task<T> execute(@NonNull final String key, @NonNull final Callable<Task<T>> taskFactory) {
+        final Task<T>.TaskCompletionSource completionSource = Task.create();
+        final Task<T> runningTask = mRunningTasks.putIfAbsent(key, completionSource.getTask());
+        if (runningTask != null) {
+            return runningTask;
+        }
+        Task<T> task;
+        try {
+            task = taskFactory.call();
+        } catch (RuntimeException e) {
+            mRunningTasks.remove(key, completionSource.getTask());
+            completionSource.setError(e);
+            throw e;
+        } catch (Exception e) {
+            task = Task.forError(e);
+        }
+        task.continueWith(new Continuation<T, Void>() {
+            @Override
+            public Void then(final Task<T> task) throws Exception {
+                // Removed before completing so that callers notified of the completion start a new task
+                mRunningTasks.remove(key, completionSource.getTask());
+                if (task.isFaulted()) {
+                    completionSource.setError(task.getError());
+                } else if (task.isCancelled()) {
+                    completionSource.setCancelled();
+                } else {
+                    completionSource.setResult(task.getResult());
+                }
+                return null;
+            }
+        });
+        return completionSource.getTask();
+    }
+}
@@ -0,0 +1,95 @@
+package net.gini.android;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+
+import androidx.annotation.NonNull;
+import bolts.Continuation;
+import bolts.Task;
+
+/**
+ * Starts tasks while making sure that no more than a fixed number of them are running at the same time. Tasks which
+ * cannot be started right away are queued and started in submission order when a running task completes.
+ */
+class TaskLimiter {
+
+    private final int mMaxRunningTasks;
+    private final Queue<Runnable> mQueuedTasks = new ArrayDeque<>();
+    private int mRunningTasks;
+
+    TaskLimiter(final int maxRunningTasks) {
+        if (maxRunningTasks < 1) {
+            throw new IllegalArgumentException("maxRunningTasks can't be less than 1");
+        }
+        mMaxRunningTasks = maxRunningTasks;
+    }
+
+    /**
+     * Starts the task created by the given factory as soon as less than the maximum number of tasks are running.
+     *
+     * @param taskFactory creates the task when it may be started
+     * @return A Task which will resolve to the result of the created task.
+     */
+    <T> Task<T> submit(@NonNull final Callable<Task<T>> taskFactory) {
+        final Task<T>.TaskCompletionSource completionSource = Task.create();
+        final Runnable start = new Runnable() {
+            @Override
+            public void run() {
+                Task<T> task;
+                try {
+                    task = taskFactory.call();
+                } catch (Exception e) {
+                    task = Task.forError(e);
+                }
+                task.continueWith(new Continuation<T, Void>() {
+                    @Override
+                    public Void then(final Task<T> task) throws Exception {
+                        onTaskCompleted();
+                        if (task.isFaulted()) {
+                            completionSource.setError(task.getError());
+                        } else if (task.isCancelled()) {
+                            completionSource.setCancelled();
+                        } else {
+                            completionSource.setResult(task.getResult());
+                        }
+                        return null;
+                    }
+                });
+            }
+        };
+        final boolean startNow;
+        synchronized (this) {
+            startNow = mRunningTasks < mMaxRunningTasks;
+            if (startNow) {
+                mRunningTasks++;
+            } else {
+                mQueuedTasks.add(start);
+            }
+        }
+        if (startNow) {
+            start.run();
+        }
+        return completionSource.getTask();
+    }
+
+    /**
+     * @return the number of running and queued tasks
+     */
+    synchronized int getPendingTaskCount() {
+        return mRunningTasks + mQueuedTasks.size();
+    }
+
+    private void onTaskCompleted() {
+        final Runnable next;
+        synchronized (this) {
+            next = mQueuedTasks.poll();
+            if (next == null) {
+                mRunningTasks--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+}
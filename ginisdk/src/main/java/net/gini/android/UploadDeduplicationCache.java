@@ -0,0 +1,227 @@
+package net.gini.android;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+import static net.gini.android.Utils.checkNotNull;
+
+import android.content.SharedPreferences;
+
+import net.gini.android.models.Document;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Remembers the partial documents created from uploaded data to avoid uploading the same data again.
+ * <p>
+ * Partial documents are keyed by a hash of the uploaded bytes, the content type, the document type hint and the
+ * document metadata. The cache is persisted in the given shared preferences and holds at most the maximum number of
+ * entries. Entries expire after the maximum age, which should not exceed the time the Gini API keeps partial documents
+ * which were not used in a composite document.
+ * <p>
+ * The cached partial documents are not tied to the user who uploaded them. Call {@link #clear()} when the user logs
+ * out or another user logs in, otherwise the next user gets the previous user's partial documents for identical pages
+ * and can't use them in a composite document.
+ * <p>
+ * Set it with {@link SdkBuilder#setUploadDeduplicationCache(UploadDeduplicationCache)} to enable deduplication of
+ * partial document uploads.
+ */
+public class UploadDeduplicationCache {
+
+    /**
+     * The default maximum number of cached partial documents.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 50;
+
+    /**
+     * The default maximum age of cached partial documents in milliseconds.
+     */
+    public static final long DEFAULT_MAX_AGE_MS = 60 * 60 * 1000;
+
+    private static final String CREATION_TIME_KEY = "creationTime";
+    private static final String DOCUMENT_KEY = "document";
+
+    private final SharedPreferences mSharedPreferences;
+    private final int mMaxEntries;
+    private final long mMaxAgeMs;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_ENTRIES} and {@link #DEFAULT_MAX_AGE_MS}.
+     *
+     * @param sharedPreferences the shared preferences in which the cache is persisted. Should not be used for
+     *                          anything else
+     */
+    public UploadDeduplicationCache(@NonNull final SharedPreferences sharedPreferences) {
+        this(sharedPreferences, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE_MS);
+    }
+
+    /**
+     * @param sharedPreferences the shared preferences in which the cache is persisted. Should not be used for
+     *                          anything else
+     * @param maxEntries        the maximum number of cached partial documents
+     * @param maxAgeMs          the time in milliseconds after which a cached partial document is not used anymore
+     */
+    public UploadDeduplicationCache(@NonNull final SharedPreferences sharedPreferences, final int maxEntries,
+            final long maxAgeMs) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries can't be less than 1");
+        } else if (maxAgeMs < 1) {
+            throw new IllegalArgumentException("maxAgeMs can't be less than 1");
+        }
+        mSharedPreferences = checkNotNull(sharedPreferences);
+        mMaxEntries = maxEntries;
+        mMaxAgeMs = maxAgeMs;
+    }
+
+    public int getMaxEntries() {
+        return mMaxEntries;
+    }
+
+    public long getMaxAgeMs() {
+        return mMaxAgeMs;
+    }
+
+    /**
+     * Calculates the key for an upload.
+     */
+    @NonNull
+    static String contentHash(@NonNull final byte[] data, @NonNull final String contentType,
+            @Nullable final String apiDoctypeHint, @Nullable final DocumentMetadata documentMetadata) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        updateWithString(digest, contentType);
+        updateWithString(digest, apiDoctypeHint != null ? apiDoctypeHint : "");
+        if (documentMetadata != null) {
+            // Sorted to make the hash independent of the order in which the metadata was added
+            for (final Map.Entry<String, String> entry : new TreeMap<>(documentMetadata.getMetadata()).entrySet()) {
+                updateWithString(digest, entry.getKey());
+                updateWithString(digest, entry.getValue());
+            }
+        }
+        digest.update(data);
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void updateWithString(@NonNull final MessageDigest digest, @NonNull final String string) {
+        digest.update(string.getBytes(CHARSET_UTF8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @return the partial document which was created for the content hash or null, if there is none or it expired
+     */
+    @Nullable
+    synchronized Document get(@NonNull final String contentHash) {
+        final String entryJson = mSharedPreferences.getString(contentHash, null);
+        if (entryJson == null) {
+            return null;
+        }
+        try {
+            final JSONObject entry = new JSONObject(entryJson);
+            if (isExpired(entry.getLong(CREATION_TIME_KEY))) {
+                mSharedPreferences.edit().remove(contentHash).apply();
+                return null;
+            }
+            return Document.fromApiResponse(entry.getJSONObject(DOCUMENT_KEY));
+        } catch (JSONException e) {
+            mSharedPreferences.edit().remove(contentHash).apply();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the partial document which was created for the content hash. Evicts expired and the oldest entries if
+     * the cache is full.
+     *
+     * @param documentJson the partial document as returned by the Gini API
+     */
+    synchronized void put(@NonNull final String contentHash, @NonNull final JSONObject documentJson)
+            throws JSONException {
+        final JSONObject entry = new JSONObject();
+        entry.put(CREATION_TIME_KEY, System.currentTimeMillis());
+        entry.put(DOCUMENT_KEY, documentJson);
+        final SharedPreferences.Editor editor = mSharedPreferences.edit();
+        evict(editor, contentHash);
+        editor.putString(contentHash, entry.toString());
+        editor.apply();
+    }
+
+    /**
+     * Removes the partial document with the given id, if it is cached.
+     */
+    synchronized void removeDocument(@NonNull final String documentId) {
+        final SharedPreferences.Editor editor = mSharedPreferences.edit();
+        for (final Map.Entry<String, ?> entry : mSharedPreferences.getAll().entrySet()) {
+            try {
+                final JSONObject document = new JSONObject(String.valueOf(entry.getValue()))
+                        .getJSONObject(DOCUMENT_KEY);
+                if (documentId.equals(document.getString("id"))) {
+                    editor.remove(entry.getKey());
+                }
+            } catch (JSONException e) {
+                editor.remove(entry.getKey());
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Removes all cached partial documents, e.g. when the user logs out.
+     */
+    public synchronized void clear() {
+        mSharedPreferences.edit().clear().apply();
+    }
+
+    private void evict(@NonNull final SharedPreferences.Editor editor, @NonNull final String newContentHash) {
+        final List<Map.Entry<String, Long>> creationTimes = new ArrayList<>();
+        for (final Map.Entry<String, ?> entry : mSharedPreferences.getAll().entrySet()) {
+            if (entry.getKey().equals(newContentHash)) {
+                continue;
+            }
+            try {
+                final long creationTime = new JSONObject(String.valueOf(entry.getValue())).getLong(CREATION_TIME_KEY);
+                if (isExpired(creationTime)) {
+                    editor.remove(entry.getKey());
+                } else {
+                    creationTimes.add(new AbstractMap.SimpleEntry<>(entry.getKey(), creationTime));
+                }
+            } catch (JSONException e) {
+                editor.remove(entry.getKey());
+            }
+        }
+        Collections.sort(creationTimes, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(final Map.Entry<String, Long> lhs, final Map.Entry<String, Long> rhs) {
+                return lhs.getValue().compareTo(rhs.getValue());
+            }
+        });
+        // Make room for the new entry by removing the oldest ones
+        for (int i = 0; i <= creationTimes.size() - mMaxEntries; i++) {
+            editor.remove(creationTimes.get(i).getKey());
+        }
+    }
+
+    private boolean isExpired(final long creationTime) {
+        return System.currentTimeMillis() - creationTime >= mMaxAgeMs;
+    }
+}
@@ -0,0 +1,19 @@
+package net.gini.android;
+
+/**
+ * Receives the progress of a document upload.
+ * <p>
+ * The listener is called on the network thread which sends the document. Implementations should return quickly and
+ * must not block.
+ */
+public interface UploadListener {
+
+    /**
+     * Called repeatedly while the document is being sent and once after the last byte was sent.
+     *
+     * @param bytesSent      the number of bytes sent so far
+     * @param totalBytes     the size of the document in bytes
+     * @param bytesPerSecond the throughput since the previous call
+     */
+    void onProgress(long bytesSent, long totalBytes, double bytesPerSecond);
+}
@@ -0,0 +1,77 @@
+package net.gini.android.models;
+
+import static net.gini.android.Utils.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The layout of a document describes the textual content of the document's pages with positional information.
+ * <p>
+ * Use {@link LayoutPage#findWordAt(float, float)} to find the word at a point (e.g. where the user tapped) and
+ * {@link #findWordsInBox(Box)} or {@link #getTextInBox(Box)} to find the words inside an extraction's box.
+ */
+public class Layout {
+
+    private final List<LayoutPage> mPages;
+
+    Layout(@NonNull final List<LayoutPage> pages) {
+        mPages = Collections.unmodifiableList(checkNotNull(pages));
+    }
+
+    /**
+     * Parses the layout response of the Gini API.
+     *
+     * @param inputStream the UTF-8 encoded response body. It is not closed
+     * @return the layout
+     * @throws IOException if the response is not valid JSON or doesn't have the expected structure
+     */
+    @NonNull
+    public static Layout fromApiResponse(@NonNull final InputStream inputStream) throws IOException {
+        return LayoutParser.parse(inputStream);
+    }
+
+    @NonNull
+    public List<LayoutPage> getPages() {
+        return mPages;
+    }
+
+    /**
+     * @param pageNumber the page number, starting with 1
+     * @return the page or null, if the document has no page with that number
+     */
+    @Nullable
+    public LayoutPage getPage(final int pageNumber) {
+        for (final LayoutPage page : mPages) {
+            if (page.getNumber() == pageNumber) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the words whose centers are inside the box on the box's page.
+     *
+     * @return the indexes of the words on the page in reading order
+     */
+    @NonNull
+    public int[] findWordsInBox(@NonNull final Box box) {
+        final LayoutPage page = getPage(box.getPageNumber());
+        return page != null ? page.findWordsInBox(box) : new int[0];
+    }
+
+    /**
+     * @return the words whose centers are inside the box on the box's page separated by spaces
+     */
+    @NonNull
+    public String getTextInBox(@NonNull final Box box) {
+        final LayoutPage page = getPage(box.getPageNumber());
+        return page != null ? page.getTextInBox(box) : "";
+    }
+}
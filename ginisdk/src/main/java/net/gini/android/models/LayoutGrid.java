@@ -0,0 +1,136 @@
+package net.gini.android.models;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over a page which maps each cell to the words overlapping it.
+ * <p>
+ * The grid has about as many cells as the page has words. The words of all cells are stored in one array, ordered by
+ * cell, with the start offset of each cell in a second array.
+ */
+class LayoutGrid {
+
+    private static final int MAX_CELLS_PER_SIDE = 128;
+
+    private final float[] mWordGeometry;
+    private final int mColumns;
+    private final int mRows;
+    private final float mCellWidth;
+    private final float mCellHeight;
+    private final int[] mCellStarts;
+    private final int[] mCellWords;
+
+    /**
+     * @param wordGeometry left, top, width and height of each word
+     */
+    LayoutGrid(final float width, final float height, @NonNull final float[] wordGeometry) {
+        mWordGeometry = wordGeometry;
+        final int wordCount = wordGeometry.length / 4;
+        final float pageWidth = Math.max(width, 1);
+        final float pageHeight = Math.max(height, 1);
+        mColumns = clamp((int) Math.ceil(Math.sqrt(wordCount * pageWidth / pageHeight)), 1, MAX_CELLS_PER_SIDE);
+        mRows = clamp((int) Math.ceil((double) wordCount / mColumns), 1, MAX_CELLS_PER_SIDE);
+        mCellWidth = pageWidth / mColumns;
+        mCellHeight = pageHeight / mRows;
+
+        // Count the words of each cell, turn the counts into start offsets and then fill in the words
+        mCellStarts = new int[mColumns * mRows + 1];
+        for (int word = 0; word < wordCount; word++) {
+            for (int row = firstRow(word); row <= lastRow(word); row++) {
+                for (int column = firstColumn(word); column <= lastColumn(word); column++) {
+                    mCellStarts[row * mColumns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < mColumns * mRows; cell++) {
+            mCellStarts[cell + 1] += mCellStarts[cell];
+        }
+        mCellWords = new int[mCellStarts[mColumns * mRows]];
+        final int[] cellFill = Arrays.copyOf(mCellStarts, mColumns * mRows);
+        for (int word = 0; word < wordCount; word++) {
+            for (int row = firstRow(word); row <= lastRow(word); row++) {
+                for (int column = firstColumn(word); column <= lastColumn(word); column++) {
+                    mCellWords[cellFill[row * mColumns + column]++] = word;
+                }
+            }
+        }
+    }
+
+    int findWordAt(final float x, final float y) {
+        final int cell = row(y) * mColumns + column(x);
+        int result = -1;
+        float resultArea = Float.MAX_VALUE;
+        for (int i = mCellStarts[cell]; i < mCellStarts[cell + 1]; i++) {
+            final int word = mCellWords[i];
+            final float left = mWordGeometry[4 * word];
+            final float top = mWordGeometry[4 * word + 1];
+            final float width = mWordGeometry[4 * word + 2];
+            final float height = mWordGeometry[4 * word + 3];
+            if (x >= left && x <= left + width && y >= top && y <= top + height && width * height < resultArea) {
+                result = word;
+                resultArea = width * height;
+            }
+        }
+        return result;
+    }
+
+    @NonNull
+    int[] findWordsInRect(final float left, final float top, final float width, final float height) {
+        final float right = left + width;
+        final float bottom = top + height;
+        int[] words = new int[16];
+        int count = 0;
+        for (int row = row(top); row <= row(bottom); row++) {
+            for (int column = column(left); column <= column(right); column++) {
+                final int cell = row * mColumns + column;
+                for (int i = mCellStarts[cell]; i < mCellStarts[cell + 1]; i++) {
+                    final int word = mCellWords[i];
+                    final float centerX = mWordGeometry[4 * word] + mWordGeometry[4 * word + 2] / 2;
+                    final float centerY = mWordGeometry[4 * word + 1] + mWordGeometry[4 * word + 3] / 2;
+                    // A word is in several cells, but only reported for the cell of its center
+                    if (row(centerY) != row || column(centerX) != column
+                            || centerX < left || centerX > right || centerY < top || centerY > bottom) {
+                        continue;
+                    }
+                    if (count == words.length) {
+                        words = Arrays.copyOf(words, 2 * count);
+                    }
+                    words[count++] = word;
+                }
+            }
+        }
+        words = Arrays.copyOf(words, count);
+        Arrays.sort(words);
+        return words;
+    }
+
+    private int firstColumn(final int word) {
+        return column(mWordGeometry[4 * word]);
+    }
+
+    private int lastColumn(final int word) {
+        return column(mWordGeometry[4 * word] + mWordGeometry[4 * word + 2]);
+    }
+
+    private int firstRow(final int word) {
+        return row(mWordGeometry[4 * word + 1]);
+    }
+
+    private int lastRow(final int word) {
+        return row(mWordGeometry[4 * word + 1] + mWordGeometry[4 * word + 3]);
+    }
+
+    private int column(final float x) {
+        return clamp((int) (x / mCellWidth), 0, mColumns - 1);
+    }
+
+    private int row(final float y) {
+        return clamp((int) (y / mCellHeight), 0, mRows - 1);
+    }
+
+    private static int clamp(final int value, final int min, final int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,190 @@
+package net.gini.android.models;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The layout of a single page of a document. The page's words and lines are stored in reading order and are
+ * addressed by their index.
+ * <p>
+ * The geometry is kept in primitive arrays and the words are indexed with a uniform grid, so that the word at a
+ * point or the words inside a {@link Box} can be found without looking at every word of the page. All coordinates
+ * are in the same unit as the extraction boxes.
+ */
+public class LayoutPage {
+
+    private final int mNumber;
+    private final float mWidth;
+    private final float mHeight;
+    private final String[] mWordTexts;
+    private final float[] mWordGeometry;
+    private final int[] mWordLines;
+    private final float[] mLineGeometry;
+    private final int[] mLineFirstWords;
+    private final LayoutGrid mGrid;
+
+    /**
+     * @param wordGeometry   left, top, width and height of each word
+     * @param wordLines      the index of the line of each word
+     * @param lineGeometry   left, top, width and height of each line
+     * @param lineFirstWords the index of the first word of each line
+     */
+    LayoutPage(final int number, final float width, final float height, @NonNull final String[] wordTexts,
+            @NonNull final float[] wordGeometry, @NonNull final int[] wordLines, @NonNull final float[] lineGeometry,
+            @NonNull final int[] lineFirstWords) {
+        mNumber = number;
+        mWidth = width;
+        mHeight = height;
+        mWordTexts = wordTexts;
+        mWordGeometry = wordGeometry;
+        mWordLines = wordLines;
+        mLineGeometry = lineGeometry;
+        mLineFirstWords = lineFirstWords;
+        mGrid = new LayoutGrid(width, height, wordGeometry);
+    }
+
+    /**
+     * @return the page number, starting with 1
+     */
+    public int getNumber() {
+        return mNumber;
+    }
+
+    public float getWidth() {
+        return mWidth;
+    }
+
+    public float getHeight() {
+        return mHeight;
+    }
+
+    public int getWordCount() {
+        return mWordTexts.length;
+    }
+
+    @NonNull
+    public String getWordText(final int word) {
+        return mWordTexts[word];
+    }
+
+    public float getWordLeft(final int word) {
+        return mWordGeometry[4 * word];
+    }
+
+    public float getWordTop(final int word) {
+        return mWordGeometry[4 * word + 1];
+    }
+
+    public float getWordWidth(final int word) {
+        return mWordGeometry[4 * word + 2];
+    }
+
+    public float getWordHeight(final int word) {
+        return mWordGeometry[4 * word + 3];
+    }
+
+    /**
+     * @return the index of the line which contains the word
+     */
+    public int getWordLine(final int word) {
+        return mWordLines[word];
+    }
+
+    public int getLineCount() {
+        return mLineFirstWords.length;
+    }
+
+    public float getLineLeft(final int line) {
+        return mLineGeometry[4 * line];
+    }
+
+    public float getLineTop(final int line) {
+        return mLineGeometry[4 * line + 1];
+    }
+
+    public float getLineWidth(final int line) {
+        return mLineGeometry[4 * line + 2];
+    }
+
+    public float getLineHeight(final int line) {
+        return mLineGeometry[4 * line + 3];
+    }
+
+    /**
+     * @return the index of the line's first word
+     */
+    public int getLineFirstWord(final int line) {
+        return mLineFirstWords[line];
+    }
+
+    public int getLineWordCount(final int line) {
+        final int end = line + 1 < mLineFirstWords.length ? mLineFirstWords[line + 1] : mWordTexts.length;
+        return end - mLineFirstWords[line];
+    }
+
+    /**
+     * @return the words of the line separated by spaces
+     */
+    @NonNull
+    public String getLineText(final int line) {
+        final int first = mLineFirstWords[line];
+        return joinWords(first, first + getLineWordCount(line));
+    }
+
+    /**
+     * Finds the word at the given point. If words overlap the smallest one is returned.
+     *
+     * @return the index of the word or -1, if there is no word at the point
+     */
+    public int findWordAt(final float x, final float y) {
+        return mGrid.findWordAt(x, y);
+    }
+
+    /**
+     * Finds the words whose centers are inside the given rectangle.
+     *
+     * @return the indexes of the words in reading order
+     */
+    @NonNull
+    public int[] findWordsInRect(final float left, final float top, final float width, final float height) {
+        return mGrid.findWordsInRect(left, top, width, height);
+    }
+
+    /**
+     * Finds the words whose centers are inside the box. The box's page number is not checked.
+     *
+     * @return the indexes of the words in reading order
+     */
+    @NonNull
+    public int[] findWordsInBox(@NonNull final Box box) {
+        return findWordsInRect((float) box.getLeft(), (float) box.getTop(), (float) box.getWidth(),
+                (float) box.getHeight());
+    }
+
+    /**
+     * @return the words whose centers are inside the box separated by spaces
+     */
+    @NonNull
+    public String getTextInBox(@NonNull final Box box) {
+        final int[] words = findWordsInBox(box);
+        final StringBuilder text = new StringBuilder();
+        for (final int word : words) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(mWordTexts[word]);
+        }
+        return text.toString();
+    }
+
+    @NonNull
+    private String joinWords(final int start, final int end) {
+        final StringBuilder text = new StringBuilder();
+        for (int word = start; word < end; word++) {
+            if (word > start) {
+                text.append(' ');
+            }
+            text.append(mWordTexts[word]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package net.gini.android.models;
+
+import android.util.JsonReader;
+
+import net.gini.android.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Parses the layout response of the Gini API with a pull parser into {@link Layout}.
+ * <p>
+ * Text zones and paragraphs are flattened, only the lines and words are kept. Equal word texts share one string
+ * instance.
+ */
+class LayoutParser {
+
+    private final Map<String, String> mTexts = new HashMap<>();
+    private float[] mWordGeometry = new float[256];
+    private String[] mWordTexts = new String[64];
+    private int[] mWordLines = new int[64];
+    private int mWordCount;
+    private float[] mLineGeometry = new float[64];
+    private int[] mLineFirstWords = new int[16];
+    private int mLineCount;
+
+    private LayoutParser() {
+    }
+
+    @NonNull
+    static Layout parse(@NonNull final InputStream inputStream) throws IOException {
+        // The Gini API always uses UTF-8.
+        final JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Utils.CHARSET_UTF8));
+        try {
+            return new LayoutParser().readLayout(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Thrown by the reader if a value has an unexpected type
+            throw new IOException("Unexpected layout response structure", e);
+        }
+    }
+
+    @NonNull
+    private Layout readLayout(@NonNull final JsonReader reader) throws IOException {
+        final List<LayoutPage> pages = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("pages")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    pages.add(readPage(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Layout(pages);
+    }
+
+    @NonNull
+    private LayoutPage readPage(@NonNull final JsonReader reader) throws IOException {
+        int number = 0;
+        float width = 0;
+        float height = 0;
+        mWordCount = 0;
+        mLineCount = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "number":
+                    number = reader.nextInt();
+                    break;
+                case "sizeX":
+                    width = (float) reader.nextDouble();
+                    break;
+                case "sizeY":
+                    height = (float) reader.nextDouble();
+                    break;
+                case "textZones":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readTextZone(reader);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new LayoutPage(number, width, height, Arrays.copyOf(mWordTexts, mWordCount),
+                Arrays.copyOf(mWordGeometry, 4 * mWordCount), Arrays.copyOf(mWordLines, mWordCount),
+                Arrays.copyOf(mLineGeometry, 4 * mLineCount), Arrays.copyOf(mLineFirstWords, mLineCount));
+    }
+
+    private void readTextZone(@NonNull final JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("paragraphs")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readParagraph(reader);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readParagraph(@NonNull final JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("lines")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readLine(reader);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readLine(@NonNull final JsonReader reader) throws IOException {
+        if (mLineCount == mLineFirstWords.length) {
+            mLineFirstWords = Arrays.copyOf(mLineFirstWords, 2 * mLineCount);
+            mLineGeometry = Arrays.copyOf(mLineGeometry, 8 * mLineCount);
+        }
+        final int line = mLineCount++;
+        mLineFirstWords[line] = mWordCount;
+        Arrays.fill(mLineGeometry, 4 * line, 4 * line + 4, 0);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (name.equals("wds")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readWord(reader, line);
+                }
+                reader.endArray();
+            } else if (!readGeometry(reader, name, mLineGeometry, line)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readWord(@NonNull final JsonReader reader, final int line) throws IOException {
+        if (mWordCount == mWordTexts.length) {
+            mWordTexts = Arrays.copyOf(mWordTexts, 2 * mWordCount);
+            mWordLines = Arrays.copyOf(mWordLines, 2 * mWordCount);
+            mWordGeometry = Arrays.copyOf(mWordGeometry, 8 * mWordCount);
+        }
+        final int word = mWordCount++;
+        mWordLines[word] = line;
+        mWordTexts[word] = "";
+        Arrays.fill(mWordGeometry, 4 * word, 4 * word + 4, 0);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (name.equals("text")) {
+                mWordTexts[word] = intern(reader.nextString());
+            } else if (!readGeometry(reader, name, mWordGeometry, word)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads the left, top, width or height of an element into its slot of the geometry array.
+     *
+     * @return false, if the name is not a geometry property
+     */
+    private static boolean readGeometry(@NonNull final JsonReader reader, @NonNull final String name,
+            @NonNull final float[] geometry, final int element) throws IOException {
+        final int offset;
+        switch (name) {
+            case "l":
+                offset = 0;
+                break;
+            case "t":
+                offset = 1;
+                break;
+            case "w":
+                offset = 2;
+                break;
+            case "h":
+                offset = 3;
+                break;
+            default:
+                return false;
+        }
+        geometry[4 * element + offset] = (float) reader.nextDouble();
+        return true;
+    }
+
+    @NonNull
+    private String intern(@NonNull final String text) {
+        final String interned = mTexts.get(text);
+        if (interned != null) {
+            return interned;
+        }
+        mTexts.put(text, text);
+        return text;
+    }
+}
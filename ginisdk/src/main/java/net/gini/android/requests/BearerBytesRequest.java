@@ -0,0 +1,84 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+
+import net.gini.android.GiniApiType;
+import net.gini.android.MediaTypes;
+import net.gini.android.authorization.Session;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Requests a JSON resource and delivers the unparsed response, e.g. to store its body before it is parsed.
+ * <p>
+ * If an ETag is given, the resource is requested conditionally. A {@code 304 Not Modified} response is delivered
+ * as well and has no body.
+ */
+public class BearerBytesRequest extends Request<NetworkResponse> {
+
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private final Object mLock = new Object();
+    private final String mAccessToken;
+    private final GiniApiType mGiniApiType;
+    private final String mETag;
+    private Response.Listener<NetworkResponse> mListener;
+
+    /**
+     * @param eTag the ETag of the stored response or null to request the resource unconditionally
+     */
+    public BearerBytesRequest(String url, @Nullable final String eTag, Session session,
+            @NonNull final GiniApiType giniApiType, Response.Listener<NetworkResponse> listener,
+            Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(Method.GET, url, errorListener);
+        mAccessToken = session.getAccessToken();
+        mGiniApiType = giniApiType;
+        mETag = eTag;
+        mListener = listener;
+        setRetryPolicy(retryPolicy);
+        // Volley's cache would answer a not modified response with its own entry
+        setShouldCache(false);
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, mGiniApiType.getGiniJsonMediaType()));
+        headers.put("Authorization", "BEARER " + mAccessToken);
+        if (mETag != null) {
+            headers.put(IF_NONE_MATCH_HEADER, mETag);
+        }
+        return headers;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        synchronized (mLock) {
+            mListener = null;
+        }
+    }
+
+    @Override
+    protected Response<NetworkResponse> parseNetworkResponse(NetworkResponse response) {
+        return Response.success(response, null);
+    }
+
+    @Override
+    protected void deliverResponse(NetworkResponse response) {
+        final Response.Listener<NetworkResponse> listener;
+        synchronized (mLock) {
+            listener = mListener;
+        }
+        if (listener != null) {
+            listener.onResponse(response);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package net.gini.android.requests;
+
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+
+import net.gini.android.GiniApiType;
+import net.gini.android.authorization.Session;
+import net.gini.android.models.ExtractionsContainer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Requests the extractions of a document and parses the response body directly into an
+ * {@link ExtractionsContainer} with the {@link ExtractionsParser}. If lazy decoding is enabled the extractions are
+ * decoded from the response when they are accessed for the first time.
+ */
+public class BearerExtractionsRequest extends BearerParsingRequest<ExtractionsContainer> {
+
+    private final boolean mLazyDecoding;
+
+    public BearerExtractionsRequest(String url, Session session, @NonNull final GiniApiType giniApiType,
+            Response.Listener<ExtractionsContainer> listener, Response.ErrorListener errorListener,
+            RetryPolicy retryPolicy) {
+        this(url, session, giniApiType, false, listener, errorListener, retryPolicy);
+    }
+
+    public BearerExtractionsRequest(String url, Session session, @NonNull final GiniApiType giniApiType,
+            final boolean lazyDecoding, Response.Listener<ExtractionsContainer> listener,
+            Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(url, session, giniApiType, listener, errorListener, retryPolicy);
+        mLazyDecoding = lazyDecoding;
+    }
+
+    @NonNull
+    @Override
+    protected ExtractionsContainer parse(@NonNull final byte[] data) throws IOException {
+        return mLazyDecoding
+                ? ExtractionsParser.parseLazily(data)
+                : ExtractionsParser.parse(new ByteArrayInputStream(data));
+    }
+}
@@ -0,0 +1,30 @@
+package net.gini.android.requests;
+
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+
+import net.gini.android.GiniApiType;
+import net.gini.android.authorization.Session;
+import net.gini.android.models.Layout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Requests the layout of a document and parses the response body directly into a {@link Layout}.
+ */
+public class BearerLayoutRequest extends BearerParsingRequest<Layout> {
+
+    public BearerLayoutRequest(String url, Session session, @NonNull final GiniApiType giniApiType,
+            Response.Listener<Layout> listener, Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(url, session, giniApiType, listener, errorListener, retryPolicy);
+    }
+
+    @NonNull
+    @Override
+    protected Layout parse(@NonNull final byte[] data) throws IOException {
+        return Layout.fromApiResponse(new ByteArrayInputStream(data));
+    }
+}
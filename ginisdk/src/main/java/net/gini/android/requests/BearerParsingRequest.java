@@ -0,0 +1,88 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import net.gini.android.GiniApiType;
+import net.gini.android.MediaTypes;
+import net.gini.android.authorization.Session;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * GET request whose JSON response body is parsed directly from the response bytes into a model, without building a
+ * string or a JSON object tree first.
+ *
+ * @param <T> The model type of the response.
+ */
+public abstract class BearerParsingRequest<T> extends Request<T> {
+
+    private final Object mLock = new Object();
+    private final String mAccessToken;
+    private final GiniApiType mGiniApiType;
+    private Response.Listener<T> mListener;
+
+    public BearerParsingRequest(String url, Session session, @NonNull final GiniApiType giniApiType,
+            Response.Listener<T> listener, Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(Method.GET, url, errorListener);
+        mAccessToken = session.getAccessToken();
+        mGiniApiType = giniApiType;
+        mListener = listener;
+        setRetryPolicy(retryPolicy);
+    }
+
+    /**
+     * Parses the UTF-8 encoded response body.
+     *
+     * @throws IOException if the response body can't be parsed
+     */
+    @NonNull
+    protected abstract T parse(@NonNull byte[] data) throws IOException;
+
+    @Override
+    public Map<String, String> getHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, mGiniApiType.getGiniJsonMediaType()));
+        headers.put("Authorization", "BEARER " + mAccessToken);
+        return headers;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        synchronized (mLock) {
+            mListener = null;
+        }
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        if (response.data == null || response.data.length == 0) {
+            return Response.error(new ParseError(response));
+        }
+        try {
+            return Response.success(parse(response.data), HttpHeaderParser.parseCacheHeaders(response));
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        final Response.Listener<T> listener;
+        synchronized (mLock) {
+            listener = mListener;
+        }
+        if (listener != null) {
+            listener.onResponse(response);
+        }
+    }
+}
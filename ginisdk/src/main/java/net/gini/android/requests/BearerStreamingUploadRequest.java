@@ -0,0 +1,39 @@
+package net.gini.android.requests;
+
+import android.net.Uri;
+
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+
+import net.gini.android.DocumentSource;
+import net.gini.android.GiniApiType;
+import net.gini.android.authorization.Session;
+
+import java.util.Map;
+
+/**
+ * Upload request whose body is streamed from a {@link DocumentSource} into the connection instead of being held in
+ * memory. The body is written by the SDK's http stack, {@link #getBody()} only returns an empty placeholder.
+ */
+public class BearerStreamingUploadRequest extends BearerUploadRequest {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final DocumentSource mDocumentSource;
+
+    public BearerStreamingUploadRequest(int method, String url, DocumentSource documentSource, String contentType,
+            final Session session,
+            final GiniApiType giniApiType,
+            Response.Listener<Uri> listener,
+            Response.ErrorListener errorListener,
+            RetryPolicy retryPolicy,
+            final Map<String, String> headers) {
+        super(method, url, EMPTY_BODY, contentType, session, giniApiType, listener, errorListener, retryPolicy,
+                headers);
+        mDocumentSource = documentSource;
+    }
+
+    public DocumentSource getDocumentSource() {
+        return mDocumentSource;
+    }
+}
@@ -7,6 +7,7 @@ import com.android.volley.RetryPolicy;
 
 import net.gini.android.GiniApiType;
 import net.gini.android.MediaTypes;
+import net.gini.android.UploadListener;
 import net.gini.android.authorization.Session;
 
 import java.util.HashMap;
@@ -19,6 +20,7 @@ public class BearerUploadRequest extends BearerLocationRequest{
     private final String mAccessToken;
     private final Map<String, String> mHeaders;
     private final GiniApiType mGiniApiType;
+    private volatile UploadListener mUploadListener;
 
     public BearerUploadRequest(int method, String url, byte[] uploadData, String contentType,
             final Session session,
@@ -48,6 +50,17 @@ public class BearerUploadRequest extends BearerLocationRequest{
         return headers;
     }
 
+    /**
+     * Sets the listener which receives the progress of sending the body.
+     */
+    public void setUploadListener(final UploadListener uploadListener) {
+        mUploadListener = uploadListener;
+    }
+
+    public UploadListener getUploadListener() {
+        return mUploadListener;
+    }
+
     @Override
     public String getBodyContentType() {
         return mContentType;
@@ -0,0 +1,393 @@
+package net.gini.android.requests;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import net.gini.android.Utils;
+import net.gini.android.models.Box;
+import net.gini.android.models.CompoundExtraction;
+import net.gini.android.models.Extraction;
+import net.gini.android.models.ExtractionsContainer;
+import net.gini.android.models.ReturnReason;
+import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.JsonObjectIndex.Span;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Parses the extractions response of the Gini API in a single pass with a pull parser.
+ * <p>
+ * The response is read directly into the extraction models without building a string or a JSON object tree first.
+ * Specific extractions reference their candidates by name and the candidates may come after the extractions in the
+ * response. Each candidates name is therefore mapped to one list, which is filled when the candidates are read.
+ * <p>
+ * With {@link #parseLazily(byte[])} only the positions of the extractions in the response are located and each
+ * extraction is decoded when it is accessed for the first time.
+ */
+public final class ExtractionsParser {
+
+    private final Map<String, List<Extraction>> mCandidates = new HashMap<>();
+    private final byte[] mData;
+    private final Map<String, Span> mCandidatesIndex;
+
+    private ExtractionsParser() {
+        this(null, Collections.<String, Span>emptyMap());
+    }
+
+    private ExtractionsParser(@Nullable final byte[] data, @NonNull final Map<String, Span> candidatesIndex) {
+        mData = data;
+        mCandidatesIndex = candidatesIndex;
+    }
+
+    /**
+     * Parses the extractions response.
+     *
+     * @param inputStream the UTF-8 encoded response body. It is not closed
+     * @return the extractions container
+     * @throws IOException if the response is not valid JSON or doesn't have the expected structure
+     */
+    @NonNull
+    public static ExtractionsContainer parse(@NonNull final InputStream inputStream) throws IOException {
+        // The Gini API always uses UTF-8.
+        final JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Utils.CHARSET_UTF8));
+        try {
+            return new ExtractionsParser().readExtractionsContainer(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Thrown by the reader if a value has an unexpected type
+            throw new IOException("Unexpected extractions response structure", e);
+        }
+    }
+
+    /**
+     * Parses the extractions response lazily. The returned container keeps the response and decodes a specific or
+     * compound extraction only when it is looked up. Candidates are decoded together with the first extraction
+     * referencing them. Return reasons are decoded right away.
+     * <p>
+     * Only the structure of the response is checked here. If an extraction turns out to be invalid when it is
+     * decoded, the getters of the container's maps throw an {@link IllegalStateException}.
+     *
+     * @param data the UTF-8 encoded response body. It must not be modified afterwards
+     * @return the extractions container
+     * @throws IOException if the response is not a valid JSON object
+     */
+    @NonNull
+    public static ExtractionsContainer parseLazily(@NonNull final byte[] data) throws IOException {
+        final Map<String, Span> response = JsonObjectIndex.index(data, new Span(0, data.length));
+        final ExtractionsParser parser = new ExtractionsParser(data, indexMember(data, response, "candidates"));
+        final Map<String, SpecificExtraction> specificExtractions = new LazyExtractionMap<>(
+                indexMember(data, response, "extractions"), new LazyExtractionMap.Decoder<SpecificExtraction>() {
+                    @NonNull
+                    @Override
+                    public SpecificExtraction decode(@NonNull final String name, @NonNull final Span span)
+                            throws IOException {
+                        return parser.decodeSpecificExtraction(name, span);
+                    }
+                });
+        final Map<String, CompoundExtraction> compoundExtractions = new LazyExtractionMap<>(
+                indexMember(data, response, "compoundExtractions"),
+                new LazyExtractionMap.Decoder<CompoundExtraction>() {
+                    @NonNull
+                    @Override
+                    public CompoundExtraction decode(@NonNull final String name, @NonNull final Span span)
+                            throws IOException {
+                        return parser.decodeCompoundExtraction(name, span);
+                    }
+                });
+        List<ReturnReason> returnReasons = Collections.emptyList();
+        final Span returnReasonsSpan = response.get("returnReasons");
+        if (returnReasonsSpan != null && !returnReasonsSpan.isNull(data)) {
+            returnReasons = parser.decode(returnReasonsSpan, new SpanDecoder<List<ReturnReason>>() {
+                @Override
+                public List<ReturnReason> decode(@NonNull final JsonReader reader) throws IOException {
+                    return readReturnReasons(reader);
+                }
+            });
+        }
+        return new ExtractionsContainer(specificExtractions, compoundExtractions, returnReasons);
+    }
+
+    @NonNull
+    private static Map<String, Span> indexMember(@NonNull final byte[] data, @NonNull final Map<String, Span> object,
+            @NonNull final String name) throws IOException {
+        final Span span = object.get(name);
+        if (span == null || span.isNull(data)) {
+            return Collections.emptyMap();
+        }
+        return JsonObjectIndex.index(data, span);
+    }
+
+    private synchronized SpecificExtraction decodeSpecificExtraction(@NonNull final String name,
+            @NonNull final Span span) throws IOException {
+        return decode(span, new SpanDecoder<SpecificExtraction>() {
+            @Override
+            public SpecificExtraction decode(@NonNull final JsonReader reader) throws IOException {
+                return (SpecificExtraction) readExtraction(reader, name);
+            }
+        });
+    }
+
+    private synchronized CompoundExtraction decodeCompoundExtraction(@NonNull final String name,
+            @NonNull final Span span) throws IOException {
+        return decode(span, new SpanDecoder<CompoundExtraction>() {
+            @Override
+            public CompoundExtraction decode(@NonNull final JsonReader reader) throws IOException {
+                final List<Map<String, SpecificExtraction>> specificExtractionMaps = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    specificExtractionMaps.add(readSpecificExtractions(reader));
+                }
+                reader.endArray();
+                return new CompoundExtraction(name, specificExtractionMaps);
+            }
+        });
+    }
+
+    private <T> T decode(@NonNull final Span span, @NonNull final SpanDecoder<T> decoder) throws IOException {
+        final JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(mData, span.mStart, span.mEnd - span.mStart), Utils.CHARSET_UTF8));
+        try {
+            return decoder.decode(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unexpected extractions response structure", e);
+        }
+    }
+
+    private interface SpanDecoder<T> {
+
+        T decode(@NonNull JsonReader reader) throws IOException;
+    }
+
+    @NonNull
+    private ExtractionsContainer readExtractionsContainer(@NonNull final JsonReader reader) throws IOException {
+        Map<String, SpecificExtraction> specificExtractions = Collections.emptyMap();
+        Map<String, CompoundExtraction> compoundExtractions = Collections.emptyMap();
+        List<ReturnReason> returnReasons = Collections.emptyList();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "extractions":
+                    specificExtractions = readSpecificExtractions(reader);
+                    break;
+                case "compoundExtractions":
+                    compoundExtractions = readCompoundExtractions(reader);
+                    break;
+                case "candidates":
+                    readCandidates(reader);
+                    break;
+                case "returnReasons":
+                    returnReasons = readReturnReasons(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ExtractionsContainer(specificExtractions, compoundExtractions, returnReasons);
+    }
+
+    @NonNull
+    private List<Extraction> getCandidates(@NonNull final String candidatesName) throws IOException {
+        List<Extraction> candidates = mCandidates.get(candidatesName);
+        if (candidates == null) {
+            candidates = new ArrayList<>();
+            mCandidates.put(candidatesName, candidates);
+            final Span span = mCandidatesIndex.get(candidatesName);
+            if (span != null) {
+                final List<Extraction> lazyCandidates = candidates;
+                decode(span, new SpanDecoder<Void>() {
+                    @Override
+                    public Void decode(@NonNull final JsonReader reader) throws IOException {
+                        readExtractionList(reader, lazyCandidates);
+                        return null;
+                    }
+                });
+            }
+        }
+        return candidates;
+    }
+
+    private void readCandidates(@NonNull final JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            readExtractionList(reader, getCandidates(reader.nextName()));
+        }
+        reader.endObject();
+    }
+
+    private void readExtractionList(@NonNull final JsonReader reader, @NonNull final List<Extraction> extractions)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            extractions.add(readExtraction(reader, null));
+        }
+        reader.endArray();
+    }
+
+    @NonNull
+    private Map<String, SpecificExtraction> readSpecificExtractions(@NonNull final JsonReader reader)
+            throws IOException {
+        final Map<String, SpecificExtraction> specificExtractions = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String extractionName = reader.nextName();
+            specificExtractions.put(extractionName, (SpecificExtraction) readExtraction(reader, extractionName));
+        }
+        reader.endObject();
+        return specificExtractions;
+    }
+
+    @NonNull
+    private Map<String, CompoundExtraction> readCompoundExtractions(@NonNull final JsonReader reader)
+            throws IOException {
+        final Map<String, CompoundExtraction> compoundExtractions = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String extractionName = reader.nextName();
+            final List<Map<String, SpecificExtraction>> specificExtractionMaps = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                specificExtractionMaps.add(readSpecificExtractions(reader));
+            }
+            reader.endArray();
+            compoundExtractions.put(extractionName, new CompoundExtraction(extractionName, specificExtractionMaps));
+        }
+        reader.endObject();
+        return compoundExtractions;
+    }
+
+    /**
+     * Reads an extraction. If a name is given a {@link SpecificExtraction} with its candidates is returned.
+     */
+    @NonNull
+    private Extraction readExtraction(@NonNull final JsonReader reader, @Nullable final String extractionName)
+            throws IOException {
+        String entity = null;
+        String value = null;
+        Box box = null;
+        String candidatesName = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "entity":
+                    entity = readString(reader);
+                    break;
+                case "value":
+                    value = readString(reader);
+                    break;
+                case "box":
+                    box = readBox(reader);
+                    break;
+                case "candidates":
+                    candidatesName = readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (entity == null || value == null) {
+            throw new IOException("Extraction without entity or value");
+        }
+        if (extractionName == null) {
+            return new Extraction(value, entity, box);
+        }
+        final List<Extraction> candidates = candidatesName != null
+                ? getCandidates(candidatesName) : new ArrayList<Extraction>();
+        return new SpecificExtraction(extractionName, value, entity, box, candidates);
+    }
+
+    @Nullable
+    private static Box readBox(@NonNull final JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        int pageNumber = 0;
+        double left = 0;
+        double top = 0;
+        double width = 0;
+        double height = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "page":
+                    pageNumber = reader.nextInt();
+                    break;
+                case "left":
+                    left = reader.nextDouble();
+                    break;
+                case "top":
+                    top = reader.nextDouble();
+                    break;
+                case "width":
+                    width = reader.nextDouble();
+                    break;
+                case "height":
+                    height = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Box(pageNumber, left, top, width, height);
+    }
+
+    @NonNull
+    private static List<ReturnReason> readReturnReasons(@NonNull final JsonReader reader) throws IOException {
+        final List<ReturnReason> returnReasons = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            final Map<String, String> localizedLabels = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String key = reader.nextName();
+                if (key.equals("id")) {
+                    id = readString(reader);
+                } else {
+                    localizedLabels.put(key, readString(reader));
+                }
+            }
+            reader.endObject();
+            if (id == null) {
+                throw new IOException("Return reason without id");
+            }
+            returnReasons.add(new ReturnReason(id, localizedLabels));
+        }
+        reader.endArray();
+        return returnReasons;
+    }
+
+    /**
+     * Reads a string, number or boolean as a string like {@code JSONObject#getString(String)} does.
+     */
+    @Nullable
+    private static String readString(@NonNull final JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                return reader.nextString();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package net.gini.android.requests;
+
+import android.util.JsonReader;
+
+import net.gini.android.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Locates the members of a JSON object in UTF-8 encoded bytes without decoding their values.
+ * <p>
+ * Only the structure of the JSON is checked: strings, nested objects and arrays are skipped by looking at quotes,
+ * escapes and brackets. The values can be decoded later from their {@link Span}s.
+ */
+final class JsonObjectIndex {
+
+    private final byte[] mData;
+    private final int mEnd;
+    private int mPosition;
+
+    private JsonObjectIndex(@NonNull final byte[] data, @NonNull final Span span) {
+        mData = data;
+        mPosition = span.mStart;
+        mEnd = span.mEnd;
+    }
+
+    /**
+     * @return the names of the object's members mapped to the spans of their values, in the order of the JSON
+     * @throws IOException if the span doesn't contain a JSON object
+     */
+    @NonNull
+    static Map<String, Span> index(@NonNull final byte[] data, @NonNull final Span span) throws IOException {
+        return new JsonObjectIndex(data, span).readObject();
+    }
+
+    @NonNull
+    private Map<String, Span> readObject() throws IOException {
+        final Map<String, Span> members = new LinkedHashMap<>();
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            mPosition++;
+            return members;
+        }
+        while (true) {
+            skipWhitespace();
+            final int nameStart = mPosition;
+            skipString();
+            final String name = decodeName(nameStart, mPosition);
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            final int valueStart = mPosition;
+            skipValue();
+            members.put(name, new Span(valueStart, mPosition));
+            skipWhitespace();
+            final byte separator = next();
+            if (separator == '}') {
+                return members;
+            } else if (separator != ',') {
+                throw syntaxError("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private String decodeName(final int start, final int end) throws IOException {
+        for (int i = start + 1; i < end - 1; i++) {
+            if (mData[i] == '\\') {
+                // Escaped names are rare, let the JSON reader unescape them
+                final Reader reader = new InputStreamReader(new ByteArrayInputStream(mData, start, end - start),
+                        Utils.CHARSET_UTF8);
+                final JsonReader jsonReader = new JsonReader(reader);
+                jsonReader.setLenient(true);
+                return jsonReader.nextString();
+            }
+        }
+        return new String(mData, start + 1, end - start - 2, Utils.CHARSET_UTF8);
+    }
+
+    private void skipValue() throws IOException {
+        final byte first = peek();
+        if (first == '"') {
+            skipString();
+        } else if (first == '{' || first == '[') {
+            skipContainer();
+        } else {
+            skipLiteral();
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            final byte b = next();
+            if (b == '\\') {
+                next();
+            } else if (b == '"') {
+                return;
+            }
+        }
+    }
+
+    private void skipContainer() throws IOException {
+        int depth = 0;
+        do {
+            final byte b = peek();
+            if (b == '"') {
+                skipString();
+                continue;
+            }
+            mPosition++;
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void skipLiteral() throws IOException {
+        final int start = mPosition;
+        while (mPosition < mEnd) {
+            final byte b = mData[mPosition];
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                break;
+            }
+            mPosition++;
+        }
+        if (mPosition == start) {
+            throw syntaxError("Expected a value");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (mPosition < mEnd && isWhitespace(mData[mPosition])) {
+            mPosition++;
+        }
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private void expect(final char c) throws IOException {
+        if (next() != c) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+    }
+
+    private byte peek() throws IOException {
+        if (mPosition >= mEnd) {
+            throw syntaxError("Unexpected end of JSON");
+        }
+        return mData[mPosition];
+    }
+
+    private byte next() throws IOException {
+        final byte b = peek();
+        mPosition++;
+        return b;
+    }
+
+    private IOException syntaxError(@NonNull final String message) {
+        return new IOException(message + " at offset " + mPosition);
+    }
+
+    /**
+     * The start (inclusive) and end (exclusive) offsets of a JSON value.
+     */
+    static final class Span {
+
+        final int mStart;
+        final int mEnd;
+
+        Span(final int start, final int end) {
+            mStart = start;
+            mEnd = end;
+        }
+
+        boolean isNull(@NonNull final byte[] data) {
+            return mEnd - mStart == 4 && data[mStart] == 'n';
+        }
+    }
+}
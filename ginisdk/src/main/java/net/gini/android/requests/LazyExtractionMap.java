@@ -0,0 +1,93 @@
+package net.gini.android.requests;
+
+import net.gini.android.requests.JsonObjectIndex.Span;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Map of extractions which are decoded from the response when they are accessed for the first time.
+ * <p>
+ * Looking up an extraction by name decodes only that extraction. Iterating over the map decodes all remaining
+ * extractions. Decoded extractions are kept, so changes to them (e.g. for feedback) are not lost.
+ *
+ * @param <V> the extraction type
+ */
+class LazyExtractionMap<V> extends AbstractMap<String, V> {
+
+    /**
+     * Decodes an extraction from its span in the response.
+     */
+    interface Decoder<V> {
+
+        @NonNull
+        V decode(@NonNull String name, @NonNull Span span) throws IOException;
+    }
+
+    private final Map<String, Span> mPending;
+    private final Map<String, V> mDecoded = new HashMap<>();
+    private final Decoder<V> mDecoder;
+
+    LazyExtractionMap(@NonNull final Map<String, Span> index, @NonNull final Decoder<V> decoder) {
+        mPending = new LinkedHashMap<>(index);
+        mDecoder = decoder;
+    }
+
+    @Override
+    public synchronized V get(final Object key) {
+        final Span span = mPending.get(key);
+        if (span != null) {
+            final String name = (String) key;
+            try {
+                mDecoded.put(name, mDecoder.decode(name, span));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not decode the extraction " + name, e);
+            }
+            mPending.remove(key);
+        }
+        return mDecoded.get(key);
+    }
+
+    @Override
+    public synchronized boolean containsKey(final Object key) {
+        return mPending.containsKey(key) || mDecoded.containsKey(key);
+    }
+
+    @Override
+    public synchronized int size() {
+        return mPending.size() + mDecoded.size();
+    }
+
+    @Override
+    public synchronized V put(final String key, final V value) {
+        final V previous = get(key);
+        mDecoded.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public synchronized V remove(final Object key) {
+        final V previous = get(key);
+        mDecoded.remove(key);
+        return previous;
+    }
+
+    @NonNull
+    @Override
+    public synchronized Set<Entry<String, V>> entrySet() {
+        decodeAll();
+        return mDecoded.entrySet();
+    }
+
+    private void decodeAll() {
+        for (final String name : mPending.keySet().toArray(new String[0])) {
+            get(name);
+        }
+    }
+}